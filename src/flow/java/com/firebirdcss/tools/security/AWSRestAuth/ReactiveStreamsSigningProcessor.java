@@ -0,0 +1,97 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.util.concurrent.Flow;
+
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * This class adapts a {@link SigningProcessor} to the {@link org.reactivestreams} interfaces, for
+ * libraries such as Reactor, RxJava or Akka Streams that take those rather than {@link Flow}. Both
+ * sets of interfaces follow the same specification, so every signal is passed through as is.
+ * The Reactive Streams API is only needed on the classpath by applications that use this class.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class ReactiveStreamsSigningProcessor implements Processor<AWSRequest, SignedRequest> {
+	private final SigningProcessor processor;
+
+	/**
+	 * CONSTRUCTOR: Creates an adapter of the given processor.
+	 *
+	 * @param processor - The processor to adapt as {@link SigningProcessor}
+	 */
+	public ReactiveStreamsSigningProcessor(SigningProcessor processor) {
+		if (processor == null) throw new NullPointerException();
+		this.processor = processor;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super SignedRequest> subscriber) {
+		if (subscriber == null) throw new NullPointerException();
+		this.processor.subscribe(new Flow.Subscriber<SignedRequest>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscriber.onSubscribe(new Subscription() {
+					@Override
+					public void request(long n) {
+						subscription.request(n);
+					}
+
+					@Override
+					public void cancel() {
+						subscription.cancel();
+					}
+				});
+			}
+
+			@Override
+			public void onNext(SignedRequest item) {
+				subscriber.onNext(item);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				subscriber.onError(throwable);
+			}
+
+			@Override
+			public void onComplete() {
+				subscriber.onComplete();
+			}
+		});
+	}
+
+	@Override
+	public void onSubscribe(Subscription subscription) {
+		if (subscription == null) throw new NullPointerException();
+		this.processor.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+				subscription.request(n);
+			}
+
+			@Override
+			public void cancel() {
+				subscription.cancel();
+			}
+		});
+	}
+
+	@Override
+	public void onNext(AWSRequest item) {
+		this.processor.onNext(item);
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		this.processor.onError(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		this.processor.onComplete();
+	}
+}
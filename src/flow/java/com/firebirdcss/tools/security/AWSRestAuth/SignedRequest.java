@@ -0,0 +1,68 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+/**
+ * This class is the outcome of signing one request in a {@link SigningProcessor}: either the
+ * Authorization header of the request, or the error that kept it from being signed.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class SignedRequest {
+	private final AWSRequest request;
+	private final String authHeader;
+	private final Exception error;
+
+	/**
+	 * CONSTRUCTOR: Creates the outcome of signing the given request.
+	 *
+	 * @param request - The request that was signed as {@link AWSRequest}
+	 * @param authHeader - The Authorization header or null if signing failed as {@link String}
+	 * @param error - The error or null if it was signed as {@link Exception}
+	 */
+	SignedRequest(AWSRequest request, String authHeader, Exception error) {
+		this.request = request;
+		this.authHeader = authHeader;
+		this.error = error;
+	}
+
+	/**
+	 * This method returns the request as it was signed, which carries the x-amz-security-token
+	 * header when the keys were session credentials.
+	 *
+	 * @return Returns the request as {@link AWSRequest}
+	 */
+	public AWSRequest getRequest() {
+
+		return this.request;
+	}
+
+	/**
+	 * This method checks whether the request was signed.
+	 *
+	 * @return Returns true if it was signed, otherwise false
+	 */
+	public boolean isSigned() {
+
+		return this.error == null;
+	}
+
+	/**
+	 * This method returns the Authorization header of the request.
+	 *
+	 * @return Returns the header as {@link String} or null if signing failed
+	 */
+	public String getAuthHeader() {
+
+		return this.authHeader;
+	}
+
+	/**
+	 * This method returns why the request was not signed.
+	 *
+	 * @return Returns the error as {@link Exception} or null if it was signed
+	 */
+	public Exception getError() {
+
+		return this.error;
+	}
+}
@@ -0,0 +1,290 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class is a {@link Flow.Processor} that signs the requests of a reactive pipeline with the
+ * current keys of a {@link CredentialsProvider}, on the given {@link Executor}. Any executor will
+ * do; on JDK 21 and newer that includes {@code Executors.newVirtualThreadPerTaskExecutor()}.
+ * <p>
+ * At most a given number of requests are taken from upstream ahead of being handed downstream,
+ * so while the downstream subscriber is slow, or a burst comes in, the requests in flight stay
+ * bounded and upstream is simply asked for fewer. Requests are signed in parallel but handed
+ * downstream in the order they came in. A request that can not be signed is handed downstream
+ * as a {@link SignedRequest} holding the error, and the stream goes on.
+ * <p>
+ * A processor serves a single subscriber; {@link ReactiveStreamsSigningProcessor} adapts it to
+ * Reactive Streams libraries that do not speak {@link Flow}.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class SigningProcessor implements Flow.Processor<AWSRequest, SignedRequest> {
+	/** The most requests in flight by default. */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+	private static final String SECURITY_TOKEN_HEADER = "x-amz-security-token";
+
+	private final CredentialsProvider credentials;
+	private final Executor executor;
+	private final int maxInFlight;
+	private final int replenishAt;
+	private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicReference<Flow.Subscriber<? super SignedRequest>> downstream = new AtomicReference<>();
+	private final AtomicLong requested = new AtomicLong();
+	private final AtomicInteger wip = new AtomicInteger();
+
+	private volatile Flow.Subscription upstream;
+	private volatile boolean done;
+	private volatile Throwable error;
+	private volatile boolean cancelled;
+	private volatile long invalidRequest = 1; // Positive until the subscriber asks for a non-positive amount...
+
+	private int outstanding; // Requested from upstream but not yet handed downstream, only touched by drain()...
+	private boolean terminated; // Only touched by drain()...
+
+	/**
+	 * CONSTRUCTOR: Creates a processor that keeps up to {@link #DEFAULT_MAX_IN_FLIGHT} requests in flight.
+	 *
+	 * @param credentials - The source of the keys as {@link CredentialsProvider}
+	 * @param executor - The executor to sign on as {@link Executor}
+	 */
+	public SigningProcessor(CredentialsProvider credentials, Executor executor) {
+		this(credentials, executor, DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a processor that keeps up to the given number of requests in flight.
+	 *
+	 * @param credentials - The source of the keys as {@link CredentialsProvider}
+	 * @param executor - The executor to sign on as {@link Executor}
+	 * @param maxInFlight - The most requests taken from upstream and not yet handed downstream as int
+	 */
+	public SigningProcessor(CredentialsProvider credentials, Executor executor, int maxInFlight) {
+		if (credentials == null || executor == null) throw new NullPointerException();
+		if (maxInFlight < 1) throw new IllegalArgumentException("At least one request must be allowed in flight!");
+		this.credentials = credentials;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.replenishAt = Math.max(1, maxInFlight / 4); // Asks upstream in batches rather than one by one...
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super SignedRequest> subscriber) {
+		if (subscriber == null) throw new NullPointerException();
+		if (!this.downstream.compareAndSet(null, subscriber)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {}
+
+				@Override
+				public void cancel() {}
+			});
+			subscriber.onError(new IllegalStateException("A SigningProcessor serves a single subscriber!"));
+
+			return;
+		}
+		subscriber.onSubscribe(new Downstream());
+		drain();
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		if (this.upstream != null || this.cancelled) { // Already subscribed, or nobody wants the results...
+			subscription.cancel();
+
+			return;
+		}
+		this.upstream = subscription;
+		if (this.cancelled) { // Cancelled while it was being set...
+			subscription.cancel();
+
+			return;
+		}
+		drain();
+	}
+
+	@Override
+	public void onNext(AWSRequest item) {
+		if (item == null) throw new NullPointerException();
+		if (this.done || this.cancelled) {
+
+			return;
+		}
+		final Pending entry = new Pending(item);
+		this.pending.offer(entry);
+		try {
+			this.executor.execute(() -> {
+				entry.result = sign(entry.request);
+				drain();
+			});
+		} catch (RejectedExecutionException e) {
+			entry.result = new SignedRequest(item, null, e);
+			drain();
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		if (throwable == null) throw new NullPointerException();
+		this.error = throwable;
+		this.done = true;
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		this.done = true;
+		drain();
+	}
+
+	/**
+	 * PRIVATE METHOD: Signs the given request with the current keys.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @return Returns the outcome as {@link SignedRequest}
+	 */
+	private SignedRequest sign(AWSRequest request) {
+		AWSRequest signed = request;
+		try {
+			final Credentials keys = this.credentials.getCredentials();
+			if (keys.getSessionToken() != null) {
+				signed = request.withHeader(SECURITY_TOKEN_HEADER, keys.getSessionToken());
+			}
+
+			return new SignedRequest(signed, AwsAuthV2Util.genAuthHeader(signed, keys.getSigner()), null);
+		} catch (RuntimeException e) {
+			SigningMetrics.getListener().onError(e);
+
+			return new SignedRequest(signed, null, e);
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Hands the signed requests at the head of the queue downstream as far as the
+	 * subscriber asked for them, passes on the end of the stream once all are handed, and asks
+	 * upstream for more once enough room was freed. Only one thread at a time runs the loop;
+	 * calls made meanwhile make it go around once more instead.
+	 */
+	private void drain() {
+		if (this.wip.getAndIncrement() != 0) {
+
+			return;
+		}
+		int missed = 1;
+		do {
+			if (this.cancelled) {
+				this.pending.clear();
+			} else if (!this.terminated) {
+				drainOnce();
+			}
+			missed = this.wip.addAndGet(-missed);
+		} while (missed != 0);
+	}
+
+	/**
+	 * PRIVATE METHOD: Runs one pass of the {@link #drain()} loop.
+	 */
+	private void drainOnce() {
+		final Flow.Subscriber<? super SignedRequest> subscriber = this.downstream.get();
+		final Flow.Subscription subscription = this.upstream;
+		if (subscriber != null) {
+			if (this.invalidRequest <= 0) { // Rule 3.9 of the specification...
+				terminate(subscription);
+				subscriber.onError(new IllegalArgumentException("The requested amount must be positive, not " + this.invalidRequest + "!"));
+
+				return;
+			}
+			final long wanted = this.requested.get();
+			long emitted = 0;
+			Pending head;
+			while (emitted != wanted && !this.cancelled && (head = this.pending.peek()) != null && head.result != null) {
+				this.pending.poll();
+				subscriber.onNext(head.result);
+				emitted++;
+			}
+			if (emitted != 0) {
+				this.outstanding -= (int) emitted;
+				if (wanted != Long.MAX_VALUE) this.requested.addAndGet(-emitted);
+			}
+			if (this.done && this.pending.isEmpty() && !this.cancelled) {
+				this.terminated = true;
+				final Throwable failure = this.error;
+				if (failure == null) {
+					subscriber.onComplete();
+				} else {
+					subscriber.onError(failure);
+				}
+
+				return;
+			}
+		}
+		final int room = this.maxInFlight - this.outstanding;
+		if (subscription != null && !this.done && room >= this.replenishAt) {
+			this.outstanding += room;
+			subscription.request(room);
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Ends the stream early, cancelling upstream and dropping what is in flight.
+	 *
+	 * @param subscription - The upstream subscription or null as {@link Flow.Subscription}
+	 */
+	private void terminate(Flow.Subscription subscription) {
+		this.terminated = true;
+		this.cancelled = true;
+		if (subscription != null) subscription.cancel();
+		this.pending.clear();
+	}
+
+	/**
+	 * This class is the subscription handed to the downstream subscriber.
+	 */
+	private final class Downstream implements Flow.Subscription {
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				if (invalidRequest > 0) invalidRequest = n;
+			} else {
+				long current;
+				do {
+					current = requested.get();
+				} while (current != Long.MAX_VALUE && !requested.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			if (cancelled) {
+
+				return;
+			}
+			cancelled = true;
+			final Flow.Subscription subscription = upstream;
+			if (subscription != null) subscription.cancel();
+			drain();
+		}
+	}
+
+	/**
+	 * This class holds a request taken from upstream until its outcome is handed downstream.
+	 */
+	private static final class Pending {
+		final AWSRequest request;
+		volatile SignedRequest result;
+
+		Pending(AWSRequest request) {
+			this.request = request;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.firebirdcss.tools.security.AWSRestAuth.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.firebirdcss.tools.security.AWSRestAuth.AWSRequest;
+import com.firebirdcss.tools.security.AWSRestAuth.BatchSigner;
+
+/**
+ * BENCHMARK: This class measures how the throughput of {@link BatchSigner} scales with the
+ * parallelism of its pool. Scores are in signed requests per millisecond.
+ *
+ * @author Scott Griffis
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchSigningBenchmark {
+	private static final int BATCH_SIZE = 10_000;
+	private static final long EXPIRES = 1175139620L;
+
+	@Param({"1", "2", "4", "8"})
+	public int parallelism;
+
+	private List<AWSRequest> requests;
+	private ForkJoinPool pool;
+	private BatchSigner batchSigner;
+
+	@Setup
+	public void setup() {
+		this.requests = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			this.requests.add(new AWSRequest("johnsmith.s3.amazonaws.com", "exports/2007/03/object-" + i + ".dat", "johnsmith", RequestShape.ACCESS_KEY, RequestShape.SECRET_KEY, "GET", new HashMap<>(), new HashMap<>()));
+		}
+		this.pool = new ForkJoinPool(parallelism);
+		this.batchSigner = new BatchSigner(this.pool);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.pool.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public List<String> presignAll() {
+
+		return this.batchSigner.presignAll(this.requests, EXPIRES);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public List<String> signAll() {
+
+		return this.batchSigner.signAll(this.requests);
+	}
+}
@@ -0,0 +1,79 @@
+package com.firebirdcss.tools.security.AWSRestAuth.benchmarks;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.firebirdcss.tools.security.AWSRestAuth.AWSRequest;
+import com.firebirdcss.tools.security.AWSRestAuth.AwsAuthV2Util;
+import com.firebirdcss.tools.security.AWSRestAuth.Signer;
+
+/**
+ * BENCHMARK: This class measures signing throughput with all cores sharing the same
+ * request and {@link Signer}, which is how a gateway uses the library.
+ *
+ * @author Scott Griffis
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ConcurrentSigningBenchmark {
+	@Param({"OBJECT_GET", "UPLOAD", "META_100", "SUB_RESOURCES"})
+	public RequestShape shape;
+
+	private AWSRequest request;
+	private Signer signer;
+
+	@Setup
+	public void setup() throws NoSuchAlgorithmException, InvalidKeyException {
+		this.request = shape.newRequest();
+		this.signer = new Signer(this.request);
+	}
+
+	/**
+	 * This class holds the per-thread destination buffer for the allocation-free benchmark.
+	 */
+	@State(Scope.Thread)
+	public static class Destination {
+		public final ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+	}
+
+	@Benchmark
+	public String genAuthHeader() throws InvalidKeyException, NoSuchAlgorithmException, UnsupportedEncodingException {
+
+		return AwsAuthV2Util.genAuthHeader(this.request);
+	}
+
+	@Benchmark
+	public String genAuthHeaderWithSigner() {
+
+		return AwsAuthV2Util.genAuthHeader(this.request, this.signer);
+	}
+
+	@Benchmark
+	public int genAuthHeaderIntoBuffer(Destination dest) {
+		dest.buffer.clear();
+
+		return AwsAuthV2Util.genAuthHeader(this.request, this.signer, dest.buffer);
+	}
+}
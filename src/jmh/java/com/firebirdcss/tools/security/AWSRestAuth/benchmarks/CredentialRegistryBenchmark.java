@@ -0,0 +1,86 @@
+package com.firebirdcss.tools.security.AWSRestAuth.benchmarks;
+
+import java.io.UnsupportedEncodingException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.firebirdcss.tools.security.AWSRestAuth.AWSRequest;
+import com.firebirdcss.tools.security.AWSRestAuth.AwsAuthV2Util;
+import com.firebirdcss.tools.security.AWSRestAuth.CredentialRegistry;
+
+/**
+ * BENCHMARK: This class measures the latency of signing through a {@link CredentialRegistry} by
+ * access key as the number of registered tenants grows, cycling through a working set of
+ * {@link #ACTIVE_TENANTS} tenants spread over all of them, against deriving the key from the
+ * secret held by the request as {@link AwsAuthV2Util#genAuthHeader(AWSRequest)} does.
+ *
+ * @author Scott Griffis
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CredentialRegistryBenchmark {
+	private static final int ACTIVE_TENANTS = 1024;
+
+	@Param({"1000", "20000", "200000"})
+	public int tenants;
+
+	private CredentialRegistry registry;
+	private String[] activeKeys;
+	private AWSRequest request;
+	private int next;
+
+	@Setup
+	public void setup() {
+		this.registry = new CredentialRegistry(this.tenants);
+		for (int i = 0; i < this.tenants; i++) {
+			this.registry.register(accessKey(i), RequestShape.SECRET_KEY.substring(8) + i);
+		}
+		this.activeKeys = new String[ACTIVE_TENANTS];
+		for (int i = 0; i < ACTIVE_TENANTS; i++) {
+			this.activeKeys[i] = accessKey((int) ((long) i * this.tenants / ACTIVE_TENANTS));
+		}
+		this.request = RequestShape.OBJECT_GET.newRequest();
+	}
+
+	@Benchmark
+	public String signByAccessKey() {
+		final String accessKey = this.activeKeys[this.next++ & (ACTIVE_TENANTS - 1)];
+
+		return this.registry.genAuthHeader(accessKey, this.request);
+	}
+
+	@Benchmark
+	public String signFromSecret() throws InvalidKeyException, NoSuchAlgorithmException, UnsupportedEncodingException {
+
+		return AwsAuthV2Util.genAuthHeader(this.request);
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the access key of the tenant with the given number.
+	 *
+	 * @param tenant - The number of the tenant as int
+	 * @return Returns the access key as {@link String}
+	 */
+	private static String accessKey(int tenant) {
+
+		return String.format("AKIA%016d", tenant);
+	}
+}
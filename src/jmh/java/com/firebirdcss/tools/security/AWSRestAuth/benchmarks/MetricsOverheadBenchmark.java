@@ -0,0 +1,105 @@
+package com.firebirdcss.tools.security.AWSRestAuth.benchmarks;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.firebirdcss.tools.security.AWSRestAuth.AWSRequest;
+import com.firebirdcss.tools.security.AWSRestAuth.AwsAuthV2Util;
+import com.firebirdcss.tools.security.AWSRestAuth.Signer;
+import com.firebirdcss.tools.security.AWSRestAuth.SigningMetrics;
+import com.firebirdcss.tools.security.AWSRestAuth.SigningMetricsListener;
+import com.firebirdcss.tools.security.AWSRestAuth.SigningMetricsRecorder;
+
+/**
+ * BENCHMARK: This class measures what the metrics of the signing pipeline cost, by signing
+ * the same request with each of these settings:
+ * <ul>
+ * <li>none - no listener installed, so the pipeline reports to {@link SigningMetricsListener#NOOP}
+ * (the default);</li>
+ * <li>noop - a listener of its own class installed that records nothing and does not want the
+ * stages timed, which is the cost of the hooks once the call sites see another listener;</li>
+ * <li>timed - a listener installed that wants the stages timed but records nothing, which adds
+ * the clock reads;</li>
+ * <li>recorder - a {@link SigningMetricsRecorder} installed.</li>
+ * </ul>
+ * Each setting runs in its own forks, so the JIT of the default one has never seen a listener.
+ * Every invocation signs a run of {@link #RUN} requests so the cost of the harness is spread over
+ * them, and the many forks and iterations keep the error small enough to tell differences of a
+ * few nanoseconds apart. The hooks can not be taken out of the pipeline, so "none" is the
+ * baseline the other settings are compared to, not a pipeline without metrics.
+ *
+ * @author Scott Griffis
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 20, time = 1)
+@Fork(5)
+public class MetricsOverheadBenchmark {
+	private static final int RUN = 64;
+
+	@Param({"none", "noop", "timed", "recorder"})
+	public String metrics;
+
+	@Param({"OBJECT_GET", "UPLOAD"})
+	public RequestShape shape;
+
+	private AWSRequest request;
+	private Signer signer;
+
+	@Setup
+	public void setup() throws NoSuchAlgorithmException, InvalidKeyException {
+		this.request = shape.newRequest();
+		this.signer = new Signer(this.request);
+		switch (metrics) {
+			case "noop":
+				SigningMetrics.install(new SigningMetricsListener() {});
+				break;
+			case "timed":
+				SigningMetrics.install(new SigningMetricsListener() {
+					@Override
+					public boolean shouldTime() {
+
+						return true;
+					}
+				});
+				break;
+			case "recorder":
+				SigningMetrics.install(new SigningMetricsRecorder());
+				break;
+			default:
+				SigningMetrics.install(null);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		SigningMetrics.install(null);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RUN)
+	public void genAuthHeaderWithSigner(Blackhole blackhole) {
+		for (int i = 0; i < RUN; i++) {
+			blackhole.consume(AwsAuthV2Util.genAuthHeader(this.request, this.signer));
+		}
+	}
+}
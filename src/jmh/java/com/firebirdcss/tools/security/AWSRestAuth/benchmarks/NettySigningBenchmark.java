@@ -0,0 +1,107 @@
+package com.firebirdcss.tools.security.AWSRestAuth.benchmarks;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.firebirdcss.tools.security.AWSRestAuth.AWSRequest;
+import com.firebirdcss.tools.security.AWSRestAuth.AwsAuthV2Util;
+import com.firebirdcss.tools.security.AWSRestAuth.S3SigningHandler;
+import com.firebirdcss.tools.security.AWSRestAuth.Signer;
+import com.firebirdcss.tools.security.AWSRestAuth.StaticCredentialsProvider;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+
+/**
+ * BENCHMARK: This class compares signing a Netty {@link HttpRequest} with the
+ * {@link S3SigningHandler} against copying it into an {@link AWSRequest} to sign it, and
+ * measures the cost of the handler in a channel pipeline.
+ *
+ * @author Scott Griffis
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NettySigningBenchmark {
+	private static final String DATE = "Tue, 27 Mar 2007 21:06:08 +0000";
+
+	@Param({"0", "10"})
+	public int metaHeaders;
+
+	private HttpRequest request;
+	private S3SigningHandler handler;
+	private Signer signer;
+	private EmbeddedChannel channel;
+
+	@Setup
+	public void setup() throws NoSuchAlgorithmException, InvalidKeyException {
+		this.request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.PUT, "/photos/puppy.jpg?partNumber=1&uploadId=VXBsb2FkIElE");
+		this.request.headers()
+			.set("Host", "johnsmith.s3.amazonaws.com")
+			.set("Date", DATE)
+			.set("Content-Type", "application/octet-stream")
+			.set("x-amz-acl", "public-read");
+		for (int i = 0; i < metaHeaders; i++) {
+			this.request.headers().set("X-Amz-Meta-Field" + i, "value number " + i);
+		}
+		this.handler = new S3SigningHandler(new StaticCredentialsProvider(RequestShape.ACCESS_KEY, RequestShape.SECRET_KEY), "s3.amazonaws.com");
+		this.signer = new Signer(RequestShape.ACCESS_KEY, RequestShape.SECRET_KEY);
+		this.channel = new EmbeddedChannel(this.handler);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.channel.finishAndReleaseAll();
+	}
+
+	@Benchmark
+	public HttpRequest handlerSign() {
+		this.handler.sign(this.request);
+
+		return this.request;
+	}
+
+	@Benchmark
+	public Object pipelineWrite() {
+		this.channel.writeOutbound(this.request);
+
+		return this.channel.readOutbound();
+	}
+
+	@Benchmark
+	public String copyToAwsRequest() {
+		HashMap<String, String> params = new HashMap<>();
+		params.put("partNumber", "1");
+		params.put("uploadId", "VXBsb2FkIElE");
+		HashMap<String, String> heads = new HashMap<>();
+		for (Entry<String, String> header : this.request.headers()) {
+			if (!header.getKey().equalsIgnoreCase("Authorization")) heads.put(header.getKey(), header.getValue());
+		}
+		AWSRequest copy = new AWSRequest("johnsmith.s3.amazonaws.com", "photos/puppy.jpg", "johnsmith", RequestShape.ACCESS_KEY, RequestShape.SECRET_KEY, "PUT", params, heads);
+
+		return AwsAuthV2Util.genAuthHeader(copy, this.signer);
+	}
+}
@@ -0,0 +1,65 @@
+package com.firebirdcss.tools.security.AWSRestAuth.benchmarks;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.firebirdcss.tools.security.AWSRestAuth.AWSRequest;
+import com.firebirdcss.tools.security.AWSRestAuth.AwsAuthV2Util;
+import com.firebirdcss.tools.security.AWSRestAuth.PresignedUrlPool;
+import com.firebirdcss.tools.security.AWSRestAuth.StaticCredentialsProvider;
+
+/**
+ * BENCHMARK: This class compares handing out the presigned URL of a hot object from a
+ * {@link PresignedUrlPool} against building and presigning its request on every hit.
+ *
+ * @author Scott Griffis
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PresignedUrlPoolBenchmark {
+	private static final long EXPIRES = 1175139620L;
+
+	private StaticCredentialsProvider credentials;
+	private PresignedUrlPool pool;
+
+	@Setup
+	public void setup() {
+		this.credentials = new StaticCredentialsProvider(RequestShape.ACCESS_KEY, RequestShape.SECRET_KEY);
+		this.pool = new PresignedUrlPool(this.credentials, "s3.amazonaws.com");
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.pool.close();
+	}
+
+	@Benchmark
+	public String fromPool() {
+
+		return this.pool.getUrl("johnsmith", "photos/puppy.jpg", "GET");
+	}
+
+	@Benchmark
+	public String presignEachHit() {
+		final AWSRequest request = new AWSRequest("johnsmith.s3.amazonaws.com", "photos/puppy.jpg", "johnsmith", null, null, "GET", new HashMap<>(), null);
+
+		return AwsAuthV2Util.genPresignedUrl(request, this.credentials, EXPIRES);
+	}
+}
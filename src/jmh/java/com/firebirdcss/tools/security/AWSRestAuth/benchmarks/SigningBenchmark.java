@@ -0,0 +1,153 @@
+package com.firebirdcss.tools.security.AWSRestAuth.benchmarks;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.firebirdcss.tools.security.AWSRestAuth.AWSRequest;
+import com.firebirdcss.tools.security.AWSRestAuth.AwsAuthV2Util;
+import com.firebirdcss.tools.security.AWSRestAuth.AwsAuthV4Util;
+import com.firebirdcss.tools.security.AWSRestAuth.SignatureCache;
+import com.firebirdcss.tools.security.AWSRestAuth.Signer;
+import com.firebirdcss.tools.security.AWSRestAuth.V4Signer;
+
+/**
+ * BENCHMARK: This class measures the single threaded cost of each step of the signing
+ * pipeline for every {@link RequestShape}.
+ *
+ * @author Scott Griffis
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SigningBenchmark {
+	private static final long EXPIRES = 1175139620L;
+
+	@Param
+	public RequestShape shape;
+
+	protected AWSRequest request;
+	protected Signer signer;
+	protected String stringToSign;
+	protected AWSRequest v4Request;
+	protected V4Signer v4Signer;
+	protected SignatureCache cache;
+
+	@Setup
+	public void setup() throws NoSuchAlgorithmException, InvalidKeyException {
+		this.request = shape.newRequest();
+		this.signer = new Signer(this.request);
+		this.stringToSign = AwsAuthV2Util.genStringToSign(this.request);
+		this.v4Request = this.request.withHeader("x-amz-date", "20150830T123600Z");
+		this.v4Signer = new V4Signer(RequestShape.ACCESS_KEY, RequestShape.SECRET_KEY, "us-east-1", "s3");
+		this.cache = new SignatureCache();
+	}
+
+	/**
+	 * This class holds the per-thread destination buffer for the allocation-free benchmarks.
+	 */
+	@State(Scope.Thread)
+	public static class Destination {
+		public final ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+		public final CharBuffer chars = CharBuffer.allocate(1024);
+	}
+
+	@Benchmark
+	public String genStringToSign() {
+
+		return AwsAuthV2Util.genStringToSign(this.request);
+	}
+
+	@Benchmark
+	public String signString() throws InvalidKeyException, NoSuchAlgorithmException, UnsupportedEncodingException {
+
+		return AwsAuthV2Util.signString(RequestShape.SECRET_KEY, this.stringToSign);
+	}
+
+	@Benchmark
+	public String signerSign() {
+
+		return this.signer.sign(this.stringToSign);
+	}
+
+	@Benchmark
+	public String genAuthHeader() throws InvalidKeyException, NoSuchAlgorithmException, UnsupportedEncodingException {
+
+		return AwsAuthV2Util.genAuthHeader(this.request);
+	}
+
+	@Benchmark
+	public String genAuthHeaderWithSigner() {
+
+		return AwsAuthV2Util.genAuthHeader(this.request, this.signer);
+	}
+
+	@Benchmark
+	public String genAuthHeaderCached() {
+
+		return AwsAuthV2Util.genAuthHeader(this.request, this.signer, this.cache);
+	}
+
+	@Benchmark
+	public int genAuthHeaderIntoBuffer(Destination dest) {
+		dest.buffer.clear();
+
+		return AwsAuthV2Util.genAuthHeader(this.request, this.signer, dest.buffer);
+	}
+
+	@Benchmark
+	public String genAuthHeaderV4() {
+
+		return AwsAuthV4Util.genAuthHeader(this.v4Request, this.v4Signer);
+	}
+
+	@Benchmark
+	public String genPresignedUrl() {
+
+		return AwsAuthV2Util.genPresignedUrl(this.request, this.signer, EXPIRES);
+	}
+
+	@Benchmark
+	public int genPresignedUrlIntoBuffer(Destination dest) {
+		dest.chars.clear();
+
+		return AwsAuthV2Util.genPresignedUrl(this.request, this.signer, EXPIRES, dest.chars);
+	}
+
+	@Benchmark
+	public String getCanonAmzHeaders() {
+
+		return this.request.getCanonAmzHeaders();
+	}
+
+	@Benchmark
+	public String getParamsForUrl() throws UnsupportedEncodingException {
+
+		return this.request.getParamsForUrl();
+	}
+
+	@Benchmark
+	public String getSubSourceString() {
+
+		return this.request.getSubSourceString();
+	}
+}
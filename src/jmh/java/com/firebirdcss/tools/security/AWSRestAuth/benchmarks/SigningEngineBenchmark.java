@@ -0,0 +1,72 @@
+package com.firebirdcss.tools.security.AWSRestAuth.benchmarks;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.firebirdcss.tools.security.AWSRestAuth.AWSRequest;
+import com.firebirdcss.tools.security.AWSRestAuth.AwsAuthV2Util;
+import com.firebirdcss.tools.security.AWSRestAuth.Signer;
+import com.firebirdcss.tools.security.AWSRestAuth.SigningEngines;
+
+/**
+ * BENCHMARK: This class compares the {@link com.firebirdcss.tools.security.AWSRestAuth.SigningEngine}s
+ * on the same machine, signing the same request with a {@link Signer} and from the secret.
+ *
+ * @author Scott Griffis
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SigningEngineBenchmark {
+
+	@Param({"jce", "pure-java", "jce-jdk-base64"})
+	public String engine;
+
+	@Param({"OBJECT_PUT", "META_100"})
+	public RequestShape shape;
+
+	private AWSRequest request;
+	private Signer signer;
+
+	@Setup
+	public void setup() throws NoSuchAlgorithmException, InvalidKeyException {
+		SigningEngines.install(SigningEngines.find(this.engine));
+		this.request = this.shape.newRequest();
+		this.signer = new Signer(this.request);
+	}
+
+	@TearDown
+	public void tearDown() {
+		SigningEngines.install(null);
+	}
+
+	@Benchmark
+	public String signWithSigner() {
+
+		return AwsAuthV2Util.genAuthHeader(this.request, this.signer);
+	}
+
+	@Benchmark
+	public String signFromSecret() throws Exception {
+
+		return AwsAuthV2Util.genAuthHeader(this.request);
+	}
+}
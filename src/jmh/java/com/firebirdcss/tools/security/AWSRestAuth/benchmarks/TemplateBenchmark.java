@@ -0,0 +1,81 @@
+package com.firebirdcss.tools.security.AWSRestAuth.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.firebirdcss.tools.security.AWSRestAuth.AWSRequest;
+import com.firebirdcss.tools.security.AWSRestAuth.AWSRequestTemplate;
+import com.firebirdcss.tools.security.AWSRestAuth.AwsAuthV2Util;
+import com.firebirdcss.tools.security.AWSRestAuth.Signer;
+
+/**
+ * BENCHMARK: This class compares building and signing a request from scratch against
+ * filling in an {@link AWSRequestTemplate} for the same request shape.
+ *
+ * @author Scott Griffis
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark {
+	private static final String DATE = "Tue, 27 Mar 2007 21:06:08 +0000";
+
+	@Param({"0", "10", "100"})
+	public int metaHeaders;
+
+	private HashMap<String, String> params;
+	private HashMap<String, String> heads;
+	private AWSRequestTemplate template;
+	private Signer signer;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+
+	@Setup
+	public void setup() throws NoSuchAlgorithmException, InvalidKeyException {
+		this.params = new HashMap<>();
+		this.heads = new HashMap<>();
+		this.heads.put("Content-Type", "application/octet-stream");
+		this.heads.put("x-amz-acl", "public-read");
+		for (int i = 0; i < metaHeaders; i++) {
+			this.heads.put("X-Amz-Meta-Field" + i, "value number " + i);
+		}
+		this.template = new AWSRequestTemplate("johnsmith.s3.amazonaws.com", "johnsmith", RequestShape.ACCESS_KEY, RequestShape.SECRET_KEY, "PUT", this.params, this.heads);
+		this.signer = new Signer(RequestShape.ACCESS_KEY, RequestShape.SECRET_KEY);
+	}
+
+	@Benchmark
+	public int fromScratch() {
+		HashMap<String, String> requestHeads = new HashMap<>(this.heads);
+		requestHeads.put("Date", DATE);
+		AWSRequest request = new AWSRequest("johnsmith.s3.amazonaws.com", "photos/puppy.jpg", "johnsmith", RequestShape.ACCESS_KEY, RequestShape.SECRET_KEY, "PUT", this.params, requestHeads);
+		this.buffer.clear();
+
+		return AwsAuthV2Util.genAuthHeader(request, this.signer, this.buffer);
+	}
+
+	@Benchmark
+	public int fromTemplate() {
+		AWSRequest request = this.template.newRequest("photos/puppy.jpg", DATE);
+		this.buffer.clear();
+
+		return AwsAuthV2Util.genAuthHeader(request, this.signer, this.buffer);
+	}
+}
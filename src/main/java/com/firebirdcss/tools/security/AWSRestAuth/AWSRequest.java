@@ -1,12 +1,16 @@
 package com.firebirdcss.tools.security.AWSRestAuth;
 
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 /**
  * This is a POJO used to hold the important values needed when calculating
@@ -16,6 +20,14 @@ import java.util.Map.Entry;
  *
  */
 public class AWSRequest {
+	/* The query parameters that carry a value and still belong in the CanonicalizedResource */
+	static final Set<String> VALUED_SUB_RESOURCES = new HashSet<>(Arrays.asList(
+		"acl", "lifecycle", "location", "logging", "notification", "partNumber", "policy",
+		"requestPayment", "torrent", "uploadId", "uploads", "versionId", "versioning", "versions", "website",
+		"response-cache-control", "response-content-disposition", "response-content-encoding",
+		"response-content-language", "response-content-type", "response-expires"
+	));
+	
 	private final String endpoint;
 	private final String path;
 	private final String bucket;
@@ -23,8 +35,15 @@ public class AWSRequest {
 	private final String secretKey;
 	private final String requestMethod;
 	
-	private final Map<String, String> parameters = new HashMap<>();
-	private final Map<String, String> headers = new HashMap<>();
+	private final Map<String, String> parameters;
+	private final Map<String, String> headers;
+	private final Map<String, String> headerIndex; // Lowercase header name to value...
+	
+	/* Only set for requests created from an AWSRequestTemplate */
+	private final String date;
+	private final String canonAmzHeaders;
+	private final String canonBucket;
+	private final String subSourceString;
 	
 	/**
 	 * 
@@ -46,6 +65,8 @@ public class AWSRequest {
 			HashMap<String, String> requestHeaders
 	) {
 		this.endpoint = endpoint == null ? "" : endpoint;
+		this.parameters = new HashMap<>();
+		this.headers = new HashMap<>();
 		if (endpoint != null && !endpoint.isEmpty()) {
 			this.headers.put("Host", endpoint);
 		}
@@ -60,6 +81,85 @@ public class AWSRequest {
 		if (requestHeaders != null) {
 			this.headers.putAll(requestHeaders);
 		}
+		this.headerIndex = indexHeaders(this.headers);
+		this.date = null;
+		this.canonAmzHeaders = null;
+		this.canonBucket = null;
+		this.subSourceString = null;
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE CONSTRUCTOR: Creates a request from the given template, sharing all of its
+	 * already canonicalized static parts and only filling in the path and date.
+	 * 
+	 * @param template - The template as {@link AWSRequestTemplate}
+	 * @param path - The request path as {@link String}
+	 * @param date - The value of the Date header as {@link String}
+	 */
+	AWSRequest(AWSRequestTemplate template, String path, String date) {
+		this.endpoint = template.getBaseUrl();
+		this.path = path == null ? "" : path;
+		this.bucket = template.getBucket();
+		this.accessKey = template.getAccessKey();
+		this.secretKey = template.getSecretKey();
+		this.requestMethod = template.getRequestMethod();
+		this.parameters = template.parameters;
+		this.headers = template.headers;
+		this.headerIndex = template.headerIndex;
+		this.date = date == null ? "" : date;
+		this.canonAmzHeaders = template.canonAmzHeaders;
+		this.canonBucket = template.canonBucket;
+		this.subSourceString = template.subSourceString;
+	}
+	
+	/**
+	 * PRIVATE CONSTRUCTOR: Creates a copy of the given request with one header set, replacing
+	 * any header of the same name regardless of its case.
+	 * 
+	 * @param source - The request to copy as {@link AWSRequest}
+	 * @param name - The name of the header as {@link String}
+	 * @param value - The value of the header as {@link String}
+	 */
+	private AWSRequest(AWSRequest source, String name, String value) {
+		this.endpoint = source.endpoint;
+		this.path = source.path;
+		this.bucket = source.bucket;
+		this.accessKey = source.accessKey;
+		this.secretKey = source.secretKey;
+		this.requestMethod = source.requestMethod;
+		this.parameters = source.parameters;
+		this.headers = new HashMap<>(source.headers);
+		this.headers.keySet().removeIf(name::equalsIgnoreCase);
+		this.headers.put(name, value);
+		this.headerIndex = indexHeaders(this.headers);
+		this.date = source.date != null && name.equalsIgnoreCase("date") ? value : source.date;
+		this.canonAmzHeaders = name.regionMatches(true, 0, "x-amz-", 0, 6) ? null : source.canonAmzHeaders;
+		this.canonBucket = source.canonBucket;
+		this.subSourceString = source.subSourceString;
+	}
+	
+	/**
+	 * PRIVATE CONSTRUCTOR: Creates a copy of the given request with the given parameters in place
+	 * of its own.
+	 * 
+	 * @param source - The request to copy as {@link AWSRequest}
+	 * @param parameters - The parameters as {@link Map}
+	 * @param subResources - Whether the sub-resources changed as boolean
+	 */
+	private AWSRequest(AWSRequest source, Map<String, String> parameters, boolean subResources) {
+		this.endpoint = source.endpoint;
+		this.path = source.path;
+		this.bucket = source.bucket;
+		this.accessKey = source.accessKey;
+		this.secretKey = source.secretKey;
+		this.requestMethod = source.requestMethod;
+		this.parameters = parameters;
+		this.headers = source.headers;
+		this.headerIndex = source.headerIndex;
+		this.date = source.date;
+		this.canonAmzHeaders = source.canonAmzHeaders;
+		this.canonBucket = source.canonBucket;
+		this.subSourceString = subResources ? null : source.subSourceString;
 	}
 	
 	/**
@@ -91,6 +191,47 @@ public class AWSRequest {
 		return this.secretKey;
 	}
 	
+	/**
+	 * This method returns a copy of this request with the given header set, replacing any
+	 * header of the same name regardless of its case. This request itself is not changed.
+	 * 
+	 * @param name - The name of the header as {@link String}
+	 * @param value - The value of the header as {@link String}
+	 * @return Returns the new request as {@link AWSRequest}
+	 */
+	public AWSRequest withHeader(String name, String value) {
+		if (name == null || value == null) throw new NullPointerException();
+		
+		return new AWSRequest(this, name, value);
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method returns a copy of this request with the given parameter
+	 * set. This request itself is not changed.
+	 * 
+	 * @param name - The name of the parameter as {@link String}
+	 * @param value - The value of the parameter, or null for a sub-resource, as {@link String}
+	 * @return Returns the new request as {@link AWSRequest}
+	 */
+	AWSRequest withParameter(String name, String value) {
+		if (name == null) throw new NullPointerException();
+		final Map<String, String> params = new HashMap<>(this.parameters);
+		params.put(name, value);
+		
+		return new AWSRequest(this, params, value == null || VALUED_SUB_RESOURCES.contains(name));
+	}
+	
+	/**
+	 * This method returns the value of the given request parameter.
+	 * 
+	 * @param key - The name of the parameter as {@link String}
+	 * @return Returns the value as {@link String} or null if not present or a sub-resource without value
+	 */
+	public String getParameterValue(String key) {
+		
+		return this.parameters.get(key);
+	}
+	
 	public String getQueryString() {
 		StringBuilder sb = new StringBuilder();
 		int c = 0;
@@ -103,37 +244,141 @@ public class AWSRequest {
 	}
 	
 	public String getCanonAmzHeaders() {
-		ArrayList<String> headers = new ArrayList<>();
 		StringBuilder sb = new StringBuilder();
+		appendCanonAmzHeaders(new CanonWriter().toBuilder(sb), SigningScratch.get());
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method writes the CanonicalizedAmzHeaders of this request to
+	 * the given {@link CanonWriter}, sorting the matching headers in the given scratch area
+	 * instead of building an intermediate list of Strings.
+	 * 
+	 * @param sb - The writer to write to as {@link CanonWriter}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @return Returns true if any header was appended, otherwise false
+	 */
+	boolean appendCanonAmzHeaders(CanonWriter sb, SigningScratch scratch) {
+		if (this.canonAmzHeaders != null) {
+			sb.append(this.canonAmzHeaders);
+			
+			return !this.canonAmzHeaders.isEmpty();
+		}
 		
+		Entry<String, String>[] sorted = scratch.headers(this.headers.size());
+		int count = 0;
 		for (Entry<String, String> entry : this.headers.entrySet()) {
-			if (entry.getKey().toLowerCase().startsWith("x-amz-") && !entry.getKey().equalsIgnoreCase("x-amz-date")) {
-				headers.add(entry.getKey().toLowerCase() + ":" + entry.getValue());
+			String key = entry.getKey();
+			if (key.regionMatches(true, 0, "x-amz-", 0, 6) && !key.equalsIgnoreCase("x-amz-date")) {
+				sorted[count++] = entry;
 			}
 		}
+		SigningScratch.sort(sorted, 0, count, AWSRequest::compareCanonHeaders); // In place, even for many headers...
 		
-		Collections.sort(headers);
-		
-		int c = 0;
-		for (String header : headers) {
-			if (++c > 1) sb.append('\n');
-			sb.append(header);
+		for (int i = 0; i < count; i++) {
+			if (i > 0) sb.append('\n');
+			sb.appendLowerCase(sorted[i].getKey()).append(':').append(sorted[i].getValue());
+			sorted[i] = null;
 		}
 		
-		return sb.toString();
+		return count > 0;
 	}
 	
 	public String getSpecificHeaderValue(String headerKey) {
-		for (String key : this.headers.keySet()) {
-			if (key.equalsIgnoreCase(headerKey)) {
-				
-				return this.headers.get(key);
+		
+		return getNormalizedHeaderValue(headerKey.toLowerCase(Locale.ROOT));
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method looks up the value of a header by its already
+	 * lowercase name, without having to scan the headers.
+	 * 
+	 * @param lowerCaseKey - The lowercase name of the header as {@link String}
+	 * @return Returns the value of the header or an empty {@link String} if not found
+	 */
+	String getNormalizedHeaderValue(String lowerCaseKey) {
+		if (this.date != null && lowerCaseKey.equals("date")) {
+			
+			return this.date;
+		}
+		String value = this.headerIndex.get(lowerCaseKey);
+		
+		return value == null ? "" : value;
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method returns how many headers this request has, including
+	 * the Date of a request created from a template.
+	 * 
+	 * @return Returns the number of headers as int
+	 */
+	int getHeaderCount() {
+		
+		return this.headerIndex.size() + (this.date != null ? 1 : 0);
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method puts the sorted, lowercase names of the headers of this
+	 * request into the given array, as Signature Version 4 lists them, leaving out the Authorization
+	 * header itself.
+	 * 
+	 * @param dest - The array to fill, at least {@link #getHeaderCount()} long, as String[]
+	 * @return Returns the number of names as int
+	 */
+	int sortHeaderNames(String[] dest) {
+		int count = 0;
+		for (String name : this.headerIndex.keySet()) {
+			if (!name.equals("authorization") && !(this.date != null && name.equals("date"))) {
+				dest[count++] = name;
 			}
 		}
+		if (this.date != null) {
+			dest[count++] = "date";
+		}
+		SigningScratch.sort(dest, 0, count, Comparator.naturalOrder());
 		
-		return "";
+		return count;
 	}
 	
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method returns the parameter names of this request.
+	 * 
+	 * @return Returns the parameter names as {@link Set}
+	 */
+	Set<String> getParameterNames() {
+		
+		return this.parameters.keySet();
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method returns the parameters of this request.
+	 *
+	 * @return Returns the parameters, which must not be changed, as {@link Map}
+	 */
+	Map<String, String> getParameters() {
+
+		return this.parameters;
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method returns the headers of this request, including the
+	 * Date of a request created from a template.
+	 *
+	 * @return Returns the headers, which must not be changed, as {@link Map}
+	 */
+	Map<String, String> getHeaders() {
+		if (this.date == null) {
+
+			return this.headers;
+		}
+		final Map<String, String> all = new HashMap<>(this.headers);
+		all.keySet().removeIf("date"::equalsIgnoreCase);
+		all.put("Date", this.date);
+
+		return all;
+	}
+
 	public String[] getQueryParameters() {
 		ArrayList<String> results = new ArrayList<>();
 		for (Entry<String, String> entry : this.parameters.entrySet()) {
@@ -146,27 +391,48 @@ public class AWSRequest {
 	}
 	
 	public String getSubSourceString() {
-		ArrayList<String> results = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		appendSubSourceString(new CanonWriter().toBuilder(sb), SigningScratch.get());
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method appends the sub-resource portion of the CanonicalizedResource
+	 * to the given {@link CanonWriter}, sorting the sub-resources in the given scratch area. Parameters
+	 * without a value (such as ?acl) are always sub-resources; parameters with a value only are when
+	 * AWS signs them (such as ?partNumber=1&uploadId=...), and are appended with their raw value.
+	 * 
+	 * @param sb - The writer to write to as {@link CanonWriter}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 */
+	void appendSubSourceString(CanonWriter sb, SigningScratch scratch) {
+		if (this.subSourceString != null) {
+			sb.append(this.subSourceString);
+			
+			return;
+		}
+		
+		String[] sorted = scratch.subResources(this.parameters.size());
+		int count = 0;
 		for (Entry<String, String> entry : this.parameters.entrySet()) {
-			if (entry.getValue() == null) {
-				results.add(entry.getKey());
+			if (entry.getValue() == null || VALUED_SUB_RESOURCES.contains(entry.getKey())) {
+				int i = count++;
+				for (; i > 0 && sorted[i - 1].compareTo(entry.getKey()) > 0; i--) {
+					sorted[i] = sorted[i - 1];
+				}
+				sorted[i] = entry.getKey();
 			}
 		}
 		
-		Collections.sort(results);
-		
-		StringBuilder sb = new StringBuilder();
-		int c = 0;
-		for (String s : results) {
-			if (++c == 1) { 
-				sb.append('?');
-			} else { 
-				sb.append('&');
+		for (int i = 0; i < count; i++) {
+			sb.append(i == 0 ? '?' : '&').append(sorted[i]);
+			String value = this.parameters.get(sorted[i]);
+			if (value != null) {
+				sb.append('=').append(value);
 			}
-			sb.append(s);
+			sorted[i] = null;
 		}
-		
-		return sb.toString();
 	}
 	
 	private String[] getSortedParamKeys() {
@@ -181,20 +447,106 @@ public class AWSRequest {
 	}
 	
 	/**
+	 * This method returns the sorted request parameters, percent-encoded as AWS expects them in
+	 * the query string of a URL (a space becomes %20). Sub-resources without a value appear as
+	 * their bare name.
 	 * 
-	 * @return
-	 * @throws UnsupportedEncodingException
+	 * @return Returns the query string parameters as {@link String}
+	 * @throws UnsupportedEncodingException - Never thrown any longer, kept for existing callers
 	 */
 	public String getParamsForUrl() throws UnsupportedEncodingException {
 		StringBuilder sb = new StringBuilder();
-		int c = 0;
-		for (String key : this.getSortedParamKeys()) {
-			if (++c > 1) sb.append('&');
-			sb.append(key).append('=').append(URLEncoder.encode(this.parameters.get(key), "UTF-8"));
+		appendParamsForUrl(sb, SigningScratch.get());
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method appends the sorted, percent-encoded request parameters
+	 * to the given {@link StringBuilder}, as they belong in the query string of a URL.
+	 * 
+	 * @param sb - The builder to append to as {@link StringBuilder}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @return Returns true if any parameter was appended, otherwise false
+	 */
+	boolean appendParamsForUrl(StringBuilder sb, SigningScratch scratch) {
+		String[] sorted = scratch.subResources(this.parameters.size());
+		int count = 0;
+		for (String key : this.parameters.keySet()) {
+			sorted[count++] = key;
 		}
+		SigningScratch.sort(sorted, 0, count, Comparator.naturalOrder());
 		
+		for (int i = 0; i < count; i++) {
+			if (i > 0) sb.append('&');
+			PercentEncoder.encode(sorted[i], sb);
+			String value = this.parameters.get(sorted[i]);
+			if (value != null) { // Sub-resources such as ?acl have no value...
+				sb.append('=');
+				PercentEncoder.encode(value, sb);
+			}
+			sorted[i] = null;
+		}
 		
+		return count > 0;
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method appends the bucket portion of the CanonicalizedResource
+	 * to the given {@link CanonWriter}.
+	 * 
+	 * @param sb - The writer to write to as {@link CanonWriter}
+	 */
+	void appendCanonBucket(CanonWriter sb) {
+		if (this.canonBucket != null) {
+			sb.append(this.canonBucket);
+		} else if (!this.bucket.isEmpty()) {
+			sb.append('/').append(this.bucket);
+		} else {
+			sb.append('/');
+		}
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE METHOD: Builds the index of lowercase header names to values. Where several
+	 * headers only differ in case, the first one found wins, just as with a scan of the headers.
+	 * 
+	 * @param headers - The headers to index as {@link Map}
+	 * @return Returns the index as {@link Map}
+	 */
+	static Map<String, String> indexHeaders(Map<String, String> headers) {
+		Map<String, String> index = new HashMap<>(headers.size() * 2);
+		for (Entry<String, String> entry : headers.entrySet()) {
+			index.putIfAbsent(entry.getKey().toLowerCase(Locale.ROOT), entry.getValue());
+		}
 		
-		return sb.toString();
+		return index;
+	}
+	
+	/**
+	 * PRIVATE METHOD: Compares two headers the same way their "lowercase-key:value" Strings
+	 * would compare, without building those Strings.
+	 * 
+	 * @param a - The first header as {@link Entry}
+	 * @param b - The second header as {@link Entry}
+	 * @return Returns a negative, zero or positive int as with {@link String#compareTo(String)}
+	 */
+	private static int compareCanonHeaders(Entry<String, String> a, Entry<String, String> b) {
+		final String aKey = a.getKey(), bKey = b.getKey();
+		final int aLen = aKey.length(), bLen = bKey.length();
+		final int len = Math.min(aLen, bLen);
+		for (int i = 0; i < len; i++) {
+			char ac = aKey.charAt(i), bc = bKey.charAt(i);
+			if (ac != bc && (ac = Character.toLowerCase(ac)) != (bc = Character.toLowerCase(bc))) {
+				
+				return ac - bc;
+			}
+		}
+		if (aLen != bLen) { // The shorter key is followed by the ':' separator...
+			
+			return aLen < bLen ? ':' - Character.toLowerCase(bKey.charAt(len)) : Character.toLowerCase(aKey.charAt(len)) - ':';
+		}
+		
+		return String.valueOf(a.getValue()).compareTo(String.valueOf(b.getValue()));
 	}
 }
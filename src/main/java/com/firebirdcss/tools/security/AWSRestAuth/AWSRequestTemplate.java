@@ -0,0 +1,125 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This is an immutable template for requests that all share the same shape, such as
+ * many requests against a single bucket that only differ in object key and date.
+ * <p>
+ * The static parts of the request are canonicalized once when the template is created:
+ * the sorted CanonicalizedAmzHeaders block, the bucket portion of the CanonicalizedResource
+ * and the sorted sub-resource string, along with a lowercase index of the headers. Requests
+ * created through {@link #newRequest(String, String)} share all of that, so signing them only
+ * has to fill in the path and date.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class AWSRequestTemplate {
+	private final String endpoint;
+	private final String bucket;
+	private final String accessKey;
+	private final String secretKey;
+	private final String requestMethod;
+
+	final Map<String, String> parameters;
+	final Map<String, String> headers;
+	final Map<String, String> headerIndex;
+	final String canonAmzHeaders;
+	final String canonBucket;
+	final String subSourceString;
+
+	/**
+	 * CONSTRUCTOR: Creates a template from the static parts of a request. The Date header is
+	 * given per request to {@link #newRequest(String, String)}.
+	 *
+	 * @param endpoint - The endpoint (host) as {@link String}
+	 * @param bucket - The bucket as {@link String}
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secretKey - The AWS secret key as {@link String}
+	 * @param requestMethod - The request method as {@link String}
+	 * @param requestParameters - The static request parameters as {@link HashMap}
+	 * @param requestHeaders - The static request headers as {@link HashMap}
+	 */
+	public AWSRequestTemplate(
+			String endpoint,
+			String bucket,
+			String accessKey,
+			String secretKey,
+			String requestMethod,
+			HashMap<String, String> requestParameters,
+			HashMap<String, String> requestHeaders
+	) {
+		final AWSRequest prototype = new AWSRequest(endpoint, null, bucket, accessKey, secretKey, requestMethod, requestParameters, requestHeaders);
+		this.endpoint = prototype.getBaseUrl();
+		this.bucket = prototype.getBucket();
+		this.accessKey = prototype.getAccessKey();
+		this.secretKey = prototype.getSecretKey();
+		this.requestMethod = prototype.getRequestMethod();
+
+		final Map<String, String> params = new HashMap<>();
+		if (requestParameters != null) {
+			params.putAll(requestParameters);
+		}
+		this.parameters = Collections.unmodifiableMap(params);
+
+		final Map<String, String> heads = new HashMap<>();
+		if (!this.endpoint.isEmpty()) {
+			heads.put("Host", this.endpoint);
+		}
+		if (requestHeaders != null) {
+			heads.putAll(requestHeaders);
+		}
+		this.headers = Collections.unmodifiableMap(heads);
+		this.headerIndex = Collections.unmodifiableMap(AWSRequest.indexHeaders(heads));
+
+		this.canonAmzHeaders = prototype.getCanonAmzHeaders();
+		this.canonBucket = this.bucket.isEmpty() ? "/" : "/" + this.bucket;
+		this.subSourceString = prototype.getSubSourceString();
+	}
+
+	/**
+	 * This method creates a new request from this template.
+	 *
+	 * @param path - The request path (object key) as {@link String}
+	 * @param date - The value of the Date header as {@link String}
+	 * @return Returns the new request as {@link AWSRequest}
+	 */
+	public AWSRequest newRequest(String path, String date) {
+
+		return new AWSRequest(this, path, date);
+	}
+
+	/**
+	 * This method creates a new request from this template, dated by {@link DateSource#SYSTEM}.
+	 *
+	 * @param path - The request path (object key) as {@link String}
+	 * @return Returns the new request as {@link AWSRequest}
+	 */
+	public AWSRequest newRequest(String path) {
+
+		return new AWSRequest(this, path, DateSource.SYSTEM.getHttpDate());
+	}
+
+	public String getBaseUrl() {
+		return this.endpoint;
+	}
+
+	public String getBucket() {
+		return this.bucket;
+	}
+
+	public String getAccessKey() {
+		return this.accessKey;
+	}
+
+	public String getSecretKey() {
+		return this.secretKey;
+	}
+
+	public String getRequestMethod() {
+		return this.requestMethod;
+	}
+}
@@ -0,0 +1,148 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * This class is the command line entry point of the jar. It signs request specs in bulk with a
+ * {@link BulkSigner}, reading them from a file or stdin and writing one line per spec to stdout
+ * or a file, and reports the lines per second to stderr once done.
+ * <p>
+ * The keys are taken from a credentials file when one is given, otherwise from the
+ * AWS_ACCESS_KEY_ID, AWS_SECRET_ACCESS_KEY and AWS_SESSION_TOKEN environment variables. They can
+ * not be given as arguments, so they never show up in the list of processes.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class ApplicationMain {
+	private static final String DEFAULT_ENDPOINT = "s3.amazonaws.com";
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final String USAGE = String.join(System.lineSeparator(),
+		"Usage: java -jar aws-rest-authenticator.jar [options] [specs-file|-]",
+		"Signs one request spec per line (METHOD<tab>BUCKET<tab>PATH<tab>HEADERS<tab>PARAMS),",
+		"read from the file or stdin, and writes the headers to add to each request in input order.",
+		"Options:",
+		"  --presign SECONDS      Write presigned URLs valid for the given seconds instead",
+		"  --endpoint HOST        The endpoint, " + DEFAULT_ENDPOINT + " by default",
+		"  --threads N            The number of signing threads, one per core by default",
+		"  --credentials FILE     Read the keys from the given credentials file",
+		"  --profile NAME         The profile of the credentials file, " + FileCredentialsProvider.DEFAULT_PROFILE + " by default",
+		"  --output FILE          Write to the given file instead of stdout"
+	);
+
+	private ApplicationMain() {}
+
+	/**
+	 * This method is the entry point of the application. It exits with 0 when every spec was
+	 * signed, 1 when some were not and 2 when it could not run at all.
+	 *
+	 * @param args - The command line arguments as {@link String}[]
+	 */
+	public static void main(String[] args) {
+		System.exit(run(args, System.err));
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Runs the application with the given arguments.
+	 *
+	 * @param args - The command line arguments as {@link String}[]
+	 * @param err - The destination of the report and errors as {@link PrintStream}
+	 * @return Returns the exit status as int
+	 */
+	static int run(String[] args, PrintStream err) {
+		long presign = -1;
+		String endpoint = DEFAULT_ENDPOINT;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String credentialsFile = null;
+		String profile = FileCredentialsProvider.DEFAULT_PROFILE;
+		String output = null;
+		String input = "-";
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+					case "--presign":
+						presign = Long.parseLong(valueOf(args, ++i));
+						if (presign < 0) throw new IllegalArgumentException("The presign seconds can not be negative!");
+						break;
+					case "--endpoint": endpoint = valueOf(args, ++i); break;
+					case "--threads": threads = Integer.parseInt(valueOf(args, ++i)); break;
+					case "--credentials": credentialsFile = valueOf(args, ++i); break;
+					case "--profile": profile = valueOf(args, ++i); break;
+					case "--output": output = valueOf(args, ++i); break;
+					case "-h":
+					case "--help":
+						err.println(USAGE);
+
+						return 0;
+					default:
+						if (args[i].startsWith("--") || i != args.length - 1) throw new IllegalArgumentException("Unexpected argument '" + args[i] + "'!");
+						input = args[i];
+				}
+			}
+			if (threads < 1) throw new IllegalArgumentException("There must be at least one thread!");
+		} catch (IllegalArgumentException e) {
+			err.println(e.getMessage());
+			err.println(USAGE);
+
+			return 2;
+		}
+
+		try (
+			FileCredentialsProvider keys = credentialsFile == null ? null : new FileCredentialsProvider(Paths.get(credentialsFile), profile);
+			BufferedReader in = "-".equals(input)
+				? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BUFFER_SIZE)
+				: Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8);
+			Writer out = output == null
+				? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER_SIZE)
+				: Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8);
+			BulkSigner signer = new BulkSigner(keys == null ? environmentCredentials() : keys, endpoint, threads)
+		) {
+			final BulkSigner.Result result = presign < 0
+				? signer.signAll(in, out)
+				: signer.presignAll(in, out, DateSource.SYSTEM.getEpochSecond() + presign);
+			err.println(String.format("Signed %d lines in %.3f s (%.0f lines/s), %d errors",
+				result.getLines(), result.getNanos() / 1e9, result.getLinesPerSecond(), result.getErrors()));
+
+			return result.getErrors() == 0 ? 0 : 1;
+		} catch (Exception e) {
+			err.println("Unable to sign the requests: " + e);
+
+			return 2;
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the value of an option.
+	 *
+	 * @param args - The command line arguments as {@link String}[]
+	 * @param i - The index of the value as int
+	 * @return Returns the value as {@link String}
+	 */
+	private static String valueOf(String[] args, int i) {
+		if (i >= args.length) throw new IllegalArgumentException("Missing the value of '" + args[i - 1] + "'!");
+
+		return args[i];
+	}
+
+	/**
+	 * PRIVATE METHOD: Creates the provider of the keys in the environment.
+	 *
+	 * @return Returns the provider as {@link CredentialsProvider}
+	 */
+	private static CredentialsProvider environmentCredentials() {
+		final String accessKey = System.getenv("AWS_ACCESS_KEY_ID");
+		final String secretKey = System.getenv("AWS_SECRET_ACCESS_KEY");
+		if (accessKey == null || secretKey == null) throw new IllegalStateException("No --credentials file given and AWS_ACCESS_KEY_ID or AWS_SECRET_ACCESS_KEY is not set!");
+		final Credentials keys = new Credentials(accessKey, secretKey, System.getenv("AWS_SESSION_TOKEN"), Credentials.NEVER_EXPIRES);
+
+		return () -> keys;
+	}
+}
@@ -1,15 +1,13 @@
 package com.firebirdcss.tools.security.AWSRestAuth;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
-import org.apache.commons.codec.binary.Base64;
-
 import com.firebirdcss.tools.security.AWSRestAuth.exceptions.MalformedUrlException;
 
 /**
@@ -19,6 +17,10 @@ import com.firebirdcss.tools.security.AWSRestAuth.exceptions.MalformedUrlExcepti
  *
  */
 public final class AwsAuthV2Util {
+	static final long NO_EXPIRES = -1L;
+	static final String SECURITY_TOKEN = "x-amz-security-token";
+	private static final String AUTHORIZATION = "Authorization";
+	private static final byte[] AUTH_HEADER_PREFIX = "Authorization: AWS ".getBytes(StandardCharsets.US_ASCII);
 	
 	/**
 	 * This method uses the specified key to sign the given data.
@@ -34,16 +36,17 @@ public final class AwsAuthV2Util {
 	 * @throws UnsupportedEncodingException 
 	 */
 	public static  String signString(final String key, final String data) throws NoSuchAlgorithmException, InvalidKeyException, UnsupportedEncodingException {
-		final String hashType = "HmacSHA1";
 		if (key == null || data == null) throw new NullPointerException();
-		final Mac hMacSHA256 = Mac.getInstance(hashType);
-		byte[] hmacKeyBytes = key.getBytes(StandardCharsets.UTF_8);
-		final SecretKeySpec secretKey = new SecretKeySpec(hmacKeyBytes, hashType);
-		hMacSHA256.init(secretKey);
-		byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
-		byte[] res = hMacSHA256.doFinal(dataBytes);
+		final SigningMetricsListener metrics = SigningMetrics.getListener();
+		final long start = SigningMetrics.start(metrics);
+		final SigningEngine engine = SigningEngines.get();
+		final SigningEngine.Hmac hmac = newHmac(engine, key, metrics);
+		final SigningScratch scratch = SigningScratch.get();
+		scratch.writer.toHmac(hmac).append(data).finish(); // Encodes without copying the data...
+		final int length = finishSignature(engine, hmac, scratch);
+		if (metrics != SigningMetricsListener.NOOP) metrics.onSigned(SigningMetrics.elapsed(start));
 
-		return Base64.encodeBase64String(res);
+		return new String(scratch.signature, 0, length, StandardCharsets.US_ASCII);
 	}
 	
 	/**
@@ -58,39 +61,30 @@ public final class AwsAuthV2Util {
 	 * @throws MalformedUrlException 
 	 */
 	public static String genStringToSign(AWSRequest request) {
-		final StringBuilder stringToSign = new StringBuilder();
-		String tempValue = "";
-		
-		/* Append RequestMethod */
-		stringToSign.append(request.getRequestMethod()).append('\n');
-		
-		/* Append Content MD5 */
-		if (!(tempValue = request.getSpecificHeaderValue("Content-MD5")).isEmpty()) {
-			stringToSign.append(tempValue);
-		}
-		stringToSign.append('\n'); // Yes, this makes a place-holder if no ContentMD5
-		
-		/* Append Content Type */
-		if (!(tempValue = request.getSpecificHeaderValue("Content-Type")).isEmpty()) {
-			stringToSign.append(tempValue);
-		}
-		stringToSign.append('\n'); // Yep, This does the place-holder thing in no ContentType
-		
-		/* Append Date */
-		if (!(tempValue = request.getSpecificHeaderValue("x-amz-date")).isEmpty()) { // This one is priority...
-			stringToSign.append(tempValue).append('\n');
-		} else if (!(tempValue = request.getSpecificHeaderValue("Date")).isEmpty()) { // If Priority not found...
-			stringToSign.append(tempValue).append('\n');
-		}
-		
-		/* Append Canonicalized Amazon Headers */
-		if (!(tempValue = request.getCanonAmzHeaders()).isEmpty()) {
-			stringToSign.append(tempValue).append('\n');
-		}
-		
-		/* Append Canonicalized Resource */
-		stringToSign.append(getCanonResource(request));
+		final SigningScratch scratch = SigningScratch.get();
+		final StringBuilder stringToSign = scratch.canon;
+		stringToSign.setLength(0);
+		canonicalize(request, scratch.writer.toBuilder(stringToSign), scratch, NO_EXPIRES);
 		
+		return stringToSign.toString();
+	}
+	
+	/**
+	 * This method generates the AWS StringToSign for query string authentication (a presigned URL)
+	 * of the given request, which uses the Expires time in place of the Date.
+	 * 
+	 * @see https://docs.aws.amazon.com/AmazonS3/latest/dev/RESTAuthentication.html#RESTAuthenticationQueryStringAuth
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param expires - The time the URL expires in seconds since the epoch as long
+	 * @return Returns the generated StringToSign as {@link String}
+	 */
+	public static String genStringToSign(AWSRequest request, long expires) {
+		if (expires < 0) throw new IllegalArgumentException("Expires must not be negative!");
+		final SigningScratch scratch = SigningScratch.get();
+		final StringBuilder stringToSign = scratch.canon;
+		stringToSign.setLength(0);
+		canonicalize(request, scratch.writer.toBuilder(stringToSign), scratch, expires);
 		
 		return stringToSign.toString();
 	}
@@ -108,35 +102,490 @@ public final class AwsAuthV2Util {
 	 * @throws UnsupportedEncodingException
 	 */
 	public static String genAuthHeader(AWSRequest request) throws InvalidKeyException, NoSuchAlgorithmException, UnsupportedEncodingException {
-		StringBuilder sb = new StringBuilder();
+		final SigningScratch scratch = SigningScratch.get();
+		final SigningEngine engine = SigningEngines.get();
+		final int sigLength = signStreamed(request, engine, newHmac(engine, request.getSecretKey(), SigningMetrics.getListener()), scratch, NO_EXPIRES);
+		StringBuilder sb = new StringBuilder(AUTH_HEADER_PREFIX.length + request.getAccessKey().length() + 1 + sigLength);
 		sb
 			.append("Authorization: AWS ")
 			.append(request.getAccessKey())
 			.append(':')
-			.append(signString(request.getSecretKey(), genStringToSign(request)))
 		;
+		for (int i = 0; i < sigLength; i++) {
+			sb.append((char) scratch.signature[i]);
+		}
 		
 		return sb.toString();
 	}
+
+	/**
+	 * This method generates a properly formatted Authorization header for the given request
+	 * using the already initialized HMAC state of the given {@link Signer}. The access key and
+	 * secret key of the {@link Signer} are used in place of the ones held by the request.
+	 *
+	 * @see https://docs.aws.amazon.com/AmazonS3/latest/dev/RESTAuthentication.html#The%20Authentication%20Header
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys as {@link Signer}
+	 * @return Returns the generated Authorization header as {@link String}
+	 */
+	public static String genAuthHeader(AWSRequest request, Signer signer) {
+		
+		return genAuthHeader(request, signer, (SignatureCache) null);
+	}
+	
+	/**
+	 * This method generates a properly formatted Authorization header for the given request
+	 * like {@link #genAuthHeader(AWSRequest, Signer)} does, reusing the signature of the same
+	 * StringToSign from the given cache if it was signed before.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys as {@link Signer}
+	 * @param cache - The signature cache or null for none as {@link SignatureCache}
+	 * @return Returns the generated Authorization header as {@link String}
+	 */
+	public static String genAuthHeader(AWSRequest request, Signer signer, SignatureCache cache) {
+		final SigningScratch scratch = SigningScratch.get();
+		final int sigLength = signInto(request, signer, scratch, NO_EXPIRES, cache);
+		StringBuilder sb = new StringBuilder(AUTH_HEADER_PREFIX.length + signer.getAccessKey().length() + 1 + sigLength);
+		sb
+			.append("Authorization: AWS ")
+			.append(signer.getAccessKey())
+			.append(':')
+		;
+		for (int i = 0; i < sigLength; i++) {
+			sb.append((char) scratch.signature[i]);
+		}
+
+		return sb.toString();
+	}
 	
 	/**
-	 * PRIVATE METHOD: This method is used to get the CanonicalizedResource from a request.
+	 * This method generates a properly formatted Authorization header for the given request with
+	 * the current credentials of the given {@link CredentialsProvider}, which are used in place of
+	 * the keys held by the request. This never blocks, even while the keys are being rotated.
+	 * <p>
+	 * When the credentials carry a session token, the signature covers an x-amz-security-token
+	 * header the request must then be sent with, which this method can not hand back; use
+	 * {@link #signRequest(AWSRequest, CredentialsProvider)} instead.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @param credentials - The source of the keys as {@link CredentialsProvider}
+	 * @return Returns the generated Authorization header as {@link String}
+	 * 
+	 * @deprecated Loses the session token of temporary credentials, use {@link #signRequest(AWSRequest, CredentialsProvider)}
+	 */
+	@Deprecated
+	public static String genAuthHeader(AWSRequest request, CredentialsProvider credentials) {
+		final Credentials keys = credentials.getCredentials();
+		
+		return genAuthHeader(withSessionToken(request, keys), keys.getSigner());
+	}
+	
+	/**
+	 * This method signs the given request with the current credentials of the given
+	 * {@link CredentialsProvider}, which are used in place of the keys held by the request. The
+	 * credentials are read once, so the session token and the keys always belong together.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @param credentials - The source of the keys as {@link CredentialsProvider}
+	 * @return Returns a copy of the request with its Authorization header, and the x-amz-security-token
+	 * header of session credentials, set as {@link AWSRequest}
+	 */
+	public static AWSRequest signRequest(AWSRequest request, CredentialsProvider credentials) {
+		final Credentials keys = credentials.getCredentials();
+		final AWSRequest signed = withSessionToken(request, keys);
+		final String authorization = genAuthHeader(signed, keys.getSigner());
+		
+		return signed.withHeader(AUTHORIZATION, authorization.substring(AUTHORIZATION.length() + 2));
+	}
+	
+	/**
+	 * This method generates a presigned URL for the given request with the current credentials of
+	 * the given {@link CredentialsProvider}, which are used in place of the keys held by the request.
+	 * The session token of temporary credentials is signed and carried in the URL.
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param credentials - The source of the keys as {@link CredentialsProvider}
+	 * @param expires - The time the URL expires in seconds since the epoch as long
+	 * @return Returns the presigned URL as {@link String}
+	 */
+	public static String genPresignedUrl(AWSRequest request, CredentialsProvider credentials, long expires) {
+		final Credentials keys = credentials.getCredentials();
+		AWSRequest signed = withSessionToken(request, keys);
+		if (keys.getSessionToken() != null) {
+			signed = signed.withParameter(SECURITY_TOKEN, keys.getSessionToken());
+		}
+		
+		return genPresignedUrl(signed, keys.getSigner(), expires);
+	}
+	
+	/**
+	 * PRIVATE METHOD: Returns the given request with the x-amz-security-token header of the given
+	 * credentials set, or the request itself if they have no session token.
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param keys - The credentials as {@link Credentials}
+	 * @return Returns the request to sign as {@link AWSRequest}
+	 */
+	private static AWSRequest withSessionToken(AWSRequest request, Credentials keys) {
+		
+		return keys.getSessionToken() == null ? request : request.withHeader(SECURITY_TOKEN, keys.getSessionToken());
+	}
+	
+	/**
+	 * This method generates a presigned URL for the given request using query string authentication,
+	 * so the request can be made without an Authorization header until the given Expires time.
+	 * 
+	 * @see https://docs.aws.amazon.com/AmazonS3/latest/dev/RESTAuthentication.html#RESTAuthenticationQueryStringAuth
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys as {@link Signer}
+	 * @param expires - The time the URL expires in seconds since the epoch as long
+	 * @return Returns the presigned URL as {@link String}
+	 */
+	public static String genPresignedUrl(AWSRequest request, Signer signer, long expires) {
+		
+		return genPresignedUrl(request, signer, expires, (SignatureCache) null);
+	}
+	
+	/**
+	 * This method generates a presigned URL for the given request like
+	 * {@link #genPresignedUrl(AWSRequest, Signer, long)} does, reusing the signature of the same
+	 * StringToSign from the given cache if it was signed before.
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys as {@link Signer}
+	 * @param expires - The time the URL expires in seconds since the epoch as long
+	 * @param cache - The signature cache or null for none as {@link SignatureCache}
+	 * @return Returns the presigned URL as {@link String}
+	 */
+	public static String genPresignedUrl(AWSRequest request, Signer signer, long expires, SignatureCache cache) {
+		final SigningScratch scratch = SigningScratch.get();
+		buildPresignedUrl(request, signer, expires, scratch, cache);
+		
+		return scratch.canon.toString();
+	}
+	
+	/**
+	 * This method generates a presigned URL for the given request using query string authentication
+	 * and writes it into the given {@link CharBuffer}, starting at its current position. Once the
+	 * calling thread has warmed up, this does not allocate any memory.
+	 * 
+	 * @see https://docs.aws.amazon.com/AmazonS3/latest/dev/RESTAuthentication.html#RESTAuthenticationQueryStringAuth
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys as {@link Signer}
+	 * @param expires - The time the URL expires in seconds since the epoch as long
+	 * @param dest - The destination to write the URL into as {@link CharBuffer}
+	 * @return Returns the number of chars written as int
+	 * 
+	 * @throws BufferOverflowException if the destination is too small, in which case nothing is written
+	 */
+	public static int genPresignedUrl(AWSRequest request, Signer signer, long expires, CharBuffer dest) {
+		final SigningScratch scratch = SigningScratch.get();
+		buildPresignedUrl(request, signer, expires, scratch, null);
+		final StringBuilder url = scratch.canon;
+		final int length = url.length();
+		if (dest.remaining() < length) throw new BufferOverflowException();
+		
+		for (int i = 0; i < length; i++) {
+			dest.put(url.charAt(i));
+		}
+		
+		return length;
+	}
+	
+	/**
+	 * PRIVATE METHOD: This method signs the given request for query string authentication and then
+	 * builds the presigned URL in {@link SigningScratch#canon}, which the StringToSign no longer needs.
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys as {@link Signer}
+	 * @param expires - The time the URL expires in seconds since the epoch as long
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @param cache - The signature cache or null for none as {@link SignatureCache}
+	 */
+	private static void buildPresignedUrl(AWSRequest request, Signer signer, long expires, SigningScratch scratch, SignatureCache cache) {
+		if (expires < 0) throw new IllegalArgumentException("Expires must not be negative!");
+		final int sigLength = signInto(request, signer, scratch, expires, cache);
+		
+		final StringBuilder sb = scratch.canon;
+		sb.setLength(0);
+		sb.append("https://").append(request.getBaseUrl());
+		if (!request.getPath().startsWith("/")) sb.append('/');
+		sb.append(request.getPath()).append('?');
+		if (request.appendParamsForUrl(sb, scratch)) {
+			sb.append('&');
+		}
+		sb.append("AWSAccessKeyId=");
+		PercentEncoder.encode(signer.getAccessKey(), sb);
+		sb.append("&Expires=").append(expires).append("&Signature=");
+		PercentEncoder.encode(scratch.signature, 0, sigLength, sb);
+	}
+
+	/**
+	 * This method generates a properly formatted Authorization header for the given request and writes
+	 * it into the given {@link CharBuffer}, starting at its current position. Once the calling thread
+	 * has warmed up, this does not allocate any memory.
+	 * 
+	 * @see https://docs.aws.amazon.com/AmazonS3/latest/dev/RESTAuthentication.html#The%20Authentication%20Header
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys as {@link Signer}
+	 * @param dest - The destination to write the header into as {@link CharBuffer}
+	 * @return Returns the number of chars written as int
+	 * 
+	 * @throws BufferOverflowException if the destination is too small, in which case nothing is written
+	 */
+	public static int genAuthHeader(AWSRequest request, Signer signer, CharBuffer dest) {
+		final SigningScratch scratch = SigningScratch.get();
+		final int sigLength = signInto(request, signer, scratch, NO_EXPIRES);
+		final String accessKey = signer.getAccessKey();
+		final int length = AUTH_HEADER_PREFIX.length + accessKey.length() + 1 + sigLength;
+		if (dest.remaining() < length) throw new BufferOverflowException();
+		
+		for (byte b : AUTH_HEADER_PREFIX) {
+			dest.put((char) b);
+		}
+		dest.put(accessKey).put(':');
+		for (int i = 0; i < sigLength; i++) {
+			dest.put((char) scratch.signature[i]);
+		}
+		
+		return length;
+	}
+	
+	/**
+	 * This method generates a properly formatted Authorization header for the given request and writes
+	 * it as UTF-8 into the given {@link ByteBuffer}, starting at its current position. Once the calling
+	 * thread has warmed up, this does not allocate any memory.
+	 * 
+	 * @see https://docs.aws.amazon.com/AmazonS3/latest/dev/RESTAuthentication.html#The%20Authentication%20Header
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys as {@link Signer}
+	 * @param dest - The destination to write the header into as {@link ByteBuffer}
+	 * @return Returns the number of bytes written as int
+	 * 
+	 * @throws BufferOverflowException if the destination is too small, in which case nothing is written
+	 */
+	public static int genAuthHeader(AWSRequest request, Signer signer, ByteBuffer dest) {
+		final SigningScratch scratch = SigningScratch.get();
+		final int sigLength = signInto(request, signer, scratch, NO_EXPIRES);
+		final StringBuilder accessKey = scratch.canon; // String to sign is no longer needed...
+		accessKey.setLength(0);
+		accessKey.append(signer.getAccessKey());
+		final int keyLength = scratch.encodeCanon();
+		final int length = AUTH_HEADER_PREFIX.length + keyLength + 1 + sigLength;
+		if (dest.remaining() < length) throw new BufferOverflowException();
+		
+		dest.put(AUTH_HEADER_PREFIX).put(scratch.utf8, 0, keyLength).put((byte) ':').put(scratch.signature, 0, sigLength);
+		
+		return length;
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method canonicalizes and signs the given request entirely within the
+	 * given scratch area, leaving the Base64 signature in {@link SigningScratch#signature}.
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys as {@link Signer}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @param expires - The Expires time to sign in place of the Date, or {@link #NO_EXPIRES}
+	 * @return Returns the length of the signature as int
+	 */
+	static int signInto(AWSRequest request, Signer signer, SigningScratch scratch, long expires) {
+		
+		return signInto(request, signer, scratch, expires, null);
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method canonicalizes and signs the given request like
+	 * {@link #signInto(AWSRequest, Signer, SigningScratch, long)} does, taking the signature from
+	 * the given cache when the same StringToSign was signed before. Without a cache the StringToSign
+	 * is streamed straight into the HMAC as it is canonicalized, and never built at all.
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys as {@link Signer}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @param expires - The Expires time to sign in place of the Date, or {@link #NO_EXPIRES}
+	 * @param cache - The signature cache or null for none as {@link SignatureCache}
+	 * @return Returns the length of the signature as int
+	 */
+	static int signInto(AWSRequest request, Signer signer, SigningScratch scratch, long expires, SignatureCache cache) {
+		if (cache != null) {
+			scratch.canon.setLength(0);
+			canonicalize(request, scratch.writer.toBuilder(scratch.canon), scratch, expires);
+			
+			return cache.signCanon(signer, scratch);
+		}
+		
+		return signStreamed(request, signer.getEngine(), signer.getHmac(), scratch, expires);
+	}
+	
+	/**
+	 * PRIVATE METHOD: This method canonicalizes the given request straight into the given
+	 * HMAC and signs it, leaving the Base64 signature in {@link SigningScratch#signature}.
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param engine - The engine to encode the signature with as {@link SigningEngine}
+	 * @param hmac - The initialized HMAC in its reset state as {@link SigningEngine.Hmac}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @param expires - The Expires time to sign in place of the Date, or {@link #NO_EXPIRES}
+	 * @return Returns the length of the signature as int
+	 */
+	private static int signStreamed(AWSRequest request, SigningEngine engine, SigningEngine.Hmac hmac, SigningScratch scratch, long expires) {
+		try {
+			canonicalize(request, scratch.writer.toHmac(hmac), scratch, expires);
+			scratch.writer.finish();
+		} catch (RuntimeException e) { // Leaves the thread's HMAC ready for the next request...
+			hmac.reset();
+			throw e;
+		}
+		final SigningMetricsListener metrics = SigningMetrics.getListener();
+		final long start = SigningMetrics.start(metrics);
+		final int length = finishSignature(engine, hmac, scratch);
+		if (metrics != SigningMetricsListener.NOOP) metrics.onSigned(SigningMetrics.elapsed(start));
+		
+		return length;
+	}
+	
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method signs the StringToSign already built in
+	 * {@link SigningScratch#canon}, leaving the Base64 signature in {@link SigningScratch#signature}.
+	 * 
+	 * @param signer - The signer for the request's keys as {@link Signer}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @return Returns the length of the signature as int
+	 */
+	static int signCanon(Signer signer, SigningScratch scratch) {
+		final SigningMetricsListener metrics = SigningMetrics.getListener();
+		final long start = SigningMetrics.start(metrics);
+		final SigningEngine.Hmac hmac = signer.getHmac();
+		scratch.writer.toHmac(hmac).append(scratch.canon).finish();
+		final int length = finishSignature(signer.getEngine(), hmac, scratch);
+		if (metrics != SigningMetricsListener.NOOP) metrics.onSigned(SigningMetrics.elapsed(start));
+		
+		return length;
+	}
+	
+	/**
+	 * PRIVATE METHOD: This method creates a new HMAC initialized with the given secret key,
+	 * reporting a failure to the given {@link SigningMetricsListener} before throwing it.
+	 * 
+	 * @param engine - The engine to create the HMAC with as {@link SigningEngine}
+	 * @param key - The secret key as {@link String}
+	 * @param metrics - The listener to report to as {@link SigningMetricsListener}
+	 * @return Returns the initialized HMAC as {@link SigningEngine.Hmac}
+	 * 
+	 * @throws NoSuchAlgorithmException
+	 * @throws InvalidKeyException
+	 */
+	private static SigningEngine.Hmac newHmac(SigningEngine engine, String key, SigningMetricsListener metrics) throws NoSuchAlgorithmException, InvalidKeyException {
+		try {
+			
+			return engine.newHmac(key.getBytes(StandardCharsets.UTF_8));
+		} catch (Exception e) { // Rethrown as is...
+			metrics.onError(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * PRIVATE METHOD: This method finishes the HMAC of the StringToSign streamed into it,
+	 * leaving the Base64 signature in {@link SigningScratch#signature}.
+	 * 
+	 * @param engine - The engine to encode the signature with as {@link SigningEngine}
+	 * @param hmac - The HMAC holding the StringToSign as {@link SigningEngine.Hmac}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @return Returns the length of the signature as int
+	 */
+	private static int finishSignature(SigningEngine engine, SigningEngine.Hmac hmac, SigningScratch scratch) {
+		
+		return scratch.encodeSignature(engine, scratch.digest, hmac.doFinal(scratch.digest, 0));
+	}
+	
+	/**
+	 * PRIVATE METHOD: This method appends the AWS StringToSign for the given request like
+	 * {@link #appendStringToSign(AWSRequest, CanonWriter, SigningScratch, long)} does, reporting
+	 * how long it took to the installed {@link SigningMetricsListener}.
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param stringToSign - The writer to write to as {@link CanonWriter}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @param expires - The Expires time to use in place of the Date, or {@link #NO_EXPIRES}
+	 */
+	private static void canonicalize(AWSRequest request, CanonWriter stringToSign, SigningScratch scratch, long expires) {
+		final SigningTraceRecorder trace = SigningTraceRecorder.getInstalled();
+		if (trace != null) trace.record(request);
+		final SigningMetricsListener metrics = SigningMetrics.getListener();
+		final long start = SigningMetrics.start(metrics);
+		appendStringToSign(request, stringToSign, scratch, expires);
+		if (metrics != SigningMetricsListener.NOOP) metrics.onCanonicalized(SigningMetrics.elapsed(start), stringToSign.byteLength());
+	}
+	
+	/**
+	 * PRIVATE METHOD: This method writes the AWS StringToSign for the given request, element by
+	 * element, to the given {@link CanonWriter}.
+	 * 
+	 * @see https://docs.aws.amazon.com/AmazonS3/latest/dev/RESTAuthentication.html
+	 * 
+	 * @param request - The request as {@link AWSRequest}
+	 * @param stringToSign - The writer to write to as {@link CanonWriter}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @param expires - The Expires time to use in place of the Date, or {@link #NO_EXPIRES}
+	 */
+	private static void appendStringToSign(AWSRequest request, CanonWriter stringToSign, SigningScratch scratch, long expires) {
+		String tempValue = "";
+		
+		/* Append RequestMethod */
+		stringToSign.append(request.getRequestMethod()).append('\n');
+		
+		/* Append Content MD5 */
+		if (!(tempValue = request.getNormalizedHeaderValue("content-md5")).isEmpty()) {
+			stringToSign.append(tempValue);
+		}
+		stringToSign.append('\n'); // Yes, this makes a place-holder if no ContentMD5
+		
+		/* Append Content Type */
+		if (!(tempValue = request.getNormalizedHeaderValue("content-type")).isEmpty()) {
+			stringToSign.append(tempValue);
+		}
+		stringToSign.append('\n'); // Yep, This does the place-holder thing in no ContentType
+		
+		/* Append Date */
+		if (expires != NO_EXPIRES) { // Query string auth signs the Expires time instead...
+			stringToSign.append(expires).append('\n');
+		} else if (!(tempValue = request.getNormalizedHeaderValue("x-amz-date")).isEmpty()) { // This one is priority...
+			stringToSign.append(tempValue).append('\n');
+		} else if (!(tempValue = request.getNormalizedHeaderValue("date")).isEmpty()) { // If Priority not found...
+			stringToSign.append(tempValue).append('\n');
+		}
+		
+		/* Append Canonicalized Amazon Headers */
+		if (request.appendCanonAmzHeaders(stringToSign, scratch)) {
+			stringToSign.append('\n');
+		}
+		
+		/* Append Canonicalized Resource */
+		appendCanonResource(request, stringToSign, scratch);
+	}
+	
+	/**
+	 * PRIVATE METHOD: This method is used to append the CanonicalizedResource of a request.
 	 * 
 	 * @see https://docs.aws.amazon.com/AmazonS3/latest/dev/RESTAuthentication.html#Request%20CanonicalizedResource%20Element
 	 * 
 	 * @param req - The request as {@link AWSRequest}
-	 * @return Returns the CanonResource as {@link String}
+	 * @param sb - The writer to write to as {@link CanonWriter}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
 	 */
-	private static String getCanonResource(AWSRequest req) {
-		StringBuilder sb = new StringBuilder();
+	private static void appendCanonResource(AWSRequest req, CanonWriter sb, SigningScratch scratch) {
 		/* ************ *
 		 * BUCKET STUFF *
 		 * ************ */
-		if (!req.getBucket().isEmpty()) {
-			sb.append('/').append(req.getBucket());
-		} else {
-			sb.append('/');
-		}
+		req.appendCanonBucket(sb);
 		
 		/* ********************** *
 		 * Path/Request-URI STUFF *
@@ -148,16 +597,14 @@ public final class AwsAuthV2Util {
 		} else {
 			if (!req.getBucket().isEmpty() && req.getPath().startsWith(req.getBucket())) {
 				if (req.getPath().charAt(req.getBucket().length() + 1) == '/') {
-					sb.append(req.getPath().substring(req.getBucket().length() + 1));
+					sb.append(req.getPath(), req.getBucket().length() + 1, req.getPath().length());
 				} else {
-					sb.append(req.getPath().substring(req.getBucket().length()));
+					sb.append(req.getPath(), req.getBucket().length(), req.getPath().length());
 				}
 			} else {
 				sb.append('/').append(req.getPath());
 			}
 		}
-		sb.append(req.getSubSourceString());
-		
-		return sb.toString();
+		req.appendSubSourceString(sb, scratch);
 	}
-}
\ No newline at end of file
+}
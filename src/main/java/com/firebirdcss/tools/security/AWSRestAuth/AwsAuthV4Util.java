@@ -0,0 +1,277 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Map.Entry;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * This class contains the utility methods for signing an {@link AWSRequest} with AWS Signature
+ * Version 4 (AWS4-HMAC-SHA256), next to the Version 2 ones of {@link AwsAuthV2Util}.
+ * <p>
+ * The request must carry an x-amz-date header (yyyyMMdd'T'HHmmss'Z'). The payload hash is
+ * taken from the x-amz-content-sha256 header, or is that of an empty payload if there is none.
+ * Every header of the request is signed, and the path is encoded once, the way S3 expects it.
+ *
+ * @see https://docs.aws.amazon.com/general/latest/gr/sigv4_signing.html
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class AwsAuthV4Util {
+	/** The name of the Signature Version 4 algorithm. */
+	public static final String ALGORITHM = "AWS4-HMAC-SHA256";
+	/** The hex SHA-256 of an empty payload. */
+	public static final String EMPTY_PAYLOAD_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+	/** The payload hash to sign when the payload is not signed. */
+	public static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+
+	private static final String TERMINATOR = "aws4_request";
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private AwsAuthV4Util() {}
+
+	/**
+	 * This method generates the canonical request of the given request.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @return Returns the canonical request as {@link String}
+	 */
+	public static String genCanonicalRequest(AWSRequest request) {
+		final SigningScratch scratch = SigningScratch.get();
+		final StringBuilder sb = scratch.canon;
+		sb.setLength(0);
+		appendCanonicalRequest(request, sb, scratch);
+
+		return sb.toString();
+	}
+
+	/**
+	 * This method generates the string to sign of the given request.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @param region - The region as {@link String}
+	 * @param service - The service as {@link String}
+	 * @return Returns the string to sign as {@link String}
+	 */
+	public static String genStringToSign(AWSRequest request, String region, String service) {
+		final SigningScratch scratch = SigningScratch.get();
+		buildStringToSign(request, region, service, scratch);
+
+		return scratch.canon.toString();
+	}
+
+	/**
+	 * This method generates a properly formatted Authorization header for the given request.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys and scope as {@link V4Signer}
+	 * @return Returns the Authorization header as {@link String}
+	 */
+	public static String genAuthHeader(AWSRequest request, V4Signer signer) {
+		final SigningScratch scratch = SigningScratch.get();
+		final String signedHeaders = buildStringToSign(request, signer.getRegion(), signer.getService(), scratch);
+		final StringBuilder sb = scratch.canon;
+		final int scopeStart = ALGORITHM.length() + 1 + 16 + 1; // Algorithm, x-amz-date and their line feeds...
+		final int scopeEnd = sb.indexOf("\n", scopeStart);
+
+		final int dataLength = scratch.encodeCanon();
+		final Mac mac = signer.getMac(sb.substring(scopeStart, scopeStart + 8));
+		mac.update(scratch.utf8, 0, dataLength);
+		try {
+			mac.doFinal(scratch.digest, 0);
+		} catch (ShortBufferException e) { // Digest area is larger than any HMAC we use...
+			throw new IllegalStateException(e);
+		}
+
+		StringBuilder header = new StringBuilder(160 + signedHeaders.length());
+		header
+			.append("Authorization: ").append(ALGORITHM)
+			.append(" Credential=").append(signer.getAccessKey()).append('/').append(sb, scopeStart, scopeEnd)
+			.append(", SignedHeaders=").append(signedHeaders)
+			.append(", Signature=");
+		appendHex(scratch.digest, mac.getMacLength(), header);
+
+		return header.toString();
+	}
+
+	/**
+	 * This method derives the signing key of the given scope through the four chained HMAC-SHA256
+	 * calls of Signature Version 4. {@link V4Signer} caches the result, so this is not normally
+	 * needed by callers.
+	 *
+	 * @param secretKey - The AWS secret key as {@link String}
+	 * @param date - The scope date as yyyyMMdd as {@link String}
+	 * @param region - The region as {@link String}
+	 * @param service - The service as {@link String}
+	 * @return Returns the signing key as byte[]
+	 */
+	public static byte[] deriveSigningKey(String secretKey, String date, String region, String service) {
+		byte[] key = ("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8);
+		key = hmac(key, date);
+		key = hmac(key, region);
+		key = hmac(key, service);
+
+		return hmac(key, TERMINATOR);
+	}
+
+	/**
+	 * PRIVATE METHOD: Builds the string to sign of the given request in {@link SigningScratch#canon}.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @param region - The region as {@link String}
+	 * @param service - The service as {@link String}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @return Returns the SignedHeaders of the request as {@link String}
+	 */
+	private static String buildStringToSign(AWSRequest request, String region, String service, SigningScratch scratch) {
+		final String amzDate = request.getNormalizedHeaderValue("x-amz-date");
+		if (amzDate.length() != 16) throw new IllegalArgumentException("Signature Version 4 needs an x-amz-date header like 20150830T123600Z!");
+
+		final StringBuilder sb = scratch.canon;
+		sb.setLength(0);
+		final int signedHeadersEnd = appendCanonicalRequest(request, sb, scratch);
+		final String signedHeaders = sb.substring(sb.lastIndexOf("\n", signedHeadersEnd - 1) + 1, signedHeadersEnd);
+
+		final int dataLength = scratch.encodeCanon();
+		final MessageDigest sha256 = scratch.sha256();
+		sha256.update(scratch.utf8, 0, dataLength);
+		final byte[] hash = sha256.digest();
+
+		sb.setLength(0);
+		sb.append(ALGORITHM).append('\n').append(amzDate).append('\n');
+		sb.append(amzDate, 0, 8).append('/').append(region).append('/').append(service).append('/').append(TERMINATOR).append('\n');
+		appendHex(hash, hash.length, sb);
+
+		return signedHeaders;
+	}
+
+	/**
+	 * PRIVATE METHOD: Appends the canonical URI of the given request, the path it is sent to. Unless
+	 * the endpoint is the virtual host of the bucket, the request is path-style, and the bucket goes
+	 * in front of the path, as with the CanonicalizedResource of {@link AwsAuthV2Util}, if the path
+	 * does not start with it already. The path is already encoded, so only what is left unencoded in
+	 * it is encoded.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @param sb - The builder to append to as {@link StringBuilder}
+	 */
+	private static void appendCanonicalUri(AWSRequest request, StringBuilder sb) {
+		final String bucket = request.getBucket();
+		final String endpoint = request.getBaseUrl();
+		String path = request.getPath();
+		if (path.startsWith("/")) path = path.substring(1);
+		final boolean virtualHost = endpoint.length() > bucket.length() && endpoint.startsWith(bucket) && endpoint.charAt(bucket.length()) == '.';
+		final boolean bucketInPath = path.length() > bucket.length() && path.startsWith(bucket) && path.charAt(bucket.length()) == '/';
+		sb.append('/');
+		if (!bucket.isEmpty() && !virtualHost && !bucketInPath) {
+			sb.append(bucket).append('/');
+		}
+		PercentEncoder.encodePath(path, sb);
+	}
+
+	/**
+	 * PRIVATE METHOD: Appends the canonical request of the given request.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @param sb - The builder to append to as {@link StringBuilder}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @return Returns the position right after the SignedHeaders as int
+	 */
+	private static int appendCanonicalRequest(AWSRequest request, StringBuilder sb, SigningScratch scratch) {
+		/* Method and canonical URI */
+		sb.append(request.getRequestMethod()).append('\n');
+		appendCanonicalUri(request, sb);
+		sb.append('\n');
+
+		/* Canonical query string, sorted by encoded name */
+		Entry<String, String>[] params = scratch.headers(request.getParameterNames().size());
+		int count = 0;
+		for (String name : request.getParameterNames()) {
+			params[count++] = new SimpleImmutableEntry<>(PercentEncoder.encode(name), request.getParameterValue(name));
+		}
+		SigningScratch.sort(params, 0, count, Entry.comparingByKey());
+		for (int i = 0; i < count; i++) {
+			if (i > 0) sb.append('&');
+			sb.append(params[i].getKey()).append('=');
+			if (params[i].getValue() != null) PercentEncoder.encode(params[i].getValue(), sb);
+			params[i] = null;
+		}
+		sb.append('\n');
+
+		/* Canonical headers and signed headers */
+		String[] names = scratch.subResources(request.getHeaderCount());
+		count = request.sortHeaderNames(names);
+		for (int i = 0; i < count; i++) {
+			sb.append(names[i]).append(':');
+			appendTrimmed(request.getNormalizedHeaderValue(names[i]), sb);
+			sb.append('\n');
+		}
+		sb.append('\n');
+		for (int i = 0; i < count; i++) {
+			if (i > 0) sb.append(';');
+			sb.append(names[i]);
+			names[i] = null;
+		}
+		final int signedHeadersEnd = sb.length();
+
+		/* Payload hash */
+		String payloadHash = request.getNormalizedHeaderValue("x-amz-content-sha256");
+		sb.append('\n').append(payloadHash.isEmpty() ? EMPTY_PAYLOAD_SHA256 : payloadHash);
+
+		return signedHeadersEnd;
+	}
+
+	/**
+	 * PRIVATE METHOD: Appends a header value with leading and trailing spaces removed and runs of
+	 * spaces collapsed into one, as the canonical headers expect it.
+	 *
+	 * @param value - The header value as {@link String}
+	 * @param sb - The builder to append to as {@link StringBuilder}
+	 */
+	private static void appendTrimmed(String value, StringBuilder sb) {
+		int start = 0, end = value.length();
+		while (start < end && value.charAt(start) <= ' ') start++;
+		while (end > start && value.charAt(end - 1) <= ' ') end--;
+		boolean space = false;
+		for (int i = start; i < end; i++) {
+			char c = value.charAt(i);
+			if (c == ' ' || c == '\t') {
+				space = true;
+			} else {
+				if (space) sb.append(' ');
+				space = false;
+				sb.append(c);
+			}
+		}
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Appends the lowercase hex encoding of the given bytes.
+	 *
+	 * @param bytes - The bytes as byte[]
+	 * @param length - The number of bytes to encode as int
+	 * @param sb - The builder to append to as {@link StringBuilder}
+	 */
+	static void appendHex(byte[] bytes, int length, StringBuilder sb) {
+		for (int i = 0; i < length; i++) {
+			sb.append(HEX[(bytes[i] >> 4) & 0x0F]).append(HEX[bytes[i] & 0x0F]);
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Computes the HMAC-SHA256 of the given data with the given key.
+	 *
+	 * @param key - The key as byte[]
+	 * @param data - The data as {@link String}
+	 * @return Returns the HMAC as byte[]
+	 */
+	private static byte[] hmac(byte[] key, String data) {
+
+		return SigningKeyCache.newInitializedMac(new SecretKeySpec(key, SigningKeyCache.HASH_TYPE)).doFinal(data.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,297 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+
+/**
+ * This class turns a payload into the aws-chunked encoding of a Signature Version 4 streaming
+ * upload (STREAMING-AWS4-HMAC-SHA256-PAYLOAD), signing each chunk as it is read. The payload is
+ * read once, one chunk at a time, into a pooled direct buffer, so memory use does not depend
+ * on the size of the payload.
+ * <p>
+ * The request is first prepared with {@link #prepare(AWSRequest, long, int)}. The encoder then
+ * signs it, which gives the seed signature the chunk signatures are chained to, and its output
+ * is sent as the body with the Authorization header from {@link #getAuthorization()}.
+ * <p>
+ * The source is expected to block until data is available, as files and streams do.
+ *
+ * @see https://docs.aws.amazon.com/AmazonS3/latest/API/sigv4-streaming.html
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class AwsChunkedEncoder implements ReadableByteChannel {
+	/** The payload hash of a streaming upload. */
+	public static final String STREAMING_PAYLOAD = "STREAMING-AWS4-HMAC-SHA256-PAYLOAD";
+	/** The smallest chunk size AWS accepts, except for the last chunk. */
+	public static final int MIN_CHUNK_SIZE = 8 * 1024;
+	/** The chunk size used when none is given. */
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+	private static final String CHUNK_ALGORITHM = "AWS4-HMAC-SHA256-PAYLOAD";
+	private static final byte[] CRLF = {'\r', '\n'};
+	private static final byte[] CHUNK_SIGNATURE_EXTENSION = ";chunk-signature=".getBytes(StandardCharsets.US_ASCII);
+	private static final int SIGNATURE_LENGTH = 64;
+
+	private final ReadableByteChannel source;
+	private final V4Signer signer;
+	private final String authorization;
+	private final String date;
+	private final String scopeDate;
+	private final StringBuilder stringToSign = new StringBuilder(256);
+	private final byte[] stringToSignBytes;
+	private final byte[] header = new byte[128];
+	private final byte[] digest = new byte[32];
+
+	private ByteBuffer chunk;
+	private int stringToSignPrefixLength;
+	private int headerLength;
+	private int headerPosition;
+	private int trailerPosition = CRLF.length;
+	private boolean sourceDone;
+	private boolean finished;
+
+	/**
+	 * CONSTRUCTOR: Creates an encoder of the given channel with the default chunk size.
+	 *
+	 * @param request - The request prepared with {@link #prepare(AWSRequest, long, int)} as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys and scope as {@link V4Signer}
+	 * @param source - The payload as {@link ReadableByteChannel}
+	 */
+	public AwsChunkedEncoder(AWSRequest request, V4Signer signer, ReadableByteChannel source) {
+		this(request, signer, source, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates an encoder of the given stream.
+	 *
+	 * @param request - The request prepared with {@link #prepare(AWSRequest, long, int)} as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys and scope as {@link V4Signer}
+	 * @param source - The payload as {@link InputStream}
+	 * @param chunkSize - The size of every chunk but the last as int
+	 */
+	public AwsChunkedEncoder(AWSRequest request, V4Signer signer, InputStream source, int chunkSize) {
+		this(request, signer, Channels.newChannel(source), chunkSize);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates an encoder of the given channel.
+	 *
+	 * @param request - The request prepared with {@link #prepare(AWSRequest, long, int)} as {@link AWSRequest}
+	 * @param signer - The signer for the request's keys and scope as {@link V4Signer}
+	 * @param source - The payload as {@link ReadableByteChannel}
+	 * @param chunkSize - The size of every chunk but the last as int
+	 */
+	public AwsChunkedEncoder(AWSRequest request, V4Signer signer, ReadableByteChannel source, int chunkSize) {
+		if (request == null || signer == null || source == null) throw new NullPointerException();
+		if (chunkSize < MIN_CHUNK_SIZE) throw new IllegalArgumentException("Chunks must be at least " + MIN_CHUNK_SIZE + " bytes!");
+		if (!STREAMING_PAYLOAD.equals(request.getNormalizedHeaderValue("x-amz-content-sha256"))) {
+			throw new IllegalArgumentException("The request has not been prepared for a streaming upload!");
+		}
+		this.source = source;
+		this.signer = signer;
+		this.authorization = AwsAuthV4Util.genAuthHeader(request, signer);
+		this.date = request.getNormalizedHeaderValue("x-amz-date");
+		this.scopeDate = this.date.substring(0, 8);
+		this.chunk = DirectBufferPool.SHARED.acquire(chunkSize);
+		this.chunk.limit(0);
+
+		/* The start of every chunk's string to sign; the previous signature follows */
+		this.stringToSign
+			.append(CHUNK_ALGORITHM).append('\n')
+			.append(this.date).append('\n')
+			.append(this.scopeDate).append('/').append(signer.getRegion()).append('/').append(signer.getService()).append("/aws4_request\n");
+		this.stringToSignPrefixLength = this.stringToSign.length();
+		this.stringToSign.append(this.authorization, this.authorization.length() - SIGNATURE_LENGTH, this.authorization.length());
+		this.stringToSignBytes = new byte[this.stringToSignPrefixLength + 3 * SIGNATURE_LENGTH + 2];
+	}
+
+	/**
+	 * This method returns a copy of the given request with the headers of a streaming upload set:
+	 * x-amz-content-sha256, Content-Encoding, x-amz-decoded-content-length and Content-Length.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @param decodedLength - The length of the payload as long
+	 * @param chunkSize - The chunk size the payload will be encoded with as int
+	 * @return Returns the prepared request as {@link AWSRequest}
+	 */
+	public static AWSRequest prepare(AWSRequest request, long decodedLength, int chunkSize) {
+
+		return request
+			.withHeader("x-amz-content-sha256", STREAMING_PAYLOAD)
+			.withHeader("Content-Encoding", "aws-chunked")
+			.withHeader("x-amz-decoded-content-length", Long.toString(decodedLength))
+			.withHeader("Content-Length", Long.toString(encodedLength(decodedLength, chunkSize)));
+	}
+
+	/**
+	 * This method computes the length of the aws-chunked encoding of a payload, which is the
+	 * Content-Length of the request.
+	 *
+	 * @param decodedLength - The length of the payload as long
+	 * @param chunkSize - The chunk size as int
+	 * @return Returns the encoded length as long
+	 */
+	public static long encodedLength(long decodedLength, int chunkSize) {
+		final long fullChunks = decodedLength / chunkSize;
+		final int lastChunk = (int) (decodedLength % chunkSize);
+		long length = fullChunks * chunkOverhead(chunkSize) + decodedLength;
+		if (lastChunk > 0) {
+			length += chunkOverhead(lastChunk);
+		}
+
+		return length + chunkOverhead(0);
+	}
+
+	/**
+	 * This method returns the Authorization header of the request, whose signature is the seed of
+	 * the chunk signatures.
+	 *
+	 * @return Returns the Authorization header as {@link String}
+	 */
+	public String getAuthorization() {
+
+		return this.authorization;
+	}
+
+	/**
+	 * This method returns the encoded payload as an {@link InputStream}.
+	 *
+	 * @return Returns the stream as {@link InputStream}
+	 */
+	public InputStream toInputStream() {
+
+		return Channels.newInputStream(this);
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		if (this.chunk == null) throw new ClosedChannelException();
+		if (!dst.hasRemaining()) {
+
+			return 0;
+		}
+		final int start = dst.position();
+		while (dst.hasRemaining()) {
+			if (this.headerPosition < this.headerLength) {
+				int n = Math.min(dst.remaining(), this.headerLength - this.headerPosition);
+				dst.put(this.header, this.headerPosition, n);
+				this.headerPosition += n;
+			} else if (this.chunk.hasRemaining()) {
+				if (this.chunk.remaining() <= dst.remaining()) {
+					dst.put(this.chunk);
+				} else {
+					ByteBuffer slice = this.chunk.duplicate();
+					slice.limit(slice.position() + dst.remaining());
+					dst.put(slice);
+					this.chunk.position(slice.position());
+				}
+			} else if (this.trailerPosition < CRLF.length) {
+				dst.put(CRLF[this.trailerPosition++]);
+			} else if (!this.finished) {
+				nextChunk();
+			} else {
+				break;
+			}
+		}
+		final int written = dst.position() - start;
+
+		return written == 0 ? -1 : written;
+	}
+
+	@Override
+	public boolean isOpen() {
+
+		return this.chunk != null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.chunk != null) {
+			DirectBufferPool.SHARED.release(this.chunk);
+			this.chunk = null;
+		}
+		this.source.close();
+	}
+
+	/**
+	 * PRIVATE METHOD: Reads the next chunk of the payload, signs it and builds its header.
+	 * Once the payload is used up, this produces the final, empty chunk.
+	 *
+	 * @throws IOException - When the source can not be read
+	 */
+	private void nextChunk() throws IOException {
+		final ByteBuffer chunk = this.chunk;
+		chunk.clear();
+		while (!this.sourceDone && chunk.hasRemaining()) {
+			if (this.source.read(chunk) < 0) {
+				this.sourceDone = true;
+			}
+		}
+		chunk.flip();
+		final int size = chunk.remaining();
+		if (size == 0) {
+			this.finished = true;
+		}
+
+		/* Chain the signature of this chunk to the previous one */
+		final MessageDigest sha256 = SigningScratch.get().sha256();
+		final StringBuilder sts = this.stringToSign;
+		sts.append('\n').append(AwsAuthV4Util.EMPTY_PAYLOAD_SHA256).append('\n');
+		chunk.mark();
+		sha256.update(chunk);
+		chunk.reset();
+		try {
+			sha256.digest(this.digest, 0, this.digest.length);
+		} catch (DigestException e) { // Digest area fits a SHA-256...
+			throw new IllegalStateException(e);
+		}
+		AwsAuthV4Util.appendHex(this.digest, this.digest.length, sts);
+		for (int i = 0; i < sts.length(); i++) {
+			this.stringToSignBytes[i] = (byte) sts.charAt(i);
+		}
+		final Mac mac = this.signer.getMac(this.scopeDate);
+		mac.update(this.stringToSignBytes, 0, sts.length());
+		try {
+			mac.doFinal(this.digest, 0);
+		} catch (ShortBufferException e) { // Digest area fits an HMAC-SHA256...
+			throw new IllegalStateException(e);
+		}
+		sts.setLength(this.stringToSignPrefixLength);
+		AwsAuthV4Util.appendHex(this.digest, this.digest.length, sts);
+
+		/* hex-size;chunk-signature=signature\r\n */
+		int pos = 0;
+		final String hexSize = Integer.toHexString(size);
+		for (int i = 0; i < hexSize.length(); i++) this.header[pos++] = (byte) hexSize.charAt(i);
+		System.arraycopy(CHUNK_SIGNATURE_EXTENSION, 0, this.header, pos, CHUNK_SIGNATURE_EXTENSION.length);
+		pos += CHUNK_SIGNATURE_EXTENSION.length;
+		for (int i = this.stringToSignPrefixLength; i < sts.length(); i++) this.header[pos++] = (byte) sts.charAt(i);
+		this.header[pos++] = '\r';
+		this.header[pos++] = '\n';
+		this.headerLength = pos;
+		this.headerPosition = 0;
+		this.trailerPosition = 0;
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the bytes a chunk of the given size adds on top of its data.
+	 *
+	 * @param size - The size of the chunk data as int
+	 * @return Returns the overhead as int
+	 */
+	private static int chunkOverhead(int size) {
+
+		return Integer.toHexString(size).length() + CHUNK_SIGNATURE_EXTENSION.length + SIGNATURE_LENGTH + 2 * CRLF.length;
+	}
+}
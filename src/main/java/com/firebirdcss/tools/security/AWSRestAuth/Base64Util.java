@@ -0,0 +1,48 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class contains a small standard (RFC 4648, padded) Base64 encoder that writes
+ * straight into a caller supplied array, for use on the allocation-free signing path.
+ *
+ * @author Scott Griffis
+ *
+ */
+final class Base64Util {
+	private static final byte[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+	private Base64Util() {}
+
+	/**
+	 * This method Base64 encodes the given range of bytes into the given destination.
+	 *
+	 * @param src - The bytes to encode as byte[]
+	 * @param srcOff - The offset of the first byte to encode as int
+	 * @param length - The number of bytes to encode as int
+	 * @param dst - The destination as byte[]
+	 * @param dstOff - The offset to start writing at as int
+	 * @return Returns the number of characters written as int
+	 */
+	static int encode(byte[] src, int srcOff, int length, byte[] dst, int dstOff) {
+		int pos = dstOff;
+		final int end = srcOff + length;
+		int i = srcOff;
+		for (; i + 2 < end; i += 3) {
+			int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+			dst[pos++] = ALPHABET[(bits >>> 18) & 0x3F];
+			dst[pos++] = ALPHABET[(bits >>> 12) & 0x3F];
+			dst[pos++] = ALPHABET[(bits >>> 6) & 0x3F];
+			dst[pos++] = ALPHABET[bits & 0x3F];
+		}
+		if (i < end) {
+			int bits = (src[i] & 0xFF) << 16 | (i + 1 < end ? (src[i + 1] & 0xFF) << 8 : 0);
+			dst[pos++] = ALPHABET[(bits >>> 18) & 0x3F];
+			dst[pos++] = ALPHABET[(bits >>> 12) & 0x3F];
+			dst[pos++] = i + 1 < end ? ALPHABET[(bits >>> 6) & 0x3F] : (byte) '=';
+			dst[pos++] = '=';
+		}
+
+		return pos - dstOff;
+	}
+}
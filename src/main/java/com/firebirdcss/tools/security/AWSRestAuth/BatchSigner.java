@@ -0,0 +1,202 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class signs large batches of requests by splitting the work across the workers
+ * of a {@link ForkJoinPool}.
+ * <p>
+ * One {@link Signer} is kept per access key, so every worker thread reuses its own
+ * initialized HMAC and scratch buffers for all the requests it signs. At most so many of them
+ * are kept; once that many are, one of them is dropped to make room for the next, so batches
+ * signed with ever new keys do not grow the signer without bound.
+ * Results are always returned, or handed to the consumer, in the encounter order of the input.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class BatchSigner {
+	/** The most {@link Signer}s kept by default. */
+	public static final int DEFAULT_MAX_SIGNERS = 1024;
+	/** The number of requests of a stream presigned by a worker in one go. */
+	public static final int BATCH_SIZE = 256;
+
+	private final ForkJoinPool pool;
+	private final int maxSigners;
+	private final ConcurrentHashMap<String, Signer> signers = new ConcurrentHashMap<>();
+
+	/**
+	 * CONSTRUCTOR: Creates a {@link BatchSigner} that runs on the common {@link ForkJoinPool}.
+	 */
+	public BatchSigner() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a {@link BatchSigner} that runs on the given {@link ForkJoinPool},
+	 * whose parallelism decides how many cores are used, and keeps up to
+	 * {@link #DEFAULT_MAX_SIGNERS} signers.
+	 *
+	 * @param pool - The pool to sign on as {@link ForkJoinPool}
+	 */
+	public BatchSigner(ForkJoinPool pool) {
+		this(pool, DEFAULT_MAX_SIGNERS);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a {@link BatchSigner} that runs on the given {@link ForkJoinPool} and
+	 * keeps up to the given number of signers.
+	 *
+	 * @param pool - The pool to sign on as {@link ForkJoinPool}
+	 * @param maxSigners - The most {@link Signer}s kept as int
+	 */
+	public BatchSigner(ForkJoinPool pool, int maxSigners) {
+		if (pool == null) throw new NullPointerException();
+		if (maxSigners < 1) throw new IllegalArgumentException("At least one signer must be kept!");
+		this.pool = pool;
+		this.maxSigners = maxSigners;
+	}
+
+	/**
+	 * This method generates the Authorization header for each of the given requests.
+	 *
+	 * @param requests - The requests to sign as {@link Collection}
+	 * @return Returns the Authorization headers in the order of the requests as {@link List}
+	 */
+	public List<String> signAll(Collection<AWSRequest> requests) {
+
+		return this.pool.submit(() ->
+			requests.parallelStream()
+				.map(request -> AwsAuthV2Util.genAuthHeader(request, signerFor(request)))
+				.collect(Collectors.toList())
+		).join();
+	}
+
+	/**
+	 * This method generates a presigned URL for each of the given requests.
+	 *
+	 * @param requests - The requests to presign as {@link Collection}
+	 * @param expires - The time the URLs expire in seconds since the epoch as long
+	 * @return Returns the presigned URLs in the order of the requests as {@link List}
+	 */
+	public List<String> presignAll(Collection<AWSRequest> requests, long expires) {
+
+		return this.pool.submit(() ->
+			requests.parallelStream()
+				.map(request -> presign(request, expires))
+				.collect(Collectors.toList())
+		).join();
+	}
+
+	/**
+	 * This method generates a presigned URL for each request of the given {@link Stream} and hands
+	 * them to the given consumer in the encounter order of the stream, without collecting them first.
+	 * <p>
+	 * The stream is read on the calling thread in batches of {@link #BATCH_SIZE} requests that are
+	 * presigned on the pool. Only twice as many batches as the pool has workers are ever in flight;
+	 * once that many are, the calling thread waits for the oldest one and hands its URLs to the
+	 * consumer before reading on, so a stream of any length is presigned in constant memory. The
+	 * consumer is only ever called by the calling thread.
+	 *
+	 * @param requests - The requests to presign as {@link Stream}
+	 * @param expires - The time the URLs expire in seconds since the epoch as long
+	 * @param consumer - The consumer of the presigned URLs as {@link Consumer}
+	 */
+	public void presignAll(Stream<AWSRequest> requests, long expires, Consumer<? super String> consumer) {
+		final int window = this.pool.getParallelism() * 2;
+		final ArrayDeque<ForkJoinTask<String[]>> inFlight = new ArrayDeque<>(window);
+		final Iterator<AWSRequest> iterator = requests.iterator();
+		try {
+			while (iterator.hasNext()) {
+				final AWSRequest[] batch = new AWSRequest[BATCH_SIZE];
+				int size = 0;
+				while (size < BATCH_SIZE && iterator.hasNext()) {
+					batch[size++] = iterator.next();
+				}
+				if (inFlight.size() == window) {
+					accept(inFlight.poll().join(), consumer);
+				}
+				final int count = size;
+				inFlight.add(this.pool.submit(() -> {
+					final String[] urls = new String[count];
+					for (int i = 0; i < count; i++) {
+						urls[i] = presign(batch[i], expires);
+					}
+
+					return urls;
+				}));
+			}
+			while (!inFlight.isEmpty()) {
+				accept(inFlight.poll().join(), consumer);
+			}
+		} finally {
+			for (ForkJoinTask<String[]> task : inFlight) { // Only left when failing...
+				task.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Hands the given URLs to the given consumer in order.
+	 *
+	 * @param urls - The presigned URLs as String[]
+	 * @param consumer - The consumer of the presigned URLs as {@link Consumer}
+	 */
+	private static void accept(String[] urls, Consumer<? super String> consumer) {
+		for (String url : urls) {
+			consumer.accept(url);
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Presigns a single request.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @param expires - The time the URL expires in seconds since the epoch as long
+	 * @return Returns the presigned URL as {@link String}
+	 */
+	private String presign(AWSRequest request, long expires) {
+
+		return AwsAuthV2Util.genPresignedUrl(request, signerFor(request), expires);
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the {@link Signer} for the keys of the given request, creating
+	 * it on first use and replacing it if the secret key of the access key has changed. When
+	 * the most signers are already kept, one of the others is dropped to make room for it.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @return Returns the signer as {@link Signer}
+	 */
+	private Signer signerFor(AWSRequest request) {
+		Signer signer = this.signers.get(request.getAccessKey());
+		if (signer == null || !signer.isFor(request.getAccessKey(), request.getSecretKey())) {
+			try {
+				signer = new Signer(request);
+			} catch (NoSuchAlgorithmException | InvalidKeyException e) {
+				throw new IllegalStateException("Unable to create a signer for access key '" + request.getAccessKey() + "'!", e);
+			}
+			if (this.signers.size() >= this.maxSigners && !this.signers.containsKey(request.getAccessKey())) {
+				final Iterator<String> keys = this.signers.keySet().iterator();
+				if (keys.hasNext()) {
+					keys.next();
+					keys.remove();
+				}
+			}
+			this.signers.put(request.getAccessKey(), signer);
+		}
+
+		return signer;
+	}
+}
@@ -0,0 +1,417 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class signs a stream of request specs, one per line, and writes one line of output per
+ * spec in the same order: either the headers to add to the request or its presigned URL.
+ * <p>
+ * A spec is made of up to five tab-separated fields, of which only the method is required:
+ * <pre>
+ * METHOD	BUCKET	PATH	HEADERS	PARAMS
+ * PUT	johnsmith	photos/puppy.jpg	Content-Type=image%2Fjpeg&amp;Date=Tue%2C%2027%20Mar%202007%2019%3A36%3A42%20%2B0000	acl
+ * </pre>
+ * The headers and parameters are name=value pairs separated by '&amp;', and every field is
+ * percent-decoded, so values may hold any character. A parameter without a value is a
+ * sub-resource. Blank lines and lines starting with '#' are skipped. A spec that can not be
+ * signed is written as "ERROR", a tab and the reason, so the output still lines up with the input.
+ * <p>
+ * The lines are read in batches that are signed on a fixed pool of workers. Only a small window
+ * of batches is ever in flight; once it is full the reader waits for the oldest batch and writes
+ * it out before reading on, so any number of lines is signed in constant memory.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class BulkSigner implements AutoCloseable {
+	/** The number of lines signed by a worker in one go. */
+	public static final int BATCH_SIZE = 512;
+	/** The line written in place of a spec that could not be signed, followed by a tab and the reason. */
+	public static final String ERROR = "ERROR";
+
+	private final CredentialsProvider credentials;
+	private final String endpoint;
+	private final DateSource dates;
+	private final int window;
+	private final ExecutorService pool;
+
+	/**
+	 * CONSTRUCTOR: Creates a signer for the given endpoint that signs on the given number of threads.
+	 *
+	 * @param credentials - The source of the keys as {@link CredentialsProvider}
+	 * @param endpoint - The endpoint, such as s3.amazonaws.com, as {@link String}
+	 * @param threads - The number of worker threads as int
+	 */
+	public BulkSigner(CredentialsProvider credentials, String endpoint, int threads) {
+		this(credentials, endpoint, threads, DateSource.SYSTEM);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a signer for the given endpoint that signs on the given number of threads
+	 * and dates the requests without a Date or x-amz-date header from the given {@link DateSource}.
+	 *
+	 * @param credentials - The source of the keys as {@link CredentialsProvider}
+	 * @param endpoint - The endpoint, such as s3.amazonaws.com, as {@link String}
+	 * @param threads - The number of worker threads as int
+	 * @param dates - The source of the Date header as {@link DateSource}
+	 */
+	public BulkSigner(CredentialsProvider credentials, String endpoint, int threads, DateSource dates) {
+		if (credentials == null || endpoint == null || dates == null) throw new NullPointerException();
+		if (threads < 1) throw new IllegalArgumentException("There must be at least one thread!");
+		this.credentials = credentials;
+		this.endpoint = endpoint;
+		this.dates = dates;
+		this.window = threads * 2;
+		final AtomicInteger count = new AtomicInteger();
+		this.pool = Executors.newFixedThreadPool(threads, task -> {
+			final Thread thread = new Thread(task, "bulk-signer-" + count.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		});
+	}
+
+	/**
+	 * This method reads every spec from the given reader and writes the headers to add to each
+	 * request, tab-separated and ending with the Authorization header, to the given writer.
+	 *
+	 * @param in - The specs as {@link BufferedReader}
+	 * @param out - The destination of the headers as {@link Writer}
+	 * @return Returns the totals of the run as {@link Result}
+	 * @throws IOException - When reading or writing fails
+	 */
+	public Result signAll(BufferedReader in, Writer out) throws IOException {
+
+		return run(in, out, -1L);
+	}
+
+	/**
+	 * This method reads every spec from the given reader and writes the presigned URL of each
+	 * request to the given writer.
+	 *
+	 * @param in - The specs as {@link BufferedReader}
+	 * @param out - The destination of the URLs as {@link Writer}
+	 * @param expires - The time the URLs expire in seconds since the epoch as long
+	 * @return Returns the totals of the run as {@link Result}
+	 * @throws IOException - When reading or writing fails
+	 */
+	public Result presignAll(BufferedReader in, Writer out, long expires) throws IOException {
+		if (expires < 0) throw new IllegalArgumentException("The expiry can not be negative!");
+
+		return run(in, out, expires);
+	}
+
+	/**
+	 * This method stops the worker threads.
+	 */
+	@Override
+	public void close() {
+		this.pool.shutdownNow();
+	}
+
+	/**
+	 * PRIVATE METHOD: Reads the specs in batches, hands them to the workers and writes the results
+	 * of the oldest batch whenever the window of batches in flight is full.
+	 *
+	 * @param in - The specs as {@link BufferedReader}
+	 * @param out - The destination as {@link Writer}
+	 * @param expires - The expiry of presigned URLs, or negative to generate headers, as long
+	 * @return Returns the totals of the run as {@link Result}
+	 * @throws IOException - When reading or writing fails
+	 */
+	private Result run(BufferedReader in, Writer out, long expires) throws IOException {
+		final long start = System.nanoTime();
+		final ArrayDeque<Future<String[]>> inFlight = new ArrayDeque<>(this.window);
+		long lines = 0;
+		long errors = 0;
+		try {
+			String[] batch = new String[BATCH_SIZE];
+			int size = 0;
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.isEmpty() || line.charAt(0) == '#') continue;
+				batch[size++] = line;
+				if (size == BATCH_SIZE) {
+					if (inFlight.size() == this.window) {
+						errors += write(inFlight.poll(), out);
+					}
+					inFlight.add(submit(batch, size, expires));
+					lines += size;
+					batch = new String[BATCH_SIZE];
+					size = 0;
+				}
+			}
+			if (size > 0) {
+				inFlight.add(submit(batch, size, expires));
+				lines += size;
+			}
+			while (!inFlight.isEmpty()) {
+				errors += write(inFlight.poll(), out);
+			}
+			out.flush();
+		} finally {
+			for (Future<String[]> pending : inFlight) {
+				pending.cancel(true);
+			}
+		}
+
+		return new Result(lines, errors, System.nanoTime() - start);
+	}
+
+	/**
+	 * PRIVATE METHOD: Hands a batch of specs to the workers.
+	 *
+	 * @param batch - The specs as {@link String}[]
+	 * @param size - The number of specs in the batch as int
+	 * @param expires - The expiry of presigned URLs, or negative to generate headers, as long
+	 * @return Returns the results to come, in the order of the specs, as {@link Future}
+	 */
+	private Future<String[]> submit(String[] batch, int size, long expires) {
+
+		return this.pool.submit(() -> {
+			final Credentials keys = this.credentials.getCredentials();
+			final String[] results = new String[size];
+			for (int i = 0; i < size; i++) {
+				results[i] = sign(batch[i], keys, expires);
+			}
+
+			return results;
+		});
+	}
+
+	/**
+	 * PRIVATE METHOD: Waits for a batch and writes its results, one per line.
+	 *
+	 * @param pending - The results to come as {@link Future}
+	 * @param out - The destination as {@link Writer}
+	 * @return Returns the number of specs that could not be signed as int
+	 * @throws IOException - When writing fails
+	 */
+	private int write(Future<String[]> pending, Writer out) throws IOException {
+		final String[] results;
+		try {
+			results = pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for requests to be signed!", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Unable to sign a batch of requests!", e.getCause());
+		}
+		int errors = 0;
+		for (String result : results) {
+			if (result.startsWith(ERROR)) errors++;
+			out.write(result);
+			out.write('\n');
+		}
+
+		return errors;
+	}
+
+	/**
+	 * PRIVATE METHOD: Signs a single spec.
+	 *
+	 * @param line - The spec as {@link String}
+	 * @param keys - The keys to sign with as {@link Credentials}
+	 * @param expires - The expiry of presigned URLs, or negative to generate headers, as long
+	 * @return Returns the line to write as {@link String}
+	 */
+	private String sign(String line, Credentials keys, long expires) {
+		try {
+			final HashMap<String, String> headers = new HashMap<>();
+			final HashMap<String, String> params = new HashMap<>();
+			final String[] fields = parse(line, headers, params);
+			final String bucket = fields[1];
+			final StringBuilder added = new StringBuilder();
+			if (keys.getSessionToken() != null) {
+				headers.put("x-amz-security-token", keys.getSessionToken());
+				if (expires >= 0) {
+					params.put("x-amz-security-token", keys.getSessionToken());
+				} else {
+					added.append("x-amz-security-token: ").append(keys.getSessionToken()).append('\t');
+				}
+			}
+			if (expires < 0 && !hasHeader(headers, "Date") && !hasHeader(headers, "x-amz-date")) {
+				final String date = this.dates.getHttpDate();
+				headers.put("Date", date);
+				added.append("Date: ").append(date).append('\t');
+			}
+			final AWSRequest request = new AWSRequest(
+				bucket.isEmpty() ? this.endpoint : bucket + '.' + this.endpoint,
+				fields[2], bucket, null, null, fields[0], params, headers
+			);
+			if (expires >= 0) {
+
+				return AwsAuthV2Util.genPresignedUrl(request, keys.getSigner(), expires);
+			}
+
+			return added.append(AwsAuthV2Util.genAuthHeader(request, keys.getSigner())).toString();
+		} catch (RuntimeException e) {
+
+			return ERROR + '\t' + String.valueOf(e.getMessage()).replaceAll("\\s+", " "); // Keeps the reason on one line...
+		}
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Splits a spec into its fields and fills the given maps with its
+	 * headers and parameters.
+	 *
+	 * @param line - The spec as {@link String}
+	 * @param headers - The map to put the headers into as {@link HashMap}
+	 * @param params - The map to put the parameters into as {@link HashMap}
+	 * @return Returns the decoded method, bucket and path as {@link String}[]
+	 */
+	static String[] parse(String line, HashMap<String, String> headers, HashMap<String, String> params) {
+		final String[] fields = new String[5];
+		int from = 0;
+		for (int i = 0; i < fields.length; i++) {
+			final int to = i == fields.length - 1 ? -1 : line.indexOf('\t', from);
+			fields[i] = from > line.length() ? "" : line.substring(from, to < 0 ? line.length() : to);
+			from = to < 0 ? line.length() + 1 : to + 1;
+		}
+		if (fields[4].indexOf('\t') >= 0) throw new IllegalArgumentException("Too many fields!");
+		if (fields[0].isEmpty()) throw new IllegalArgumentException("Missing the request method!");
+		decodePairs(fields[3], headers, false);
+		decodePairs(fields[4], params, true);
+		String path = decode(fields[2]);
+		if (path.startsWith("/")) path = path.substring(1);
+
+		return new String[] { fields[0], decode(fields[1]), path };
+	}
+
+	/**
+	 * PRIVATE METHOD: Decodes name=value pairs separated by '&amp;' into the given map.
+	 *
+	 * @param field - The pairs as {@link String}
+	 * @param into - The map to put the pairs into as {@link HashMap}
+	 * @param valueless - Whether a name may come without a value as boolean
+	 */
+	private static void decodePairs(String field, HashMap<String, String> into, boolean valueless) {
+		int from = 0;
+		while (from < field.length()) {
+			int to = field.indexOf('&', from);
+			if (to < 0) to = field.length();
+			if (to > from) {
+				final int eq = field.indexOf('=', from);
+				if (eq >= 0 && eq < to) {
+					into.put(decode(field.substring(from, eq)), decode(field.substring(eq + 1, to)));
+				} else if (valueless) {
+					into.put(decode(field.substring(from, to)), null);
+				} else {
+					throw new IllegalArgumentException("Header '" + field.substring(from, to) + "' has no value!");
+				}
+			}
+			from = to + 1;
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Decodes the %XX escapes of the given value as UTF-8. Unlike
+	 * {@link java.net.URLDecoder} a '+' is kept as it is, since it is common in Base64 values.
+	 *
+	 * @param value - The value as {@link String}
+	 * @return Returns the decoded value as {@link String}
+	 */
+	private static String decode(String value) {
+		int i = value.indexOf('%');
+		if (i < 0) {
+
+			return value;
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length());
+		final byte[] plain = value.substring(0, i).getBytes(StandardCharsets.UTF_8);
+		bytes.write(plain, 0, plain.length);
+		while (i < value.length()) {
+			final char c = value.charAt(i);
+			if (c == '%') {
+				final int hi = i + 2 < value.length() ? Character.digit(value.charAt(i + 1), 16) : -1;
+				final int lo = hi < 0 ? -1 : Character.digit(value.charAt(i + 2), 16);
+				if (lo < 0) throw new IllegalArgumentException("Invalid escape in '" + value + "'!");
+				bytes.write(hi << 4 | lo);
+				i += 3;
+			} else {
+				final int end = value.indexOf('%', i) < 0 ? value.length() : value.indexOf('%', i);
+				final byte[] run = value.substring(i, end).getBytes(StandardCharsets.UTF_8);
+				bytes.write(run, 0, run.length);
+				i = end;
+			}
+		}
+
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * PRIVATE METHOD: Checks whether the given headers hold the given name in any case.
+	 *
+	 * @param headers - The headers as {@link HashMap}
+	 * @param name - The name as {@link String}
+	 * @return Returns true if the header is there, otherwise false
+	 */
+	private static boolean hasHeader(HashMap<String, String> headers, String name) {
+		for (String key : headers.keySet()) {
+			if (key.equalsIgnoreCase(name)) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * This class holds the totals of one run of a {@link BulkSigner}.
+	 *
+	 * @author Scott Griffis
+	 *
+	 */
+	public static final class Result {
+		private final long lines;
+		private final long errors;
+		private final long nanos;
+
+		/**
+		 * CONSTRUCTOR: Creates the totals of a run.
+		 *
+		 * @param lines - The number of specs read as long
+		 * @param errors - The number of specs that could not be signed as long
+		 * @param nanos - How long the run took in nanoseconds as long
+		 */
+		Result(long lines, long errors, long nanos) {
+			this.lines = lines;
+			this.errors = errors;
+			this.nanos = nanos;
+		}
+
+		public long getLines() {
+			return this.lines;
+		}
+
+		public long getErrors() {
+			return this.errors;
+		}
+
+		public long getNanos() {
+			return this.nanos;
+		}
+
+		/**
+		 * This method returns the throughput of the run.
+		 *
+		 * @return Returns the specs read per second as double
+		 */
+		public double getLinesPerSecond() {
+
+			return this.nanos == 0 ? 0.0 : this.lines * 1e9 / this.nanos;
+		}
+	}
+}
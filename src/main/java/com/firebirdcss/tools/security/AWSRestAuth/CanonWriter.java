@@ -0,0 +1,285 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+/**
+ * This class is what the StringToSign is written to while a request is canonicalized. It either
+ * collects the characters in a {@link StringBuilder}, as is needed to show the StringToSign or to
+ * look it up in a {@link SignatureCache}, or encodes them to UTF-8 as they come and streams them
+ * into a {@link SigningEngine.Hmac} through a small buffer, so the StringToSign never exists as a whole.
+ * <p>
+ * The bytes fed to the HMAC are exactly those {@link String#getBytes(java.nio.charset.Charset)}
+ * would give for the whole StringToSign, even when a surrogate pair is split between two appends.
+ * An instance is reused by one thread, one StringToSign at a time.
+ *
+ * @author Scott Griffis
+ *
+ */
+final class CanonWriter {
+	private static final int BUFFER_SIZE = 256;
+
+	private StringBuilder builder;
+	private SigningEngine.Hmac mac;
+	private byte[] buffer;
+	private int pos;
+	private char pendingHigh; // A high surrogate waiting for its low half...
+	private int start; // Where the StringToSign starts in the builder...
+	private int hashed; // Bytes already fed to the HMAC...
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Starts a new StringToSign that is appended to the given builder.
+	 *
+	 * @param sb - The builder to append to as {@link StringBuilder}
+	 * @return Returns this writer as {@link CanonWriter}
+	 */
+	CanonWriter toBuilder(StringBuilder sb) {
+		this.builder = sb;
+		this.mac = null;
+		this.start = sb.length();
+
+		return this;
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Starts a new StringToSign that is streamed into the given HMAC.
+	 * Once it is complete {@link #finish()} must be called before the HMAC is finished.
+	 *
+	 * @param target - The HMAC to update, in its reset state, as {@link SigningEngine.Hmac}
+	 * @return Returns this writer as {@link CanonWriter}
+	 */
+	CanonWriter toHmac(SigningEngine.Hmac target) {
+		if (this.buffer == null) {
+			this.buffer = new byte[BUFFER_SIZE];
+		}
+		this.builder = null;
+		this.mac = target;
+		this.pos = 0;
+		this.pendingHigh = 0;
+		this.hashed = 0;
+
+		return this;
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Returns how many bytes the StringToSign written since it was started
+	 * takes in UTF-8, which is what is fed to the HMAC. When streaming, these are simply the bytes
+	 * encoded so far, counting a dangling high surrogate as the '?' {@link #finish()} puts in its place.
+	 *
+	 * @return Returns the number of bytes as int
+	 */
+	int byteLength() {
+		if (this.mac == null) {
+
+			return utf8Length(this.builder, this.start, this.builder.length());
+		}
+
+		return this.hashed + this.pos + (this.pendingHigh != 0 ? 1 : 0);
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Returns how many bytes the given characters take in UTF-8, replacing
+	 * a malformed surrogate with a single '?' as the String encoder does.
+	 *
+	 * @param s - The characters as {@link CharSequence}
+	 * @param start - The index of the first character as int
+	 * @param end - The index after the last character as int
+	 * @return Returns the number of bytes as int
+	 */
+	static int utf8Length(CharSequence s, int start, int end) {
+		int bytes = end - start;
+		for (int i = start; i < end; i++) {
+			final char c = s.charAt(i);
+			if (c < 0x80) continue;
+			if (c < 0x800) {
+				bytes++;
+			} else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+				bytes += 2; // Four bytes for the two chars of the pair...
+				i++;
+			} else if (!Character.isSurrogate(c)) {
+				bytes += 2;
+			}
+		}
+
+		return bytes;
+	}
+
+	CanonWriter append(char c) {
+		if (this.mac == null) {
+			this.builder.append(c);
+		} else {
+			encode(c);
+		}
+
+		return this;
+	}
+
+	CanonWriter append(CharSequence s) {
+
+		return append(s, 0, s.length());
+	}
+
+	CanonWriter append(CharSequence s, int start, int end) {
+		if (this.mac == null) {
+			this.builder.append(s, start, end);
+		} else {
+			write(s, start, end, false);
+		}
+
+		return this;
+	}
+
+	CanonWriter append(long value) {
+		if (this.mac == null) {
+			this.builder.append(value);
+
+			return this;
+		}
+		if (value < 0) {
+			if (value == Long.MIN_VALUE) {
+
+				return append(Long.toString(value)); // Has no positive counterpart...
+			}
+			append('-');
+			value = -value;
+		}
+		long divisor = 1;
+		while (value / divisor >= 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			append((char) ('0' + value / divisor % 10));
+		}
+
+		return this;
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Appends the given characters in lowercase, as the names of the
+	 * CanonicalizedAmzHeaders are.
+	 *
+	 * @param s - The characters as {@link CharSequence}
+	 * @return Returns this writer as {@link CanonWriter}
+	 */
+	CanonWriter appendLowerCase(CharSequence s) {
+		final int end = s.length();
+		if (this.mac == null) {
+			final StringBuilder sb = this.builder;
+			final int start = sb.length();
+			sb.append(s);
+			for (int i = start; i < sb.length(); i++) { // Lowercase the key in place...
+				final char c = sb.charAt(i);
+				if (c >= 'A' && (c <= 'Z' || c >= 0x80)) sb.setCharAt(i, Character.toLowerCase(c));
+			}
+		} else {
+			write(s, 0, end, true);
+		}
+
+		return this;
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Feeds whatever is still buffered to the HMAC.
+	 */
+	void finish() {
+		if (this.mac == null) {
+
+			return;
+		}
+		if (this.pendingHigh != 0) {
+			this.pendingHigh = 0;
+			put('?'); // Malformed, same replacement the String encoder uses...
+		}
+		flush();
+		this.mac = null;
+	}
+
+	/**
+	 * PRIVATE METHOD: Encodes the given characters to UTF-8 into the buffer. Runs of ASCII, which
+	 * is nearly all of a StringToSign, are copied in a tight loop that keeps its position local.
+	 *
+	 * @param s - The characters as {@link CharSequence}
+	 * @param start - The index of the first character as int
+	 * @param end - The index after the last character as int
+	 * @param lowerCase - Whether to lowercase the characters as boolean
+	 */
+	private void write(CharSequence s, int start, int end, boolean lowerCase) {
+		final byte[] out = this.buffer;
+		int i = start;
+		while (i < end) {
+			if (this.pendingHigh == 0 && !lowerCase) { // Plain ASCII runs are copied as is...
+				int p = this.pos;
+				final int limit = Math.min(end, i + BUFFER_SIZE - p);
+				char c;
+				while (i < limit && (c = s.charAt(i)) < 0x80) {
+					out[p++] = (byte) c;
+					i++;
+				}
+				this.pos = p;
+				if (i == end) break;
+				if (p == BUFFER_SIZE) {
+					flush();
+					continue;
+				}
+			}
+			final char c = s.charAt(i++);
+			encode(lowerCase && c >= 'A' && (c <= 'Z' || c >= 0x80) ? Character.toLowerCase(c) : c);
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Encodes a single character to UTF-8 into the buffer.
+	 *
+	 * @param c - The character as char
+	 */
+	private void encode(char c) {
+		if (this.pendingHigh != 0) {
+			final char high = this.pendingHigh;
+			this.pendingHigh = 0;
+			if (Character.isLowSurrogate(c)) {
+				final int cp = Character.toCodePoint(high, c);
+				put(0xF0 | (cp >> 18));
+				put(0x80 | ((cp >> 12) & 0x3F));
+				put(0x80 | ((cp >> 6) & 0x3F));
+				put(0x80 | (cp & 0x3F));
+
+				return;
+			}
+			put('?');
+		}
+		if (c < 0x80) {
+			put(c);
+		} else if (c < 0x800) {
+			put(0xC0 | (c >> 6));
+			put(0x80 | (c & 0x3F));
+		} else if (Character.isHighSurrogate(c)) {
+			this.pendingHigh = c;
+		} else if (Character.isLowSurrogate(c)) {
+			put('?');
+		} else {
+			put(0xE0 | (c >> 12));
+			put(0x80 | ((c >> 6) & 0x3F));
+			put(0x80 | (c & 0x3F));
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Puts a single byte into the buffer, feeding the buffer to the HMAC first if it is full.
+	 *
+	 * @param b - The byte as int
+	 */
+	private void put(int b) {
+		if (this.pos == BUFFER_SIZE) {
+			flush();
+		}
+		this.buffer[this.pos++] = (byte) b;
+	}
+
+	/**
+	 * PRIVATE METHOD: Feeds the buffer to the HMAC.
+	 */
+	private void flush() {
+		if (this.pos > 0) {
+			this.mac.update(this.buffer, 0, this.pos);
+			this.hashed += this.pos;
+			this.pos = 0;
+		}
+	}
+}
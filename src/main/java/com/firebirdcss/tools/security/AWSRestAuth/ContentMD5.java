@@ -0,0 +1,209 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * This class holds the Base64 Content-MD5 and length of a request payload, and computes them
+ * without ever holding the payload on the heap: files are hashed through memory-mapped windows
+ * and streams through one small, reused buffer, so heap use stays flat no matter the size.
+ * <p>
+ * The copy methods hash the payload while passing it on to a destination, so data that is being
+ * spooled or forwarded anyway only has to be read once.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class ContentMD5 {
+	private static final long MAP_WINDOW = 64L * 1024 * 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final ThreadLocal<ByteBuffer> DIRECT_BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+	private static final ThreadLocal<byte[]> HEAP_BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+	private final String base64;
+	private final long length;
+
+	/**
+	 * PRIVATE CONSTRUCTOR: Creates the result of a finished digest.
+	 *
+	 * @param digest - The finished digest as {@link MessageDigest}
+	 * @param length - The number of bytes hashed as long
+	 */
+	private ContentMD5(MessageDigest digest, long length) {
+		this.base64 = Base64.encodeBase64String(digest.digest());
+		this.length = length;
+	}
+
+	/**
+	 * This method returns the Base64 encoded MD5 of the payload, as it goes into the Content-MD5 header.
+	 *
+	 * @return Returns the Content-MD5 as {@link String}
+	 */
+	public String getBase64() {
+
+		return this.base64;
+	}
+
+	/**
+	 * This method returns the length of the payload.
+	 *
+	 * @return Returns the length in bytes as long
+	 */
+	public long getLength() {
+
+		return this.length;
+	}
+
+	/**
+	 * This method returns a copy of the given request with the Content-MD5 header, and optionally
+	 * the Content-Length header, set for this payload.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @param includeLength - Whether to set the Content-Length header as well as boolean
+	 * @return Returns the new request as {@link AWSRequest}
+	 */
+	public AWSRequest applyTo(AWSRequest request, boolean includeLength) {
+		AWSRequest result = request.withHeader("Content-MD5", this.base64);
+
+		return includeLength ? result.withHeader("Content-Length", Long.toString(this.length)) : result;
+	}
+
+	/**
+	 * This method computes the Content-MD5 of a file by memory-mapping it a window at a time.
+	 *
+	 * @param file - The file as {@link Path}
+	 * @return Returns the Content-MD5 of the file as {@link ContentMD5}
+	 * @throws IOException - When the file can not be read
+	 */
+	public static ContentMD5 of(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+			return of(channel, 0, channel.size());
+		}
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method computes the Content-MD5 of a region of a file by
+	 * memory-mapping it a window at a time. It may be called by several threads at once
+	 * for different regions of the same channel.
+	 *
+	 * @param channel - The open file as {@link FileChannel}
+	 * @param offset - The position of the region in the file as long
+	 * @param length - The length of the region as long
+	 * @return Returns the Content-MD5 of the region as {@link ContentMD5}
+	 * @throws IOException - When the file can not be read
+	 */
+	static ContentMD5 of(FileChannel channel, long offset, long length) throws IOException {
+		final MessageDigest md5 = newDigest();
+		for (long done = 0; done < length; done += MAP_WINDOW) {
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset + done, Math.min(MAP_WINDOW, length - done));
+			md5.update(window);
+		}
+
+		return new ContentMD5(md5, length);
+	}
+
+	/**
+	 * This method computes the Content-MD5 of everything left in the given channel, reading it
+	 * through a reused direct buffer. The channel is not closed.
+	 *
+	 * @param channel - The channel as {@link ReadableByteChannel}
+	 * @return Returns the Content-MD5 of the data as {@link ContentMD5}
+	 * @throws IOException - When the channel can not be read
+	 */
+	public static ContentMD5 of(ReadableByteChannel channel) throws IOException {
+
+		return copy(channel, null);
+	}
+
+	/**
+	 * This method computes the Content-MD5 of everything left in the given stream. The stream is not closed.
+	 *
+	 * @param in - The stream as {@link InputStream}
+	 * @return Returns the Content-MD5 of the data as {@link ContentMD5}
+	 * @throws IOException - When the stream can not be read
+	 */
+	public static ContentMD5 of(InputStream in) throws IOException {
+
+		return copy(in, null);
+	}
+
+	/**
+	 * This method copies everything left in the source channel to the destination channel,
+	 * hashing it on the way. Neither channel is closed.
+	 *
+	 * @param source - The channel to read as {@link ReadableByteChannel}
+	 * @param destination - The channel to write as {@link WritableByteChannel}, or null to only hash
+	 * @return Returns the Content-MD5 of the copied data as {@link ContentMD5}
+	 * @throws IOException - When either channel fails
+	 */
+	public static ContentMD5 copy(ReadableByteChannel source, WritableByteChannel destination) throws IOException {
+		final MessageDigest md5 = newDigest();
+		final ByteBuffer buffer = DIRECT_BUFFERS.get();
+		long length = 0;
+		buffer.clear();
+		while (source.read(buffer) >= 0) {
+			buffer.flip();
+			length += buffer.remaining();
+			buffer.mark();
+			md5.update(buffer);
+			if (destination != null) {
+				buffer.reset();
+				while (buffer.hasRemaining()) destination.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		return new ContentMD5(md5, length);
+	}
+
+	/**
+	 * This method copies everything left in the given input stream to the given output stream,
+	 * hashing it on the way. Neither stream is closed.
+	 *
+	 * @param in - The stream to read as {@link InputStream}
+	 * @param out - The stream to write as {@link OutputStream}, or null to only hash
+	 * @return Returns the Content-MD5 of the copied data as {@link ContentMD5}
+	 * @throws IOException - When either stream fails
+	 */
+	public static ContentMD5 copy(InputStream in, OutputStream out) throws IOException {
+		final MessageDigest md5 = newDigest();
+		final byte[] buffer = HEAP_BUFFERS.get();
+		long length = 0;
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			md5.update(buffer, 0, read);
+			if (out != null) out.write(buffer, 0, read);
+			length += read;
+		}
+
+		return new ContentMD5(md5, length);
+	}
+
+	/**
+	 * PRIVATE METHOD: Creates a new MD5 {@link MessageDigest}, which every JRE is required to support.
+	 *
+	 * @return Returns the digest as {@link MessageDigest}
+	 */
+	private static MessageDigest newDigest() {
+		try {
+
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 is not available!", e);
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+/**
+ * This interface is implemented by whatever holds the secret keys of the access keys
+ * a {@link SignatureVerifier} authenticates, such as a database or a remote key service.
+ * Lookups may be slow, the verifier caches their results.
+ *
+ * @author Scott Griffis
+ *
+ */
+@FunctionalInterface
+public interface CredentialLookup {
+
+	/**
+	 * This method looks up the secret key of the given access key.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @return Returns the secret key as {@link String} or null if the access key is unknown
+	 */
+	String lookupSecret(String accessKey);
+}
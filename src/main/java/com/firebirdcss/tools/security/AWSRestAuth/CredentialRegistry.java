@@ -0,0 +1,313 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class holds the keys of many tenants, indexed by access key, so a request can be signed
+ * with just the access key of its tenant. The secret keys are kept as UTF-8 bytes in fixed slots
+ * of a single buffer, allocated up front, which can be off-heap so the secrets are neither copied
+ * around by the garbage collector nor held as {@link String}s.
+ * <p>
+ * A {@link Signer} is only built for a key once it is used, and at most a given number of them
+ * are kept ready. When that many are, the least recently used one is dropped, as approximated by
+ * the CLOCK algorithm: every use marks the key, and the sweep dropping a {@link Signer} spares
+ * (and unmarks) the keys marked since it last passed. Memory stays bounded by both numbers no
+ * matter how many tenants are signed for.
+ * <p>
+ * Signing with a key whose {@link Signer} is ready takes no locks, while registrations,
+ * revocations and the building of {@link Signer}s are serialized. A request signed at the
+ * moment its key is revoked may still be signed with the old secret.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class CredentialRegistry {
+	/** The longest secret key, in UTF-8 bytes, that can be registered. */
+	public static final int MAX_SECRET_LENGTH = 127;
+	/** The most {@link Signer}s kept ready by default. */
+	public static final int DEFAULT_MAX_ACTIVE = 4096;
+
+	private static final int SLOT_SIZE = MAX_SECRET_LENGTH + 1; // The length byte and the secret...
+
+	private final int maxKeys;
+	private final ConcurrentHashMap<String, Tenant> tenants;
+	private final ByteBuffer secrets; // Guarded by this...
+	private final int[] freeSlots; // Guarded by this...
+	private int freeCount; // Guarded by this...
+	private final Tenant[] active; // Guarded by this...
+	private int activeCount; // Guarded by this...
+	private int hand; // Guarded by this...
+
+	/**
+	 * CONSTRUCTOR: Creates a registry for up to the given number of keys, which keeps up to
+	 * {@link #DEFAULT_MAX_ACTIVE} of them ready and their secrets off-heap.
+	 *
+	 * @param maxKeys - The most keys that can be registered as int
+	 */
+	public CredentialRegistry(int maxKeys) {
+		this(maxKeys, Math.min(maxKeys, DEFAULT_MAX_ACTIVE), true);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a registry for up to the given number of keys.
+	 *
+	 * @param maxKeys - The most keys that can be registered as int
+	 * @param maxActive - The most {@link Signer}s kept ready as int
+	 * @param offHeap - Whether to keep the secrets in a direct buffer as boolean
+	 */
+	public CredentialRegistry(int maxKeys, int maxActive, boolean offHeap) {
+		if (maxKeys < 1 || maxKeys > Integer.MAX_VALUE / SLOT_SIZE) throw new IllegalArgumentException("The most keys must be between 1 and " + Integer.MAX_VALUE / SLOT_SIZE + "!");
+		if (maxActive < 1) throw new IllegalArgumentException("At least one signer must be kept ready!");
+		this.maxKeys = maxKeys;
+		this.tenants = new ConcurrentHashMap<>(Math.min(maxKeys, 1 << 16));
+		this.secrets = offHeap ? ByteBuffer.allocateDirect(maxKeys * SLOT_SIZE) : ByteBuffer.allocate(maxKeys * SLOT_SIZE);
+		this.freeSlots = new int[maxKeys];
+		for (int i = 0; i < maxKeys; i++) {
+			this.freeSlots[i] = maxKeys - 1 - i; // The lowest slots are taken first...
+		}
+		this.freeCount = maxKeys;
+		this.active = new Tenant[maxActive];
+	}
+
+	/**
+	 * This method registers the given keys, replacing the secret key of an access key that is
+	 * already registered.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secretKey - The AWS secret key as {@link String}
+	 *
+	 * @throws IllegalArgumentException if the secret key is empty or longer than {@link #MAX_SECRET_LENGTH} bytes
+	 * @throws IllegalStateException if the registry already holds its most keys
+	 */
+	public void register(String accessKey, String secretKey) {
+		if (accessKey == null || secretKey == null) throw new NullPointerException();
+		final byte[] secret = secretKey.getBytes(StandardCharsets.UTF_8);
+		try {
+			if (secret.length == 0 || secret.length > MAX_SECRET_LENGTH) throw new IllegalArgumentException("The secret key of access key '" + accessKey + "' must be 1 to " + MAX_SECRET_LENGTH + " bytes long!");
+			synchronized (this) {
+				final Tenant previous = this.tenants.get(accessKey);
+				if (previous == null && this.freeCount == 0) throw new IllegalStateException("The registry already holds its most of " + this.maxKeys + " keys!");
+				if (previous != null) {
+					release(previous);
+				}
+				final int slot = this.freeSlots[--this.freeCount];
+				final int offset = slot * SLOT_SIZE;
+				this.secrets.put(offset, (byte) secret.length);
+				for (int i = 0; i < secret.length; i++) {
+					this.secrets.put(offset + 1 + i, secret[i]);
+				}
+				this.tenants.put(accessKey, new Tenant(accessKey, slot));
+			}
+		} finally {
+			Arrays.fill(secret, (byte) 0);
+		}
+	}
+
+	/**
+	 * This method revokes the given access key, wiping its secret key.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @return Returns true if the key was registered, otherwise false
+	 */
+	public synchronized boolean revoke(String accessKey) {
+		final Tenant tenant = this.tenants.remove(accessKey);
+		if (tenant == null) {
+
+			return false;
+		}
+		release(tenant);
+
+		return true;
+	}
+
+	/**
+	 * This method checks whether the given access key is registered.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @return Returns true if it is registered, otherwise false
+	 */
+	public boolean isRegistered(String accessKey) {
+
+		return this.tenants.containsKey(accessKey);
+	}
+
+	/**
+	 * This method returns how many keys are registered.
+	 *
+	 * @return Returns the number of keys as int
+	 */
+	public int size() {
+
+		return this.tenants.size();
+	}
+
+	/**
+	 * This method returns how many keys currently have a ready {@link Signer}.
+	 *
+	 * @return Returns the number of keys as int
+	 */
+	public synchronized int getActiveCount() {
+
+		return this.activeCount;
+	}
+
+	/**
+	 * This method returns the {@link Signer} of the given access key, building it if it is not ready.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @return Returns the signer as {@link Signer}
+	 *
+	 * @throws IllegalArgumentException if the access key is not registered
+	 */
+	public Signer getSigner(String accessKey) {
+		final Tenant tenant = this.tenants.get(accessKey);
+		if (tenant == null) throw new IllegalArgumentException("The access key '" + accessKey + "' is not registered!");
+		final Signer signer = tenant.signer;
+		if (signer == null) {
+
+			return activate(tenant);
+		}
+		if (!tenant.referenced) { // Only written when needed, as the field is shared between threads...
+			tenant.referenced = true;
+		}
+
+		return signer;
+	}
+
+	/**
+	 * This method generates a properly formatted Authorization header for the given request with
+	 * the keys registered for the given access key, which are used in place of the ones held by the request.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param request - The request as {@link AWSRequest}
+	 * @return Returns the generated Authorization header as {@link String}
+	 *
+	 * @throws IllegalArgumentException if the access key is not registered
+	 */
+	public String genAuthHeader(String accessKey, AWSRequest request) {
+
+		return AwsAuthV2Util.genAuthHeader(request, getSigner(accessKey));
+	}
+
+	/**
+	 * This method generates a presigned URL for the given request with the keys registered for the
+	 * given access key, which are used in place of the ones held by the request.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param request - The request as {@link AWSRequest}
+	 * @param expires - The time the URL expires in seconds since the epoch as long
+	 * @return Returns the presigned URL as {@link String}
+	 *
+	 * @throws IllegalArgumentException if the access key is not registered
+	 */
+	public String genPresignedUrl(String accessKey, AWSRequest request, long expires) {
+
+		return AwsAuthV2Util.genPresignedUrl(request, getSigner(accessKey), expires);
+	}
+
+	/**
+	 * PRIVATE METHOD: Builds the {@link Signer} of the given key from its slot and makes it ready,
+	 * dropping the least recently used one if too many are.
+	 *
+	 * @param tenant - The key as {@link Tenant}
+	 * @return Returns the signer as {@link Signer}
+	 */
+	private synchronized Signer activate(Tenant tenant) {
+		Signer signer = tenant.signer;
+		if (signer != null) { // Another thread was first...
+
+			return signer;
+		}
+		if (tenant.revoked) { // Revoked or replaced since it was looked up...
+
+			return getSigner(tenant.accessKey);
+		}
+		final int offset = tenant.slot * SLOT_SIZE;
+		final byte[] secret = new byte[this.secrets.get(offset)];
+		try {
+			for (int i = 0; i < secret.length; i++) {
+				secret[i] = this.secrets.get(offset + 1 + i);
+			}
+			signer = new Signer(tenant.accessKey, secret);
+		} catch (NoSuchAlgorithmException | InvalidKeyException e) {
+			throw new IllegalStateException("Unable to create a signer for access key '" + tenant.accessKey + "'!", e);
+		} finally {
+			Arrays.fill(secret, (byte) 0);
+		}
+		admit(tenant);
+		tenant.signer = signer;
+
+		return signer;
+	}
+
+	/**
+	 * PRIVATE METHOD: Gives the given key a place among the ready ones, sweeping the CLOCK hand
+	 * over them until it finds a free place or a key not used since the hand last passed.
+	 *
+	 * @param tenant - The key as {@link Tenant}
+	 */
+	private void admit(Tenant tenant) {
+		final Tenant[] ring = this.active;
+		while (true) {
+			final int i = this.hand;
+			this.hand = i + 1 == ring.length ? 0 : i + 1;
+			final Tenant current = ring[i];
+			if (current == null) {
+				this.activeCount++;
+			} else if (current.referenced) {
+				current.referenced = false;
+				continue;
+			} else {
+				current.signer = null;
+				current.index = -1;
+			}
+			ring[i] = tenant;
+			tenant.index = i;
+			tenant.referenced = true;
+
+			return;
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Drops the given key, wiping its slot and returning it to the free ones.
+	 *
+	 * @param tenant - The key as {@link Tenant}
+	 */
+	private void release(Tenant tenant) {
+		tenant.revoked = true;
+		tenant.signer = null;
+		if (tenant.index >= 0) {
+			this.active[tenant.index] = null;
+			tenant.index = -1;
+			this.activeCount--;
+		}
+		final int offset = tenant.slot * SLOT_SIZE;
+		for (int i = 0; i < SLOT_SIZE; i++) {
+			this.secrets.put(offset + i, (byte) 0);
+		}
+		this.freeSlots[this.freeCount++] = tenant.slot;
+	}
+
+	/**
+	 * This class holds a registered key: the slot of its secret and its {@link Signer} while ready.
+	 */
+	private static final class Tenant {
+		final String accessKey;
+		final int slot;
+		volatile Signer signer;
+		boolean referenced; // Set by readers without a lock, a missed write only costs a rebuild...
+		boolean revoked; // Guarded by the registry...
+		int index = -1; // Guarded by the registry...
+
+		Tenant(String accessKey, int slot) {
+			this.accessKey = accessKey;
+			this.slot = slot;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class is an immutable snapshot of a set of AWS credentials, as handed out by a
+ * {@link CredentialsProvider}. The {@link Signer} of the keys is built along with the
+ * snapshot, so the signing path never has to initialize an HMAC, and
+ * it goes away together with the snapshot once the keys are rotated.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class Credentials {
+	/** The expiration of credentials that do not expire. */
+	public static final long NEVER_EXPIRES = Long.MAX_VALUE;
+
+	private final String accessKey;
+	private final String secretKey;
+	private final String sessionToken;
+	private final long expiresAtMillis;
+	private final Signer signer;
+
+	/**
+	 * CONSTRUCTOR: Creates credentials that do not expire.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secretKey - The AWS secret key as {@link String}
+	 */
+	public Credentials(String accessKey, String secretKey) {
+		this(accessKey, secretKey, null, NEVER_EXPIRES);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates temporary credentials.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secretKey - The AWS secret key as {@link String}
+	 * @param sessionToken - The session token to send as x-amz-security-token as {@link String}, or null
+	 * @param expiresAtMillis - The time the credentials expire in milliseconds since the epoch as long
+	 */
+	public Credentials(String accessKey, String secretKey, String sessionToken, long expiresAtMillis) {
+		if (accessKey == null || secretKey == null) throw new NullPointerException();
+		this.accessKey = accessKey;
+		this.secretKey = secretKey;
+		this.sessionToken = sessionToken;
+		this.expiresAtMillis = expiresAtMillis;
+		try {
+			this.signer = new Signer(accessKey, secretKey);
+		} catch (NoSuchAlgorithmException | InvalidKeyException e) {
+			throw new IllegalArgumentException("Unable to create a signer for access key '" + accessKey + "'!", e);
+		}
+	}
+
+	public String getAccessKey() {
+		return this.accessKey;
+	}
+
+	public String getSecretKey() {
+		return this.secretKey;
+	}
+
+	public String getSessionToken() {
+		return this.sessionToken;
+	}
+
+	public long getExpiresAtMillis() {
+		return this.expiresAtMillis;
+	}
+
+	/**
+	 * This method returns the ready-to-use Signature Version 2 {@link Signer} of these credentials.
+	 *
+	 * @return Returns the signer as {@link Signer}
+	 */
+	public Signer getSigner() {
+
+		return this.signer;
+	}
+
+	/**
+	 * This method creates a Signature Version 4 signer of these credentials for the given scope.
+	 * Its derived keys come from the shared cache, so this is cheap.
+	 *
+	 * @param region - The region as {@link String}
+	 * @param service - The service as {@link String}
+	 * @return Returns the signer as {@link V4Signer}
+	 */
+	public V4Signer newV4Signer(String region, String service) {
+
+		return new V4Signer(this.accessKey, this.secretKey, region, service);
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method checks whether these credentials hold the same keys
+	 * and token as the given ones.
+	 *
+	 * @param other - The other credentials as {@link Credentials}
+	 * @return Returns true if the keys and token are the same, otherwise false
+	 */
+	boolean sameKeys(Credentials other) {
+
+		return other != null && this.accessKey.equals(other.accessKey) && this.secretKey.equals(other.secretKey)
+			&& (this.sessionToken == null ? other.sessionToken == null : this.sessionToken.equals(other.sessionToken));
+	}
+}
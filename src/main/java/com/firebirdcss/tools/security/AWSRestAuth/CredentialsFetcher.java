@@ -0,0 +1,23 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.io.IOException;
+
+/**
+ * This interface is implemented by whatever fetches fresh {@link Credentials} for a
+ * {@link RefreshingCredentialsProvider}, such as a remote key service or the instance
+ * metadata endpoint. It is only ever called from the provider's refresh thread.
+ *
+ * @author Scott Griffis
+ *
+ */
+@FunctionalInterface
+public interface CredentialsFetcher {
+
+	/**
+	 * This method fetches the current credentials.
+	 *
+	 * @return Returns the credentials as {@link Credentials}
+	 * @throws IOException - When the credentials can not be fetched
+	 */
+	Credentials fetch() throws IOException;
+}
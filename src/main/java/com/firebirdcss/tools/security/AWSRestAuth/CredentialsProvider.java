@@ -0,0 +1,20 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+/**
+ * This interface is implemented by the sources of the {@link Credentials} requests are signed
+ * with, so that signing can follow key rotation instead of using fixed keys.
+ *
+ * @author Scott Griffis
+ *
+ */
+@FunctionalInterface
+public interface CredentialsProvider {
+
+	/**
+	 * This method returns the current credentials. Implementations must return quickly, without
+	 * blocking or taking a lock, as it is called on the signing path.
+	 *
+	 * @return Returns the current credentials as {@link Credentials}
+	 */
+	Credentials getCredentials();
+}
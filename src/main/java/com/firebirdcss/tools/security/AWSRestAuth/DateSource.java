@@ -0,0 +1,135 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class is a source of the current Date (RFC 1123) and x-amz-date (ISO 8601 basic) header
+ * values for requests the caller gives no date of their own. Each value is formatted at most
+ * once per second and published through an {@link AtomicReference}, so reading it is just a
+ * clock read and a comparison, and is safe from any thread.
+ * <p>
+ * The clock can be injected for tests, and a skew can be set to make up for a local clock
+ * that is off from the one of AWS, such as after a RequestTimeTooSkewed error.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class DateSource {
+	/** The source of the system clock. */
+	public static final DateSource SYSTEM = new DateSource(Clock.systemUTC());
+
+	private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+	private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'", Locale.US).withZone(ZoneOffset.UTC);
+
+	private final Clock clock;
+	private final AtomicReference<Stamp> current = new AtomicReference<>(new Stamp(Long.MIN_VALUE));
+	private volatile long skewMillis;
+
+	/**
+	 * CONSTRUCTOR: Creates a source of the dates of the given clock.
+	 *
+	 * @param clock - The clock as {@link Clock}
+	 */
+	public DateSource(Clock clock) {
+		if (clock == null) throw new NullPointerException();
+		this.clock = clock;
+	}
+
+	/**
+	 * This method returns the current time as a Date header value, such as
+	 * "Tue, 27 Mar 2007 19:36:42 GMT".
+	 *
+	 * @return Returns the date as {@link String}
+	 */
+	public String getHttpDate() {
+
+		return stamp().httpDate;
+	}
+
+	/**
+	 * This method returns the current time as an x-amz-date header value, such as
+	 * "20070327T193642Z", as Signature Version 4 needs it.
+	 *
+	 * @return Returns the date as {@link String}
+	 */
+	public String getAmzDate() {
+
+		return stamp().amzDate;
+	}
+
+	/**
+	 * This method returns the current time, skew included, in seconds since the epoch, as it
+	 * is used for the Expires time of presigned URLs.
+	 *
+	 * @return Returns the seconds since the epoch as long
+	 */
+	public long getEpochSecond() {
+
+		return Math.floorDiv(this.clock.millis() + this.skewMillis, 1000L);
+	}
+
+	/**
+	 * This method sets how far the clock of AWS is ahead of the local clock; negative if behind.
+	 *
+	 * @param skewMillis - The skew in milliseconds as long
+	 */
+	public void setSkewMillis(long skewMillis) {
+		this.skewMillis = skewMillis;
+	}
+
+	/**
+	 * This method returns how far the clock of AWS is ahead of the local clock.
+	 *
+	 * @return Returns the skew in milliseconds as long
+	 */
+	public long getSkewMillis() {
+
+		return this.skewMillis;
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the stamp of the current second, formatting it if the last one
+	 * is of an earlier second. When several threads race to do so, the first one wins and the
+	 * others go on with their own, identical, values.
+	 *
+	 * @return Returns the stamp as {@link Stamp}
+	 */
+	private Stamp stamp() {
+		final long second = getEpochSecond();
+		final Stamp stamp = this.current.get();
+		if (stamp.second == second) {
+
+			return stamp;
+		}
+		final Stamp fresh = new Stamp(second);
+		this.current.compareAndSet(stamp, fresh);
+
+		return fresh;
+	}
+
+	/**
+	 * This class holds the formatted values of one second.
+	 */
+	private static final class Stamp {
+		final long second;
+		final String httpDate;
+		final String amzDate;
+
+		Stamp(long second) {
+			this.second = second;
+			if (second == Long.MIN_VALUE) { // Placeholder before the first use...
+				this.httpDate = null;
+				this.amzDate = null;
+			} else {
+				final Instant instant = Instant.ofEpochSecond(second);
+				this.httpDate = HTTP_DATE.format(instant);
+				this.amzDate = AMZ_DATE.format(instant);
+			}
+		}
+	}
+}
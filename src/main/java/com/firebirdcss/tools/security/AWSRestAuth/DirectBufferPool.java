@@ -0,0 +1,81 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class pools direct {@link ByteBuffer}s by capacity, so streaming many large payloads
+ * does not keep allocating (and waiting on the release of) off-heap memory.
+ *
+ * @author Scott Griffis
+ *
+ */
+final class DirectBufferPool {
+	static final DirectBufferPool SHARED = new DirectBufferPool(16);
+
+	private final int maxPerSize;
+	private final ConcurrentHashMap<Integer, Pool> pools = new ConcurrentHashMap<>();
+
+	/**
+	 * CONSTRUCTOR: Creates a pool that keeps at most the given number of idle buffers per capacity.
+	 *
+	 * @param maxPerSize - The most idle buffers kept per capacity as int
+	 */
+	DirectBufferPool(int maxPerSize) {
+		this.maxPerSize = maxPerSize;
+	}
+
+	/**
+	 * This method hands out a cleared direct buffer of exactly the given capacity.
+	 *
+	 * @param capacity - The capacity as int
+	 * @return Returns the buffer as {@link ByteBuffer}
+	 */
+	ByteBuffer acquire(int capacity) {
+		ByteBuffer buffer = poolFor(capacity).idle.poll();
+		if (buffer == null) {
+
+			return ByteBuffer.allocateDirect(capacity);
+		}
+		poolFor(capacity).size.decrementAndGet();
+		buffer.clear();
+
+		return buffer;
+	}
+
+	/**
+	 * This method takes back a buffer handed out by {@link #acquire(int)}. The caller must not
+	 * use it afterwards.
+	 *
+	 * @param buffer - The buffer as {@link ByteBuffer}
+	 */
+	void release(ByteBuffer buffer) {
+		Pool pool = poolFor(buffer.capacity());
+		if (pool.size.incrementAndGet() <= this.maxPerSize) {
+			pool.idle.offer(buffer);
+		} else {
+			pool.size.decrementAndGet(); // Full, let the buffer be collected...
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the pool of the given capacity.
+	 *
+	 * @param capacity - The capacity as int
+	 * @return Returns the pool as {@link Pool}
+	 */
+	private Pool poolFor(int capacity) {
+
+		return this.pools.computeIfAbsent(capacity, c -> new Pool());
+	}
+
+	/**
+	 * This class is the idle buffers of one capacity.
+	 */
+	private static final class Pool {
+		final ConcurrentLinkedQueue<ByteBuffer> idle = new ConcurrentLinkedQueue<>();
+		final AtomicInteger size = new AtomicInteger();
+	}
+}
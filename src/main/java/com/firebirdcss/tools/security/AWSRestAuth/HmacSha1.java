@@ -0,0 +1,208 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.util.Arrays;
+
+/**
+ * This class computes HMAC-SHA1 (RFC 2104, FIPS 180-4) in plain Java. The SHA-1 state after the
+ * key XOR ipad block and after the key XOR opad block is computed once per key, so each HMAC
+ * only compresses the blocks of the message and a single block for the outer hash.
+ *
+ * @author Scott Griffis
+ *
+ */
+final class HmacSha1 implements SigningEngine.Hmac {
+	private static final int BLOCK_SIZE = 64;
+	private static final int LENGTH = 20;
+	private static final int[] INITIAL_STATE = { 0x67452301, 0xEFCDAB89, 0x98BADCFE, 0x10325476, 0xC3D2E1F0 };
+
+	private final int[] innerState; // Shared by copies, never changed after construction...
+	private final int[] outerState; // Shared by copies, never changed after construction...
+	private final int[] state = new int[5];
+	private final int[] words = new int[80];
+	private final byte[] block = new byte[BLOCK_SIZE];
+	private int blockLength;
+	private long messageLength;
+
+	/**
+	 * CONSTRUCTOR: Creates an HMAC-SHA1 initialized with the given key.
+	 *
+	 * @param key - The key as byte[]
+	 *
+	 * @throws IllegalArgumentException if the key is empty
+	 */
+	HmacSha1(byte[] key) {
+		if (key.length == 0) throw new IllegalArgumentException("Empty key");
+		byte[] k = key;
+		if (k.length > BLOCK_SIZE) { // Longer keys are replaced by their hash...
+			System.arraycopy(INITIAL_STATE, 0, this.state, 0, 5);
+			update(key, 0, key.length);
+			k = new byte[LENGTH];
+			finishHash(key.length * 8L, k, 0);
+		}
+		final byte[] pad = new byte[BLOCK_SIZE];
+		this.innerState = padState(k, pad, (byte) 0x36);
+		this.outerState = padState(k, pad, (byte) 0x5C);
+		Arrays.fill(pad, (byte) 0);
+		if (k != key) Arrays.fill(k, (byte) 0);
+		reset();
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a copy of the given HMAC.
+	 *
+	 * @param source - The HMAC to copy as {@link HmacSha1}
+	 */
+	private HmacSha1(HmacSha1 source) {
+		this.innerState = source.innerState;
+		this.outerState = source.outerState;
+		System.arraycopy(source.state, 0, this.state, 0, 5);
+		System.arraycopy(source.block, 0, this.block, 0, source.blockLength);
+		this.blockLength = source.blockLength;
+		this.messageLength = source.messageLength;
+	}
+
+	@Override
+	public void update(byte[] input, int offset, int length) {
+		this.messageLength += length;
+		if (this.blockLength > 0) {
+			final int n = Math.min(length, BLOCK_SIZE - this.blockLength);
+			System.arraycopy(input, offset, this.block, this.blockLength, n);
+			this.blockLength += n;
+			offset += n;
+			length -= n;
+			if (this.blockLength < BLOCK_SIZE) {
+
+				return;
+			}
+			compress(this.state, this.block, 0);
+			this.blockLength = 0;
+		}
+		for (; length >= BLOCK_SIZE; offset += BLOCK_SIZE, length -= BLOCK_SIZE) {
+			compress(this.state, input, offset);
+		}
+		if (length > 0) {
+			System.arraycopy(input, offset, this.block, 0, length);
+			this.blockLength = length;
+		}
+	}
+
+	@Override
+	public int doFinal(byte[] output, int offset) {
+		finishHash((BLOCK_SIZE + this.messageLength) * 8, output, offset);
+		System.arraycopy(this.outerState, 0, this.state, 0, 5);
+		System.arraycopy(output, offset, this.block, 0, LENGTH);
+		this.blockLength = LENGTH;
+		finishHash((BLOCK_SIZE + LENGTH) * 8, output, offset);
+		reset();
+
+		return LENGTH;
+	}
+
+	@Override
+	public void reset() {
+		System.arraycopy(this.innerState, 0, this.state, 0, 5);
+		this.blockLength = 0;
+		this.messageLength = 0;
+	}
+
+	@Override
+	public int getLength() {
+
+		return LENGTH;
+	}
+
+	@Override
+	public SigningEngine.Hmac copy() {
+
+		return new HmacSha1(this);
+	}
+
+	/**
+	 * PRIVATE METHOD: Computes the SHA-1 state after the block of the given key XOR the given pad.
+	 *
+	 * @param key - The key of at most one block as byte[]
+	 * @param pad - The area to build the block in as byte[]
+	 * @param xor - The pad byte as byte
+	 * @return Returns the state as int[]
+	 */
+	private int[] padState(byte[] key, byte[] pad, byte xor) {
+		Arrays.fill(pad, xor);
+		for (int i = 0; i < key.length; i++) {
+			pad[i] ^= key[i];
+		}
+		final int[] padded = INITIAL_STATE.clone();
+		compress(padded, pad, 0);
+
+		return padded;
+	}
+
+	/**
+	 * PRIVATE METHOD: Pads the buffered bytes, compresses the last block(s) and writes the hash.
+	 *
+	 * @param bitLength - The length of the whole hashed message in bits as long
+	 * @param output - The destination as byte[]
+	 * @param offset - The offset to start writing at as int
+	 */
+	private void finishHash(long bitLength, byte[] output, int offset) {
+		final byte[] b = this.block;
+		int pos = this.blockLength;
+		b[pos++] = (byte) 0x80;
+		if (pos > BLOCK_SIZE - 8) { // No room left for the length...
+			Arrays.fill(b, pos, BLOCK_SIZE, (byte) 0);
+			compress(this.state, b, 0);
+			pos = 0;
+		}
+		Arrays.fill(b, pos, BLOCK_SIZE - 8, (byte) 0);
+		for (int i = 0; i < 8; i++) {
+			b[BLOCK_SIZE - 1 - i] = (byte) (bitLength >>> (8 * i));
+		}
+		compress(this.state, b, 0);
+		for (int i = 0; i < 5; i++) {
+			final int s = this.state[i];
+			output[offset++] = (byte) (s >>> 24);
+			output[offset++] = (byte) (s >>> 16);
+			output[offset++] = (byte) (s >>> 8);
+			output[offset++] = (byte) s;
+		}
+		this.blockLength = 0;
+	}
+
+	/**
+	 * PRIVATE METHOD: Runs the SHA-1 compression function over one block.
+	 *
+	 * @param s - The state to update as int[]
+	 * @param input - The bytes holding the block as byte[]
+	 * @param offset - The offset of the block as int
+	 */
+	private void compress(int[] s, byte[] input, int offset) {
+		final int[] w = this.words;
+		for (int t = 0; t < 16; t++, offset += 4) {
+			w[t] = input[offset] << 24 | (input[offset + 1] & 0xFF) << 16 | (input[offset + 2] & 0xFF) << 8 | (input[offset + 3] & 0xFF);
+		}
+		for (int t = 16; t < 80; t++) {
+			w[t] = Integer.rotateLeft(w[t - 3] ^ w[t - 8] ^ w[t - 14] ^ w[t - 16], 1);
+		}
+		int a = s[0], b = s[1], c = s[2], d = s[3], e = s[4];
+		for (int t = 0; t < 20; t++) {
+			final int temp = Integer.rotateLeft(a, 5) + ((b & c) | (~b & d)) + e + w[t] + 0x5A827999;
+			e = d; d = c; c = Integer.rotateLeft(b, 30); b = a; a = temp;
+		}
+		for (int t = 20; t < 40; t++) {
+			final int temp = Integer.rotateLeft(a, 5) + (b ^ c ^ d) + e + w[t] + 0x6ED9EBA1;
+			e = d; d = c; c = Integer.rotateLeft(b, 30); b = a; a = temp;
+		}
+		for (int t = 40; t < 60; t++) {
+			final int temp = Integer.rotateLeft(a, 5) + ((b & c) | (b & d) | (c & d)) + e + w[t] + 0x8F1BBCDC;
+			e = d; d = c; c = Integer.rotateLeft(b, 30); b = a; a = temp;
+		}
+		for (int t = 60; t < 80; t++) {
+			final int temp = Integer.rotateLeft(a, 5) + (b ^ c ^ d) + e + w[t] + 0xCA62C1D6;
+			e = d; d = c; c = Integer.rotateLeft(b, 30); b = a; a = temp;
+		}
+		s[0] += a;
+		s[1] += b;
+		s[2] += c;
+		s[3] += d;
+		s[4] += e;
+	}
+}
@@ -0,0 +1,115 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * This class is the default {@link SigningEngine}. It computes the HMAC with the {@link Mac} of
+ * the first JCE provider that offers HmacSHA1, and Base64 encodes with the allocation-free
+ * encoder of this library.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class JceSigningEngine implements SigningEngine {
+	/** The name of this engine. */
+	public static final String NAME = "jce";
+
+	private static final String HASH_TYPE = "HmacSHA1";
+
+	@Override
+	public String getName() {
+
+		return NAME;
+	}
+
+	@Override
+	public Hmac newHmac(byte[] key) throws NoSuchAlgorithmException, InvalidKeyException {
+
+		return newJceHmac(key);
+	}
+
+	@Override
+	public int encodeBase64(byte[] src, int srcOff, int length, byte[] dst, int dstOff) {
+
+		return Base64Util.encode(src, srcOff, length, dst, dstOff);
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Creates a new {@link Hmac} backed by a JCE {@link Mac}.
+	 *
+	 * @param key - The key as byte[]
+	 * @return Returns the HMAC as {@link Hmac}
+	 *
+	 * @throws NoSuchAlgorithmException
+	 * @throws InvalidKeyException
+	 */
+	static Hmac newJceHmac(byte[] key) throws NoSuchAlgorithmException, InvalidKeyException {
+		final SecretKeySpec keySpec = new SecretKeySpec(key, HASH_TYPE);
+		final Mac mac = Mac.getInstance(HASH_TYPE);
+		mac.init(keySpec);
+
+		return new JceHmac(mac, keySpec);
+	}
+
+	/**
+	 * This class adapts a JCE {@link Mac} to an {@link Hmac}.
+	 */
+	private static final class JceHmac implements Hmac {
+		private final Mac mac;
+		private final SecretKeySpec keySpec;
+
+		JceHmac(Mac mac, SecretKeySpec keySpec) {
+			this.mac = mac;
+			this.keySpec = keySpec;
+		}
+
+		@Override
+		public void update(byte[] input, int offset, int length) {
+			this.mac.update(input, offset, length);
+		}
+
+		@Override
+		public int doFinal(byte[] output, int offset) {
+			try {
+				this.mac.doFinal(output, offset);
+			} catch (ShortBufferException e) { // Callers always leave room for the HMAC...
+				throw new IllegalStateException(e);
+			}
+
+			return this.mac.getMacLength();
+		}
+
+		@Override
+		public void reset() {
+			this.mac.reset();
+		}
+
+		@Override
+		public int getLength() {
+
+			return this.mac.getMacLength();
+		}
+
+		@Override
+		public Hmac copy() {
+			try {
+
+				return new JceHmac((Mac) this.mac.clone(), this.keySpec); // Keeps the pad state...
+			} catch (CloneNotSupportedException e) {
+				try {
+					final Mac fresh = Mac.getInstance(HASH_TYPE);
+					fresh.init(this.keySpec);
+
+					return new JceHmac(fresh, this.keySpec);
+				} catch (NoSuchAlgorithmException | InvalidKeyException ex) { // Already succeeded once...
+					throw new IllegalStateException("Unable to copy the " + HASH_TYPE + " Mac!", ex);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * This class is a {@link SigningEngine} that computes the HMAC like {@link JceSigningEngine} does,
+ * but Base64 encodes with the {@link Base64.Encoder} of the JDK, which some JDKs compile to
+ * vectorized code.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class JdkBase64SigningEngine implements SigningEngine {
+	/** The name of this engine. */
+	public static final String NAME = "jce-jdk-base64";
+
+	private static final Base64.Encoder ENCODER = Base64.getEncoder();
+
+	@Override
+	public String getName() {
+
+		return NAME;
+	}
+
+	@Override
+	public Hmac newHmac(byte[] key) throws NoSuchAlgorithmException, InvalidKeyException {
+
+		return JceSigningEngine.newJceHmac(key);
+	}
+
+	@Override
+	public int encodeBase64(byte[] src, int srcOff, int length, byte[] dst, int dstOff) {
+		final byte[] input = srcOff == 0 && length == src.length ? src : Arrays.copyOfRange(src, srcOff, srcOff + length);
+		if (dstOff == 0) {
+
+			return ENCODER.encode(input, dst); // Writes straight into the destination...
+		}
+		final byte[] encoded = ENCODER.encode(input);
+		System.arraycopy(encoded, 0, dst, dstOff, encoded.length);
+
+		return encoded.length;
+	}
+}
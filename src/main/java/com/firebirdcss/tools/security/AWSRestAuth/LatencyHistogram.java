@@ -0,0 +1,172 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a lock-free histogram of latencies in the style of HdrHistogram: values below
+ * 64 are counted exactly, and every larger power of two is split into 32 linear sub-buckets,
+ * so any recorded value is reported within about 3% of itself. The whole range of a long fits
+ * in under 2000 counters, and recording a value is a few shifts and one atomic increment.
+ * <p>
+ * Reads are not atomic with respect to concurrent recording, which is fine for monitoring.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class LatencyHistogram {
+	private static final int EXACT_BITS = 6;
+	private static final int EXACT = 1 << EXACT_BITS;
+	private static final int SUB_BITS = EXACT_BITS - 1;
+	private static final int SUB = 1 << SUB_BITS;
+	private static final int BUCKETS = EXACT + (63 - EXACT_BITS) * SUB;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * This method records a value. Negative values are recorded as zero.
+	 *
+	 * @param value - The value, such as nanoseconds, as long
+	 */
+	public void record(long value) {
+		if (value < 0) value = 0;
+		this.counts.getAndIncrement(indexOf(value));
+		this.total.increment();
+		this.sum.add(value);
+		long current;
+		while (value > (current = this.max.get()) && !this.max.compareAndSet(current, value)) {
+			// Lost to another thread, try again with its max...
+		}
+	}
+
+	/**
+	 * This method returns how many values were recorded.
+	 *
+	 * @return Returns the count as long
+	 */
+	public long getCount() {
+
+		return this.total.sum();
+	}
+
+	/**
+	 * This method returns the largest value recorded.
+	 *
+	 * @return Returns the max as long
+	 */
+	public long getMax() {
+
+		return this.max.get();
+	}
+
+	/**
+	 * This method returns the mean of the values recorded.
+	 *
+	 * @return Returns the mean, or 0 if nothing was recorded, as double
+	 */
+	public double getMean() {
+		final long count = this.total.sum();
+
+		return count == 0 ? 0.0 : (double) this.sum.sum() / count;
+	}
+
+	/**
+	 * This method returns the value that the given percentage of the recorded values are at or
+	 * below, as the highest value of its bucket.
+	 *
+	 * @param percentile - The percentile from 0 to 100 as double
+	 * @return Returns the value, or 0 if nothing was recorded, as long
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = 0;
+		final long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = this.counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) {
+
+			return 0L;
+		}
+		final long rank = Math.max(1L, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+
+				return Math.min(highestValueOf(i), getMax());
+			}
+		}
+
+		return getMax();
+	}
+
+	/**
+	 * This method adds the values recorded by the given histogram to this one, so threads can each
+	 * record to their own histogram without contending, and be summed up at the end.
+	 *
+	 * @param other - The histogram to add as {@link LatencyHistogram}
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			final long count = other.counts.get(i);
+			if (count != 0) this.counts.addAndGet(i, count);
+		}
+		this.total.add(other.total.sum());
+		this.sum.add(other.sum.sum());
+		final long value = other.max.get();
+		long current;
+		while (value > (current = this.max.get()) && !this.max.compareAndSet(current, value)) {
+			// Lost to another thread, try again with its max...
+		}
+	}
+
+	/**
+	 * This method sets every count back to zero.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			this.counts.set(i, 0L);
+		}
+		this.total.reset();
+		this.sum.reset();
+		this.max.set(0L);
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Returns the bucket of the given value.
+	 *
+	 * @param value - The non-negative value as long
+	 * @return Returns the bucket index as int
+	 */
+	static int indexOf(long value) {
+		if (value < EXACT) {
+
+			return (int) value;
+		}
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS; // Keeps the top 6 bits...
+
+		return EXACT + (shift - 1) * SUB + (int) ((value >>> shift) - SUB);
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Returns the highest value that falls into the given bucket.
+	 *
+	 * @param index - The bucket index as int
+	 * @return Returns the value as long
+	 */
+	static long highestValueOf(int index) {
+		if (index < EXACT) {
+
+			return index;
+		}
+		final int shift = (index - EXACT) / SUB + 1;
+		final long mantissa = (index - EXACT) % SUB + SUB;
+
+		return ((mantissa + 1) << shift) - 1;
+	}
+}
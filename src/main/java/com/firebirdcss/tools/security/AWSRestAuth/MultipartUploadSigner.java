@@ -0,0 +1,319 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * This class signs the requests of an S3 multipart upload of one object: Initiate, one
+ * UploadPart per part of the file, Complete and Abort.
+ * <p>
+ * The parts of a file are memory-mapped and digested in parallel on a {@link ForkJoinPool},
+ * so digesting and signing run as fast as the disk delivers the data. Every signed request
+ * is returned as a copy of its {@link AWSRequest} carrying the Authorization header.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class MultipartUploadSigner {
+	/** The smallest part S3 accepts, except for the last part. */
+	public static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+	/** The most parts S3 accepts in one upload. */
+	public static final int MAX_PARTS = 10_000;
+
+	private static final String AUTHORIZATION = "Authorization";
+	private static final int AUTH_HEADER_PREFIX_LENGTH = (AUTHORIZATION + ": ").length();
+
+	private final String endpoint;
+	private final String bucket;
+	private final String path;
+	private final String secretKey;
+	private final HashMap<String, String> headers;
+	private final Signer signer;
+	private final ForkJoinPool pool;
+
+	/**
+	 * This class is one signed UploadPart request together with the region of the file it uploads.
+	 */
+	public static final class Part {
+		private final int partNumber;
+		private final long offset;
+		private final long length;
+		private final AWSRequest request;
+
+		/**
+		 * PRIVATE CONSTRUCTOR: Creates a signed part.
+		 *
+		 * @param partNumber - The number of the part, from 1 as int
+		 * @param offset - The position of the part in the file as long
+		 * @param length - The length of the part as long
+		 * @param request - The signed request as {@link AWSRequest}
+		 */
+		private Part(int partNumber, long offset, long length, AWSRequest request) {
+			this.partNumber = partNumber;
+			this.offset = offset;
+			this.length = length;
+			this.request = request;
+		}
+
+		public int getPartNumber() {
+			return this.partNumber;
+		}
+
+		public long getOffset() {
+			return this.offset;
+		}
+
+		public long getLength() {
+			return this.length;
+		}
+
+		public AWSRequest getRequest() {
+			return this.request;
+		}
+
+		/**
+		 * This method returns the value of the Authorization header of the part.
+		 *
+		 * @return Returns the Authorization header value as {@link String}
+		 */
+		public String getAuthorization() {
+
+			return this.request.getSpecificHeaderValue(AUTHORIZATION);
+		}
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a {@link MultipartUploadSigner} for one object that digests on the
+	 * common {@link ForkJoinPool}.
+	 *
+	 * @param endpoint - The endpoint of the bucket as {@link String}
+	 * @param bucket - The bucket as {@link String}
+	 * @param path - The key of the object as {@link String}
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secretKey - The AWS secret key as {@link String}
+	 * @param headers - Extra headers sent with every request, such as x-amz-* headers, as {@link HashMap}
+	 * @throws NoSuchAlgorithmException - When HmacSHA1 is not available
+	 * @throws InvalidKeyException - When the secret key can not be used
+	 */
+	public MultipartUploadSigner(String endpoint, String bucket, String path, String accessKey, String secretKey, HashMap<String, String> headers) throws NoSuchAlgorithmException, InvalidKeyException {
+		this(endpoint, bucket, path, accessKey, secretKey, headers, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a {@link MultipartUploadSigner} for one object that digests on the
+	 * given {@link ForkJoinPool}, whose parallelism decides how many cores are used.
+	 *
+	 * @param endpoint - The endpoint of the bucket as {@link String}
+	 * @param bucket - The bucket as {@link String}
+	 * @param path - The key of the object as {@link String}
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secretKey - The AWS secret key as {@link String}
+	 * @param headers - Extra headers sent with every request, such as x-amz-* headers, as {@link HashMap}
+	 * @param pool - The pool to digest on as {@link ForkJoinPool}
+	 * @throws NoSuchAlgorithmException - When HmacSHA1 is not available
+	 * @throws InvalidKeyException - When the secret key can not be used
+	 */
+	public MultipartUploadSigner(String endpoint, String bucket, String path, String accessKey, String secretKey, HashMap<String, String> headers, ForkJoinPool pool) throws NoSuchAlgorithmException, InvalidKeyException {
+		if (pool == null) throw new NullPointerException();
+		this.endpoint = endpoint;
+		this.bucket = bucket;
+		this.path = path;
+		this.secretKey = secretKey;
+		this.headers = headers == null ? new HashMap<>() : new HashMap<>(headers);
+		this.signer = new Signer(accessKey, secretKey);
+		this.pool = pool;
+	}
+
+	/**
+	 * This method signs the request that starts the upload (POST ?uploads).
+	 *
+	 * @param date - The value of the Date header as {@link String}
+	 * @return Returns the signed request as {@link AWSRequest}
+	 */
+	public AWSRequest initiate(String date) {
+		HashMap<String, String> params = new HashMap<>();
+		params.put("uploads", null);
+
+		return sign("POST", params, headersFor(date), null);
+	}
+
+	/**
+	 * This method splits the given file into parts and signs an UploadPart request for each of
+	 * them, digesting the parts in parallel.
+	 *
+	 * @param uploadId - The upload id returned by Initiate as {@link String}
+	 * @param file - The file to upload as {@link Path}
+	 * @param partSize - The size of every part but the last as long
+	 * @param date - The value of the Date header as {@link String}
+	 * @return Returns the signed parts in order as {@link List}
+	 * @throws IOException - When the file can not be read
+	 */
+	public List<Part> signParts(String uploadId, Path file, long partSize, String date) throws IOException {
+		if (uploadId == null) throw new NullPointerException();
+		if (partSize < MIN_PART_SIZE) throw new IllegalArgumentException("Parts must be at least " + MIN_PART_SIZE + " bytes!");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			final long count = Math.max(1, (size + partSize - 1) / partSize);
+			if (count > MAX_PARTS) throw new IllegalArgumentException("File needs more than " + MAX_PARTS + " parts, use larger parts!");
+
+			try {
+
+				return this.pool.submit(() ->
+					IntStream.range(0, (int) count).parallel()
+						.mapToObj(i -> signPart(uploadId, channel, i + 1, i * partSize, Math.min(partSize, size - i * partSize), date))
+						.collect(Collectors.toList())
+				).join();
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * This method signs the request that completes the upload (POST ?uploadId=...), whose body is
+	 * {@link #buildCompleteBody(List)} of the same ETags.
+	 *
+	 * @param uploadId - The upload id returned by Initiate as {@link String}
+	 * @param etags - The ETags returned for the parts, in part order, as {@link List}
+	 * @param date - The value of the Date header as {@link String}
+	 * @return Returns the signed request as {@link AWSRequest}
+	 */
+	public AWSRequest complete(String uploadId, List<String> etags, String date) {
+		final byte[] body = buildCompleteBody(etags).getBytes(StandardCharsets.UTF_8);
+		final ContentMD5 md5;
+		try {
+			md5 = ContentMD5.of(new ByteArrayInputStream(body));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // Not possible for an in-memory stream...
+		}
+		HashMap<String, String> headers = headersFor(date);
+		putHeader(headers, "Content-Type", "application/xml");
+
+		return sign("POST", uploadIdParams(uploadId), headers, md5);
+	}
+
+	/**
+	 * This method signs the request that aborts the upload (DELETE ?uploadId=...).
+	 *
+	 * @param uploadId - The upload id returned by Initiate as {@link String}
+	 * @param date - The value of the Date header as {@link String}
+	 * @return Returns the signed request as {@link AWSRequest}
+	 */
+	public AWSRequest abort(String uploadId, String date) {
+
+		return sign("DELETE", uploadIdParams(uploadId), headersFor(date), null);
+	}
+
+	/**
+	 * This method builds the XML body of the Complete request.
+	 *
+	 * @param etags - The ETags returned for the parts, in part order, as {@link List}
+	 * @return Returns the body as {@link String}
+	 */
+	public static String buildCompleteBody(List<String> etags) {
+		StringBuilder sb = new StringBuilder(64 + etags.size() * 80);
+		sb.append("<CompleteMultipartUpload>");
+		for (int i = 0; i < etags.size(); i++) {
+			sb.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>").append(etags.get(i)).append("</ETag></Part>");
+		}
+		sb.append("</CompleteMultipartUpload>");
+
+		return sb.toString();
+	}
+
+	/**
+	 * PRIVATE METHOD: Digests and signs one part of the file.
+	 *
+	 * @param uploadId - The upload id as {@link String}
+	 * @param channel - The open file as {@link FileChannel}
+	 * @param partNumber - The number of the part as int
+	 * @param offset - The position of the part as long
+	 * @param length - The length of the part as long
+	 * @param date - The value of the Date header as {@link String}
+	 * @return Returns the signed part as {@link Part}
+	 */
+	private Part signPart(String uploadId, FileChannel channel, int partNumber, long offset, long length, String date) {
+		final ContentMD5 md5;
+		try {
+			md5 = ContentMD5.of(channel, offset, length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		HashMap<String, String> params = uploadIdParams(uploadId);
+		params.put("partNumber", Integer.toString(partNumber));
+
+		return new Part(partNumber, offset, length, sign("PUT", params, headersFor(date), md5));
+	}
+
+	/**
+	 * PRIVATE METHOD: Builds and signs a request for the object.
+	 *
+	 * @param method - The request method as {@link String}
+	 * @param params - The request parameters as {@link HashMap}
+	 * @param headers - The request headers as {@link HashMap}
+	 * @param md5 - The digest of the body as {@link ContentMD5}, or null for no body
+	 * @return Returns the request carrying its Authorization header as {@link AWSRequest}
+	 */
+	private AWSRequest sign(String method, HashMap<String, String> params, HashMap<String, String> headers, ContentMD5 md5) {
+		if (md5 != null) {
+			putHeader(headers, "Content-MD5", md5.getBase64());
+			putHeader(headers, "Content-Length", Long.toString(md5.getLength()));
+		}
+		AWSRequest request = new AWSRequest(this.endpoint, this.path, this.bucket, this.signer.getAccessKey(), this.secretKey, method, params, headers);
+		String authorization = AwsAuthV2Util.genAuthHeader(request, this.signer).substring(AUTH_HEADER_PREFIX_LENGTH);
+
+		return request.withHeader(AUTHORIZATION, authorization);
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns a copy of the extra headers with the Date header set.
+	 *
+	 * @param date - The value of the Date header as {@link String}
+	 * @return Returns the headers as {@link HashMap}
+	 */
+	private HashMap<String, String> headersFor(String date) {
+		HashMap<String, String> headers = new HashMap<>(this.headers);
+		putHeader(headers, "Date", date);
+
+		return headers;
+	}
+
+	/**
+	 * PRIVATE METHOD: Sets the given header, replacing any extra header of the same name regardless
+	 * of its case, so the request does not carry both and sign the wrong one.
+	 *
+	 * @param headers - The headers as {@link HashMap}
+	 * @param name - The name of the header as {@link String}
+	 * @param value - The value of the header as {@link String}
+	 */
+	private static void putHeader(HashMap<String, String> headers, String name, String value) {
+		headers.keySet().removeIf(name::equalsIgnoreCase);
+		headers.put(name, value);
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the parameters holding the uploadId sub-resource.
+	 *
+	 * @param uploadId - The upload id as {@link String}
+	 * @return Returns the parameters as {@link HashMap}
+	 */
+	private static HashMap<String, String> uploadIdParams(String uploadId) {
+		if (uploadId == null) throw new NullPointerException();
+		HashMap<String, String> params = new HashMap<>();
+		params.put("uploadId", uploadId);
+
+		return params;
+	}
+}
@@ -0,0 +1,180 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+/**
+ * This class contains a lookup table driven percent-encoder for URL query components, as
+ * AWS expects them: every byte of the UTF-8 encoding is escaped as %XX except the RFC 3986
+ * unreserved characters (A-Z a-z 0-9 - _ . ~). Unlike {@link java.net.URLEncoder}, a space
+ * becomes %20 and not '+', '*' is escaped, and no intermediate Strings or byte arrays are created.
+ *
+ * @see https://tools.ietf.org/html/rfc3986#section-2.3
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class PercentEncoder {
+	private static final boolean[] UNRESERVED = new boolean[256];
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	static {
+		for (char c = 'A'; c <= 'Z'; c++) UNRESERVED[c] = true;
+		for (char c = 'a'; c <= 'z'; c++) UNRESERVED[c] = true;
+		for (char c = '0'; c <= '9'; c++) UNRESERVED[c] = true;
+		UNRESERVED['-'] = true;
+		UNRESERVED['_'] = true;
+		UNRESERVED['.'] = true;
+		UNRESERVED['~'] = true;
+	}
+
+	private PercentEncoder() {}
+
+	/**
+	 * This method percent-encodes the given value.
+	 *
+	 * @param value - The value to encode as {@link String}
+	 * @return Returns the encoded value as {@link String}
+	 */
+	public static String encode(String value) {
+		StringBuilder sb = new StringBuilder(value.length() + 16);
+		encode(value, sb);
+
+		return sb.toString();
+	}
+
+	/**
+	 * This method percent-encodes the UTF-8 encoding of the given characters and appends the result
+	 * to the given {@link StringBuilder}.
+	 *
+	 * @param value - The characters to encode as {@link CharSequence}
+	 * @param out - The builder to append to as {@link StringBuilder}
+	 */
+	public static void encode(CharSequence value, StringBuilder out) {
+		encode(value, out, false);
+	}
+
+	/**
+	 * This method percent-encodes a URI path the way the canonical URI of an S3 Signature
+	 * Version 4 request expects it: like {@link #encode(CharSequence, StringBuilder)}, except
+	 * that the '/' separators are kept, and so are the %XX escapes of a path that is already
+	 * encoded, as the paths of an {@link AWSRequest} are, only with their hex digits in uppercase.
+	 *
+	 * @param path - The path to encode as {@link CharSequence}
+	 * @param out - The builder to append to as {@link StringBuilder}
+	 */
+	public static void encodePath(CharSequence path, StringBuilder out) {
+		final int length = path.length();
+		int from = 0;
+		for (int i = 0; i + 2 < length; i++) {
+			if (path.charAt(i) == '%' && isHex(path.charAt(i + 1)) && isHex(path.charAt(i + 2))) {
+				encode(path.subSequence(from, i), out, true);
+				out.append('%').append(Character.toUpperCase(path.charAt(i + 1))).append(Character.toUpperCase(path.charAt(i + 2)));
+				i += 2;
+				from = i + 1;
+			}
+		}
+		encode(from == 0 ? path : path.subSequence(from, length), out, true);
+	}
+
+	/**
+	 * PRIVATE METHOD: Percent-encodes the UTF-8 encoding of the given characters.
+	 *
+	 * @param value - The characters to encode as {@link CharSequence}
+	 * @param out - The builder to append to as {@link StringBuilder}
+	 * @param keepSlash - Whether '/' is left as it is as boolean
+	 */
+	private static void encode(CharSequence value, StringBuilder out, boolean keepSlash) {
+		final int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				if (UNRESERVED[c] || (keepSlash && c == '/')) {
+					out.append(c);
+				} else {
+					appendEscaped(c, out);
+				}
+			} else if (c < 0x800) {
+				appendEscaped(0xC0 | (c >> 6), out);
+				appendEscaped(0x80 | (c & 0x3F), out);
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, value.charAt(++i));
+				appendEscaped(0xF0 | (cp >> 18), out);
+				appendEscaped(0x80 | ((cp >> 12) & 0x3F), out);
+				appendEscaped(0x80 | ((cp >> 6) & 0x3F), out);
+				appendEscaped(0x80 | (cp & 0x3F), out);
+			} else if (Character.isSurrogate(c)) {
+				appendEscaped('?', out); // Malformed, same replacement the String encoder uses...
+			} else {
+				appendEscaped(0xE0 | (c >> 12), out);
+				appendEscaped(0x80 | ((c >> 6) & 0x3F), out);
+				appendEscaped(0x80 | (c & 0x3F), out);
+			}
+		}
+	}
+
+	/**
+	 * This method percent-encodes the given range of (already UTF-8) bytes into the given destination,
+	 * which must have room for up to three times as many bytes.
+	 *
+	 * @param src - The bytes to encode as byte[]
+	 * @param srcOff - The offset of the first byte to encode as int
+	 * @param length - The number of bytes to encode as int
+	 * @param dst - The destination as byte[]
+	 * @param dstOff - The offset to start writing at as int
+	 * @return Returns the number of bytes written as int
+	 */
+	public static int encode(byte[] src, int srcOff, int length, byte[] dst, int dstOff) {
+		int pos = dstOff;
+		for (int i = srcOff; i < srcOff + length; i++) {
+			int b = src[i] & 0xFF;
+			if (UNRESERVED[b]) {
+				dst[pos++] = (byte) b;
+			} else {
+				dst[pos++] = '%';
+				dst[pos++] = (byte) HEX[b >> 4];
+				dst[pos++] = (byte) HEX[b & 0x0F];
+			}
+		}
+
+		return pos - dstOff;
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method percent-encodes the given range of ASCII bytes, such as a
+	 * Base64 signature, and appends the result to the given {@link StringBuilder}.
+	 *
+	 * @param src - The bytes to encode as byte[]
+	 * @param srcOff - The offset of the first byte to encode as int
+	 * @param length - The number of bytes to encode as int
+	 * @param out - The builder to append to as {@link StringBuilder}
+	 */
+	static void encode(byte[] src, int srcOff, int length, StringBuilder out) {
+		for (int i = srcOff; i < srcOff + length; i++) {
+			int b = src[i] & 0xFF;
+			if (UNRESERVED[b]) {
+				out.append((char) b);
+			} else {
+				appendEscaped(b, out);
+			}
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns whether the given character is a hex digit.
+	 *
+	 * @param c - The character as char
+	 * @return Returns true if it is a hex digit, otherwise false
+	 */
+	private static boolean isHex(char c) {
+
+		return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F') || (c >= 'a' && c <= 'f');
+	}
+
+	/**
+	 * PRIVATE METHOD: Appends the %XX escape of the given byte.
+	 *
+	 * @param b - The byte as int
+	 * @param out - The builder to append to as {@link StringBuilder}
+	 */
+	private static void appendEscaped(int b, StringBuilder out) {
+		out.append('%').append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+	}
+}
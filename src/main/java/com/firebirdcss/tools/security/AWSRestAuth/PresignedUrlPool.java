@@ -0,0 +1,292 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps a ready presigned URL for each of a bounded set of hot objects, keyed by
+ * (bucket, path, method), so handing one out is a lock-free map lookup without any signing.
+ * <p>
+ * Each URL is signed to be valid for a fixed time, and is signed again in the background once
+ * less than the refresh-ahead time is left, with the current keys of the {@link CredentialsProvider}.
+ * A URL is never handed out with less than half the refresh-ahead time left; should the background
+ * refresh fall behind, it is signed again on the spot instead.
+ * <p>
+ * Once the pool is full, the object used least often makes room for a new one. Use counts are
+ * halved at every refresh pass, so objects that were hot once but are no longer lose their place.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class PresignedUrlPool implements AutoCloseable {
+	public static final long DEFAULT_VALIDITY_SECONDS = 60 * 60L;
+	public static final long DEFAULT_REFRESH_AHEAD_SECONDS = 15 * 60L;
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	private static final String SECURITY_TOKEN = "x-amz-security-token";
+
+	private final CredentialsProvider credentials;
+	private final String endpoint;
+	private final long validitySeconds;
+	private final long refreshAheadSeconds;
+	private final int maxEntries;
+	private final ScheduledExecutorService scheduler;
+	private final boolean ownsScheduler;
+	private final Clock clock;
+	private final ScheduledFuture<?> refresher;
+	private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * CONSTRUCTOR: Creates a pool with the default timings and size and its own refresh thread.
+	 *
+	 * @param credentials - The source of the keys as {@link CredentialsProvider}
+	 * @param endpoint - The endpoint, such as s3.amazonaws.com, as {@link String}
+	 */
+	public PresignedUrlPool(CredentialsProvider credentials, String endpoint) {
+		this(credentials, endpoint, DEFAULT_VALIDITY_SECONDS, DEFAULT_REFRESH_AHEAD_SECONDS, DEFAULT_MAX_ENTRIES, null, Clock.systemUTC());
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a fully configured pool.
+	 *
+	 * @param credentials - The source of the keys as {@link CredentialsProvider}
+	 * @param endpoint - The endpoint, such as s3.amazonaws.com, as {@link String}
+	 * @param validitySeconds - How long each URL is signed to be valid for as long
+	 * @param refreshAheadSeconds - How long before it expires a URL is signed again as long
+	 * @param maxEntries - The most objects kept as int
+	 * @param scheduler - The scheduler to refresh on as {@link ScheduledExecutorService}, or null for a private thread
+	 * @param clock - The clock the expiry times are based on as {@link Clock}
+	 */
+	public PresignedUrlPool(CredentialsProvider credentials, String endpoint, long validitySeconds, long refreshAheadSeconds, int maxEntries, ScheduledExecutorService scheduler, Clock clock) {
+		if (credentials == null || endpoint == null || clock == null) throw new NullPointerException();
+		if (refreshAheadSeconds < 2 || validitySeconds <= refreshAheadSeconds) throw new IllegalArgumentException("The validity must be longer than the refresh-ahead time of at least 2 seconds!");
+		if (maxEntries < 1) throw new IllegalArgumentException("The pool must hold at least one entry!");
+		this.credentials = credentials;
+		this.endpoint = endpoint;
+		this.validitySeconds = validitySeconds;
+		this.refreshAheadSeconds = refreshAheadSeconds;
+		this.maxEntries = maxEntries;
+		this.clock = clock;
+		this.ownsScheduler = scheduler == null;
+		this.scheduler = scheduler != null ? scheduler : Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "presigned-url-refresh");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+		final long period = Math.max(1, refreshAheadSeconds / 4); // Well within the time left once an entry is due...
+		this.refresher = this.scheduler.scheduleWithFixedDelay(this::refreshNow, period, period, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * This method returns a presigned URL of the given object, valid for at least half the
+	 * refresh-ahead time. It only signs when the object is not pooled yet, in which case it
+	 * is added to the pool.
+	 *
+	 * @param bucket - The bucket, or empty for none, as {@link String}
+	 * @param path - The path of the object as {@link String}
+	 * @param method - The HTTP method the URL is for as {@link String}
+	 * @return Returns the presigned URL as {@link String}
+	 */
+	public String getUrl(String bucket, String path, String method) {
+		final Key key = new Key(bucket, path, method);
+		final Entry entry = this.entries.get(key);
+		if (entry == null) {
+
+			return admit(key).url;
+		}
+		entry.hits++; // Racy on purpose; a lost count now and then does not matter...
+		Signed signed = entry.signed;
+		if (signed.expires - nowSeconds() < this.refreshAheadSeconds / 2) { // The refresh fell behind...
+			signed = sign(key);
+			entry.signed = signed;
+		}
+
+		return signed.url;
+	}
+
+	/**
+	 * This method checks whether the given object is pooled.
+	 *
+	 * @param bucket - The bucket, or empty for none, as {@link String}
+	 * @param path - The path of the object as {@link String}
+	 * @param method - The HTTP method the URL is for as {@link String}
+	 * @return Returns true if it is pooled, otherwise false
+	 */
+	public boolean contains(String bucket, String path, String method) {
+
+		return this.entries.containsKey(new Key(bucket, path, method));
+	}
+
+	/**
+	 * This method returns how many objects are pooled.
+	 *
+	 * @return Returns the number of objects as int
+	 */
+	public int size() {
+
+		return this.entries.size();
+	}
+
+	/**
+	 * This method signs again, right away, the URLs with no more than the refresh-ahead time left,
+	 * and halves the use counts. It is what the refresh thread runs. A URL that fails to be signed
+	 * keeps its old one and is tried again on the next pass.
+	 */
+	public void refreshNow() {
+		final long dueBy = nowSeconds() + this.refreshAheadSeconds;
+		for (Map.Entry<Key, Entry> pooled : this.entries.entrySet()) {
+			final Entry entry = pooled.getValue();
+			entry.hits >>>= 1;
+			if (entry.signed.expires <= dueBy) {
+				try {
+					entry.signed = sign(pooled.getKey());
+				} catch (RuntimeException e) { // Keeps the old URL until the next pass...
+					SigningMetrics.getListener().onError(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method stops refreshing. The pooled URLs stay available until they expire.
+	 */
+	@Override
+	public void close() {
+		this.refresher.cancel(false);
+		if (this.ownsScheduler) this.scheduler.shutdownNow();
+	}
+
+	/**
+	 * PRIVATE METHOD: Signs the URL of an object not pooled yet and pools it, making room by
+	 * dropping the object used least often if the pool is full.
+	 *
+	 * @param key - The object as {@link Key}
+	 * @return Returns the signed URL as {@link Signed}
+	 */
+	private Signed admit(Key key) {
+		final Signed signed = sign(key);
+		synchronized (this.entries) { // Keeps the size bound while several threads admit...
+			final Entry existing = this.entries.get(key);
+			if (existing != null) {
+
+				return existing.signed;
+			}
+			if (this.entries.size() >= this.maxEntries) {
+				Map.Entry<Key, Entry> rarest = null;
+				for (Map.Entry<Key, Entry> pooled : this.entries.entrySet()) {
+					if (rarest == null || pooled.getValue().hits < rarest.getValue().hits) {
+						rarest = pooled;
+					}
+				}
+				this.entries.remove(rarest.getKey());
+			}
+			this.entries.put(key, new Entry(signed));
+		}
+
+		return signed;
+	}
+
+	/**
+	 * PRIVATE METHOD: Signs a URL of the given object with the current keys, valid for the validity time.
+	 *
+	 * @param key - The object as {@link Key}
+	 * @return Returns the signed URL as {@link Signed}
+	 */
+	private Signed sign(Key key) {
+		final Credentials keys = this.credentials.getCredentials();
+		final HashMap<String, String> params = new HashMap<>();
+		final HashMap<String, String> headers = new HashMap<>();
+		if (keys.getSessionToken() != null) { // Signed as a header, carried in the URL as a parameter...
+			headers.put(SECURITY_TOKEN, keys.getSessionToken());
+			params.put(SECURITY_TOKEN, keys.getSessionToken());
+		}
+		final AWSRequest request = new AWSRequest(
+			key.bucket.isEmpty() ? this.endpoint : key.bucket + '.' + this.endpoint,
+			key.path, key.bucket, null, null, key.method, params, headers
+		);
+		final long expires = nowSeconds() + this.validitySeconds;
+
+		return new Signed(AwsAuthV2Util.genPresignedUrl(request, keys.getSigner(), expires), expires);
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the current time.
+	 *
+	 * @return Returns the seconds since the epoch as long
+	 */
+	private long nowSeconds() {
+
+		return this.clock.millis() / 1000;
+	}
+
+	/**
+	 * This class identifies a pooled object.
+	 */
+	private static final class Key {
+		final String bucket;
+		final String path;
+		final String method;
+		final int hash;
+
+		Key(String bucket, String path, String method) {
+			this.bucket = bucket == null ? "" : bucket;
+			this.path = path == null ? "" : path;
+			this.method = Objects.requireNonNull(method);
+			this.hash = Objects.hash(this.bucket, this.path, this.method);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+
+				return true;
+			}
+			if (!(other instanceof Key)) {
+
+				return false;
+			}
+			final Key key = (Key) other;
+
+			return this.bucket.equals(key.bucket) && this.path.equals(key.path) && this.method.equals(key.method);
+		}
+
+		@Override
+		public int hashCode() {
+
+			return this.hash;
+		}
+	}
+
+	/**
+	 * This class holds a URL and when it expires, published together.
+	 */
+	private static final class Signed {
+		final String url;
+		final long expires;
+
+		Signed(String url, long expires) {
+			this.url = url;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * This class holds the current URL of a pooled object and how often it was used.
+	 */
+	private static final class Entry {
+		volatile Signed signed;
+		int hits = 1;
+
+		Entry(Signed signed) {
+			this.signed = signed;
+		}
+	}
+}
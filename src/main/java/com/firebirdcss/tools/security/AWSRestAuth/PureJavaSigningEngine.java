@@ -0,0 +1,32 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+/**
+ * This class is a {@link SigningEngine} that does not depend on any JCE provider. Its HMAC-SHA1
+ * is computed in plain Java from the inner and outer pad state precomputed once per key, and it
+ * Base64 encodes with the allocation-free encoder of this library.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class PureJavaSigningEngine implements SigningEngine {
+	/** The name of this engine. */
+	public static final String NAME = "pure-java";
+
+	@Override
+	public String getName() {
+
+		return NAME;
+	}
+
+	@Override
+	public Hmac newHmac(byte[] key) {
+
+		return new HmacSha1(key);
+	}
+
+	@Override
+	public int encodeBase64(byte[] src, int srcOff, int length, byte[] dst, int dstOff) {
+
+		return Base64Util.encode(src, srcOff, length, dst, dstOff);
+	}
+}
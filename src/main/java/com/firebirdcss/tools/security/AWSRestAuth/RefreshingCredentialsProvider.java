@@ -0,0 +1,175 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a {@link CredentialsProvider} that keeps its credentials fresh in the
+ * background using a {@link CredentialsFetcher}.
+ * <p>
+ * The current credentials are published through a volatile snapshot, so {@link #getCredentials()}
+ * never blocks or takes a lock. Temporary credentials are refreshed ahead of their expiry and
+ * others at a fixed interval; while a refresh fails, the last good credentials stay in use and
+ * the refresh is retried. When the secret key changes, the signing keys derived from the old
+ * secret are dropped along with its {@link Signer}.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class RefreshingCredentialsProvider implements CredentialsProvider, AutoCloseable {
+	public static final long DEFAULT_REFRESH_AHEAD_MILLIS = 5 * 60 * 1000L;
+	public static final long DEFAULT_REFRESH_INTERVAL_MILLIS = 15 * 60 * 1000L;
+	public static final long DEFAULT_RETRY_DELAY_MILLIS = 10 * 1000L;
+
+	private final CredentialsFetcher fetcher;
+	private final long refreshAheadMillis;
+	private final long refreshIntervalMillis;
+	private final long retryDelayMillis;
+	private final ScheduledExecutorService scheduler;
+	private final boolean ownsScheduler;
+	private final Clock clock;
+
+	private volatile Credentials current;
+	private ScheduledFuture<?> next; // Guarded by this...
+	private long generation; // Guarded by this, bumped whenever the scheduled refresh is replaced...
+	private boolean closed; // Guarded by this...
+
+	/**
+	 * CONSTRUCTOR: Creates a provider with the default timings and its own refresh thread,
+	 * fetching the first credentials right away.
+	 *
+	 * @param fetcher - The source of the credentials as {@link CredentialsFetcher}
+	 * @throws IOException - When the first credentials can not be fetched
+	 */
+	public RefreshingCredentialsProvider(CredentialsFetcher fetcher) throws IOException {
+		this(fetcher, DEFAULT_REFRESH_AHEAD_MILLIS, DEFAULT_REFRESH_INTERVAL_MILLIS, DEFAULT_RETRY_DELAY_MILLIS, null, Clock.systemUTC());
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a fully configured provider, fetching the first credentials right away.
+	 *
+	 * @param fetcher - The source of the credentials as {@link CredentialsFetcher}
+	 * @param refreshAheadMillis - How long before their expiry temporary credentials are refreshed as long
+	 * @param refreshIntervalMillis - How often credentials without expiry are refreshed as long, or 0 for never
+	 * @param retryDelayMillis - How long to wait before retrying a failed refresh as long
+	 * @param scheduler - The scheduler to refresh on as {@link ScheduledExecutorService}, or null for a private thread
+	 * @param clock - The clock to compare expiry times against as {@link Clock}
+	 * @throws IOException - When the first credentials can not be fetched
+	 */
+	public RefreshingCredentialsProvider(CredentialsFetcher fetcher, long refreshAheadMillis, long refreshIntervalMillis, long retryDelayMillis, ScheduledExecutorService scheduler, Clock clock) throws IOException {
+		if (fetcher == null || clock == null) throw new NullPointerException();
+		this.fetcher = fetcher;
+		this.refreshAheadMillis = refreshAheadMillis;
+		this.refreshIntervalMillis = refreshIntervalMillis;
+		this.retryDelayMillis = retryDelayMillis;
+		this.clock = clock;
+		this.ownsScheduler = scheduler == null;
+		this.scheduler = scheduler != null ? scheduler : Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "credentials-refresh");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		this.current = fetcher.fetch();
+		if (this.current == null) throw new IOException("No credentials were fetched!");
+		synchronized (this) {
+			scheduleNext(this.current);
+		}
+	}
+
+	@Override
+	public Credentials getCredentials() {
+
+		return this.current;
+	}
+
+	/**
+	 * This method asks for a refresh on the refresh thread, such as when the source is known to
+	 * have changed. It returns right away.
+	 */
+	public synchronized void refreshNow() {
+		if (this.closed) {
+
+			return;
+		}
+		if (this.next != null) this.next.cancel(false);
+		this.generation++; // A refresh already fetching gives way to this one...
+		this.next = this.scheduler.schedule(this::refresh, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * This method stops refreshing. The last credentials stay available.
+	 */
+	@Override
+	public synchronized void close() {
+		this.closed = true;
+		if (this.next != null) this.next.cancel(false);
+		if (this.ownsScheduler) this.scheduler.shutdownNow();
+	}
+
+	/**
+	 * PRIVATE METHOD: Fetches and publishes fresh credentials, then schedules the next refresh.
+	 * The fetch, which may be slow remote I/O, runs without holding the lock, so closing and asking
+	 * for a refresh never wait for it. A fetch overtaken by {@link #refreshNow()} meanwhile is
+	 * dropped, as the refresh asked for follows it. Runs on the refresh thread only.
+	 */
+	private void refresh() {
+		final long started;
+		synchronized (this) {
+			if (this.closed) {
+
+				return;
+			}
+			started = this.generation;
+		}
+		Credentials fresh;
+		try {
+			fresh = this.fetcher.fetch();
+			if (fresh == null) throw new IOException("No credentials were fetched!");
+		} catch (IOException | RuntimeException e) { // Keep the last good credentials and try again...
+			fresh = null;
+		}
+		synchronized (this) {
+			if (this.closed || this.generation != started) {
+
+				return;
+			}
+			if (fresh == null) {
+				this.next = this.scheduler.schedule(this::refresh, this.retryDelayMillis, TimeUnit.MILLISECONDS);
+
+				return;
+			}
+			final Credentials old = this.current;
+			if (!fresh.sameKeys(old) || fresh.getExpiresAtMillis() != old.getExpiresAtMillis()) {
+				this.current = fresh;
+				if (!fresh.getSecretKey().equals(old.getSecretKey())) {
+					SigningKeyCache.SHARED.invalidate(old.getSecretKey());
+				}
+			}
+			scheduleNext(fresh);
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Schedules the refresh that should follow the given credentials.
+	 *
+	 * @param credentials - The credentials just published as {@link Credentials}
+	 */
+	private void scheduleNext(Credentials credentials) {
+		final long delay;
+		if (credentials.getExpiresAtMillis() != Credentials.NEVER_EXPIRES) {
+			delay = Math.max(this.retryDelayMillis, credentials.getExpiresAtMillis() - this.refreshAheadMillis - this.clock.millis());
+		} else if (this.refreshIntervalMillis > 0) {
+			delay = this.refreshIntervalMillis;
+		} else {
+
+			return;
+		}
+		this.next = this.scheduler.schedule(this::refresh, delay, TimeUnit.MILLISECONDS);
+	}
+}
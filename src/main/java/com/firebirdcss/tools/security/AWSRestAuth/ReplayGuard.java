@@ -0,0 +1,298 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class remembers the (access key, signature, date) of every accepted request for as
+ * long as its date is within the allowed clock skew, so a replayed request can be rejected.
+ * <p>
+ * Requests are filed into time buckets by their signed date. Each bucket is a fixed size,
+ * lock-free table and a whole bucket is dropped at once when its time range falls out of
+ * the window, so memory use has a fixed ceiling no matter the load. In {@link Mode#EXACT}
+ * mode a bucket holds 64 bit fingerprints in an open-addressing table; in {@link Mode#BLOOM}
+ * mode it is a Bloom filter that uses less memory per entry, at the cost of rejecting about
+ * 1% of fresh requests once a bucket is at capacity and, rarely, letting a replay through
+ * that is sent at exactly the same moment as the original.
+ * <p>
+ * When an exact bucket is full the request is treated as a replay (failing closed), and
+ * {@link #getOverflowCount()} goes up; size the buckets for the peak request rate.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class ReplayGuard {
+	private static final int BUCKETS_PER_WINDOW = 16;
+	private static final int MAX_PROBES = 64;
+	private static final int BLOOM_BITS_PER_ENTRY = 10;
+	private static final int BLOOM_HASHES = 7;
+
+	/**
+	 * The ways a {@link ReplayGuard} can store what it has seen.
+	 */
+	public enum Mode {
+		/** Exact 64 bit fingerprints. */
+		EXACT,
+		/** A Bloom filter per bucket. */
+		BLOOM
+	}
+
+	private final long windowMillis;
+	private final long bucketMillis;
+	private final Mode mode;
+	private final Clock clock;
+	private final AtomicReferenceArray<Bucket> ring;
+	private final int tableSize; // In longs, a power of two...
+	private final LongAdder overflows = new LongAdder();
+
+	/**
+	 * CONSTRUCTOR: Creates an exact {@link ReplayGuard} on the system clock.
+	 *
+	 * @param windowMillis - The allowed clock skew in milliseconds as long
+	 * @param maxRequestsPerBucket - The most requests expected within 1/16th of the window as int
+	 */
+	public ReplayGuard(long windowMillis, int maxRequestsPerBucket) {
+		this(windowMillis, maxRequestsPerBucket, Mode.EXACT, Clock.systemUTC());
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a fully configured {@link ReplayGuard}.
+	 *
+	 * @param windowMillis - The allowed clock skew in milliseconds as long
+	 * @param maxRequestsPerBucket - The most requests expected within 1/16th of the window as int
+	 * @param mode - How seen requests are stored as {@link Mode}
+	 * @param clock - The clock to expire buckets by as {@link Clock}
+	 */
+	public ReplayGuard(long windowMillis, int maxRequestsPerBucket, Mode mode, Clock clock) {
+		if (mode == null || clock == null) throw new NullPointerException();
+		if (windowMillis < BUCKETS_PER_WINDOW || maxRequestsPerBucket < 1) throw new IllegalArgumentException("Invalid replay guard settings!");
+		this.windowMillis = windowMillis;
+		this.bucketMillis = windowMillis / BUCKETS_PER_WINDOW;
+		this.mode = mode;
+		this.clock = clock;
+
+		final long longs = mode == Mode.EXACT
+			? (long) maxRequestsPerBucket * 2 // Keeps the table at most half full...
+			: ((long) maxRequestsPerBucket * BLOOM_BITS_PER_ENTRY + 63) / 64;
+		if (longs > (1 << 30)) throw new IllegalArgumentException("Buckets too large!");
+		this.tableSize = Integer.highestOneBit((int) Math.max(2, longs) - 1) << 1;
+
+		/* Covers the skew on both sides of now, plus the bucket being rotated in */
+		this.ring = new AtomicReferenceArray<>(2 * BUCKETS_PER_WINDOW + 3);
+	}
+
+	/**
+	 * This method checks whether a request was seen before and records it if not. It is safe to
+	 * call from any number of threads at once and never blocks.
+	 *
+	 * @param accessKey - The access key of the request as {@link String}
+	 * @param signature - The signature of the request as {@link String}
+	 * @param dateMillis - The signed date of the request in milliseconds since the epoch as long
+	 * @return Returns true if the request is new and was recorded, false if it is (or may be) a
+	 *         replay, its date is outside the window or its bucket is full
+	 */
+	public boolean checkAndRecord(String accessKey, String signature, long dateMillis) {
+		final long now = this.clock.millis();
+		if (Math.abs(now - dateMillis) > this.windowMillis) {
+
+			return false;
+		}
+		final Bucket bucket = bucketFor(Math.floorDiv(dateMillis, this.bucketMillis));
+		if (bucket == null) {
+
+			return false;
+		}
+		final long fingerprint = fingerprint(accessKey, signature, dateMillis);
+
+		return this.mode == Mode.EXACT ? bucket.insertExact(fingerprint) : bucket.insertBloom(fingerprint);
+	}
+
+	/**
+	 * This method returns how often a request was rejected because its bucket was full.
+	 *
+	 * @return Returns the number of overflows as long
+	 */
+	public long getOverflowCount() {
+
+		return this.overflows.sum();
+	}
+
+	/**
+	 * This method returns the most memory the buckets of this guard can take up.
+	 *
+	 * @return Returns the memory ceiling in bytes as long
+	 */
+	public long getMemoryCeilingBytes() {
+
+		return (long) this.ring.length() * this.tableSize * Long.BYTES;
+	}
+
+	/**
+	 * This method counts what the buckets of this guard hold right now, including the expired
+	 * buckets not replaced yet: the fingerprints in {@link Mode#EXACT} mode, or the bits set in
+	 * {@link Mode#BLOOM} mode. It scans every bucket, so it is meant for monitoring, not for the
+	 * request path.
+	 *
+	 * @return Returns the number of fingerprints or bits held as long
+	 */
+	public long getHeldCount() {
+		long held = 0;
+		for (int i = 0; i < this.ring.length(); i++) {
+			final Bucket bucket = this.ring.get(i);
+			if (bucket == null) continue;
+			for (int j = 0; j < bucket.table.length(); j++) {
+				final long word = bucket.table.get(j);
+				held += this.mode == Mode.EXACT ? (word != 0 ? 1 : 0) : Long.bitCount(word);
+			}
+		}
+
+		return held;
+	}
+
+	/**
+	 * This method returns how many buckets are allocated, including the expired buckets not
+	 * replaced yet. It never exceeds the number of slots of the ring.
+	 *
+	 * @return Returns the number of buckets as int
+	 */
+	public int getBucketCount() {
+		int count = 0;
+		for (int i = 0; i < this.ring.length(); i++) {
+			if (this.ring.get(i) != null) count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the live bucket of the given epoch, replacing the expired bucket
+	 * that occupies its slot of the ring if needed.
+	 *
+	 * @param epoch - The bucket epoch (date divided by bucket width) as long
+	 * @return Returns the bucket as {@link Bucket} or null if the epoch is already expired
+	 */
+	private Bucket bucketFor(long epoch) {
+		final int slot = (int) Math.floorMod(epoch, (long) this.ring.length());
+		while (true) {
+			Bucket bucket = this.ring.get(slot);
+			if (bucket != null && bucket.epoch == epoch) {
+
+				return bucket;
+			}
+			if (bucket != null && bucket.epoch > epoch) { // Slot already moved on...
+
+				return null;
+			}
+			Bucket fresh = new Bucket(epoch);
+			if (this.ring.compareAndSet(slot, bucket, fresh)) {
+
+				return fresh;
+			}
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Computes a well mixed 64 bit fingerprint of the request without allocating.
+	 *
+	 * @param accessKey - The access key as {@link String}
+	 * @param signature - The signature as {@link String}
+	 * @param dateMillis - The signed date as long
+	 * @return Returns the fingerprint as long, never zero
+	 */
+	private static long fingerprint(String accessKey, String signature, long dateMillis) {
+		long h = 0xCBF29CE484222325L;
+		for (int i = 0; i < accessKey.length(); i++) {
+			h = (h ^ accessKey.charAt(i)) * 0x100000001B3L;
+		}
+		h = (h ^ ':') * 0x100000001B3L;
+		for (int i = 0; i < signature.length(); i++) {
+			h = (h ^ signature.charAt(i)) * 0x100000001B3L;
+		}
+		h = mix(h ^ mix(dateMillis));
+
+		return h == 0 ? 1 : h;
+	}
+
+	/**
+	 * PRIVATE METHOD: The MurmurHash3 64 bit finalizer.
+	 *
+	 * @param h - The value to mix as long
+	 * @return Returns the mixed value as long
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+
+		return h;
+	}
+
+	/**
+	 * This class is one time bucket of the ring, holding either fingerprints or Bloom filter bits.
+	 */
+	private final class Bucket {
+		final long epoch;
+		final AtomicLongArray table = new AtomicLongArray(ReplayGuard.this.tableSize);
+
+		Bucket(long epoch) {
+			this.epoch = epoch;
+		}
+
+		/**
+		 * Inserts a fingerprint with linear probing, returning false if it was already present.
+		 */
+		boolean insertExact(long fingerprint) {
+			final int mask = this.table.length() - 1;
+			int index = (int) fingerprint & mask;
+			for (int probe = 0; probe < MAX_PROBES; probe++) {
+				long current = this.table.get(index);
+				if (current == fingerprint) {
+
+					return false;
+				}
+				if (current == 0) {
+					if (this.table.compareAndSet(index, 0, fingerprint)) {
+
+						return true;
+					}
+					if (this.table.get(index) == fingerprint) { // Lost the race to the same request...
+
+						return false;
+					}
+				}
+				index = (index + 1) & mask;
+			}
+			ReplayGuard.this.overflows.increment();
+
+			return false;
+		}
+
+		/**
+		 * Sets the Bloom filter bits of a fingerprint, returning false if they were all set already.
+		 */
+		boolean insertBloom(long fingerprint) {
+			final long bits = (long) this.table.length() * 64;
+			final long h1 = fingerprint;
+			final long h2 = mix(fingerprint) | 1;
+			boolean added = false;
+			for (int i = 0; i < BLOOM_HASHES; i++) {
+				long bit = Math.floorMod(h1 + i * h2, bits);
+				int index = (int) (bit >>> 6);
+				long mask = 1L << bit;
+				long current;
+				while (((current = this.table.get(index)) & mask) == 0) {
+					if (this.table.compareAndSet(index, current, current | mask)) {
+						added = true;
+						break;
+					}
+				}
+			}
+
+			return added;
+		}
+	}
+}
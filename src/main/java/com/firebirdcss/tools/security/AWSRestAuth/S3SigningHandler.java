@@ -0,0 +1,380 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * This class is a Netty outbound handler that signs every {@link HttpRequest} written to the
+ * channel with AWS Signature Version 2, setting its Date (unless it already has a Date or an
+ * x-amz-date) and Authorization headers. The StringToSign is canonicalized straight from the
+ * {@link HttpHeaders} and the request URI, so no {@link AWSRequest} or other intermediate map
+ * is built.
+ * <p>
+ * The bucket is taken from the Host header (or the authority of an absolute URI) the way S3
+ * does: a host that is the configured endpoint means a path-style request, a sub-domain of it
+ * a virtual-host-style one, and any other host is a CNAME of a bucket of the same name.
+ * <p>
+ * Signing runs on the event loop of the channel, using that thread's {@link SigningScratch}
+ * and initialized HMAC, so a single instance can be shared by every channel.
+ * Netty is only needed on the classpath by applications that use this class.
+ *
+ * @see https://docs.aws.amazon.com/AmazonS3/latest/dev/RESTAuthentication.html
+ *
+ * @author Scott Griffis
+ *
+ */
+@Sharable
+public final class S3SigningHandler extends ChannelOutboundHandlerAdapter {
+	private static final AsciiString X_AMZ_DATE = AsciiString.cached("x-amz-date");
+	private static final AsciiString X_AMZ_SECURITY_TOKEN = AsciiString.cached("x-amz-security-token");
+	private static final byte[] AUTH_PREFIX = "AWS ".getBytes(StandardCharsets.US_ASCII);
+	private static final FastThreadLocal<Canon> CANON = new FastThreadLocal<Canon>() {
+		@Override
+		protected Canon initialValue() {
+
+			return new Canon();
+		}
+	};
+
+	private final CredentialsProvider credentials;
+	private final String endpoint;
+	private final DateSource dates;
+
+	/**
+	 * CONSTRUCTOR: Creates a handler signing with the given credentials, dating requests by
+	 * the system clock.
+	 *
+	 * @param credentials - The source of the keys as {@link CredentialsProvider}
+	 * @param endpoint - The host of path-style requests, such as s3.amazonaws.com, as {@link String}
+	 */
+	public S3SigningHandler(CredentialsProvider credentials, String endpoint) {
+		this(credentials, endpoint, DateSource.SYSTEM);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a handler signing with the given credentials, taking the Date of
+	 * requests without one from the given source.
+	 *
+	 * @param credentials - The source of the keys as {@link CredentialsProvider}
+	 * @param endpoint - The host of path-style requests, such as s3.amazonaws.com, as {@link String}
+	 * @param dates - The source of the Date header as {@link DateSource}
+	 */
+	public S3SigningHandler(CredentialsProvider credentials, String endpoint, DateSource dates) {
+		if (credentials == null || endpoint == null || dates == null) throw new NullPointerException();
+		this.credentials = credentials;
+		this.endpoint = endpoint;
+		this.dates = dates;
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		if (msg instanceof HttpRequest) {
+			sign((HttpRequest) msg);
+		}
+		ctx.write(msg, promise);
+	}
+
+	/**
+	 * This method signs the given request in place, as it would be when written to a channel.
+	 *
+	 * @param request - The request as {@link HttpRequest}
+	 */
+	public void sign(HttpRequest request) {
+		final Credentials keys = this.credentials.getCredentials();
+		final HttpHeaders headers = request.headers();
+		if (keys.getSessionToken() != null) {
+			headers.set(X_AMZ_SECURITY_TOKEN, keys.getSessionToken());
+		}
+		if (!headers.contains(HttpHeaderNames.DATE) && !headers.contains(X_AMZ_DATE)) {
+			headers.set(HttpHeaderNames.DATE, this.dates.getHttpDate());
+		}
+
+		final SigningScratch scratch = SigningScratch.get();
+		final SigningMetricsListener metrics = SigningMetrics.getListener();
+		final long start = SigningMetrics.start(metrics);
+		scratch.canon.setLength(0);
+		appendStringToSign(request, scratch.canon, CANON.get());
+		if (metrics != SigningMetricsListener.NOOP) metrics.onCanonicalized(SigningMetrics.elapsed(start), CanonWriter.utf8Length(scratch.canon, 0, scratch.canon.length()));
+		final int sigLength = AwsAuthV2Util.signCanon(keys.getSigner(), scratch);
+
+		final String accessKey = keys.getAccessKey();
+		final byte[] value = new byte[AUTH_PREFIX.length + accessKey.length() + 1 + sigLength];
+		System.arraycopy(AUTH_PREFIX, 0, value, 0, AUTH_PREFIX.length);
+		int pos = AUTH_PREFIX.length;
+		for (int i = 0; i < accessKey.length(); i++) {
+			value[pos++] = (byte) accessKey.charAt(i);
+		}
+		value[pos++] = ':';
+		System.arraycopy(scratch.signature, 0, value, pos, sigLength);
+		headers.set(HttpHeaderNames.AUTHORIZATION, new AsciiString(value, false));
+	}
+
+	/**
+	 * PRIVATE METHOD: Appends the AWS StringToSign of the given request, in the same form as
+	 * {@link AwsAuthV2Util#genStringToSign(AWSRequest)} builds it.
+	 *
+	 * @param request - The request as {@link HttpRequest}
+	 * @param sb - The builder to append to as {@link StringBuilder}
+	 * @param canon - The calling thread's sort area as {@link Canon}
+	 */
+	private void appendStringToSign(HttpRequest request, StringBuilder sb, Canon canon) {
+		CharSequence md5 = null, type = null, amzDate = null, date = null, host = null;
+		int count = 0;
+
+		/* One pass over the headers, sorting the x-amz- ones as they are found */
+		final Iterator<Entry<CharSequence, CharSequence>> it = request.headers().iteratorCharSequence();
+		while (it.hasNext()) {
+			final Entry<CharSequence, CharSequence> header = it.next();
+			final CharSequence name = header.getKey();
+			if (AsciiString.regionMatches(name, true, 0, "x-amz-", 0, 6)) {
+				if (AsciiString.contentEqualsIgnoreCase(name, X_AMZ_DATE)) {
+					if (amzDate == null) amzDate = header.getValue();
+				} else {
+					count = canon.insert(name, header.getValue(), count);
+				}
+			} else if (md5 == null && AsciiString.contentEqualsIgnoreCase(name, HttpHeaderNames.CONTENT_MD5)) {
+				md5 = header.getValue();
+			} else if (type == null && AsciiString.contentEqualsIgnoreCase(name, HttpHeaderNames.CONTENT_TYPE)) {
+				type = header.getValue();
+			} else if (date == null && AsciiString.contentEqualsIgnoreCase(name, HttpHeaderNames.DATE)) {
+				date = header.getValue();
+			} else if (host == null && AsciiString.contentEqualsIgnoreCase(name, HttpHeaderNames.HOST)) {
+				host = header.getValue();
+			}
+		}
+
+		sb.append(request.method().name()).append('\n');
+		if (md5 != null) sb.append(md5);
+		sb.append('\n');
+		if (type != null) sb.append(type);
+		sb.append('\n');
+		if (amzDate != null) { // This one is priority...
+			sb.append(amzDate).append('\n');
+		} else if (date != null) {
+			sb.append(date).append('\n');
+		}
+
+		/* Canonicalized Amazon Headers, with the values of repeated names joined by commas */
+		for (int i = 0; i < count; i++) {
+			if (i > 0 && AsciiString.contentEqualsIgnoreCase(canon.names[i], canon.names[i - 1])) {
+				sb.append(',').append(canon.values[i]);
+			} else {
+				final CharSequence name = canon.names[i];
+				for (int j = 0; j < name.length(); j++) {
+					char c = name.charAt(j);
+					sb.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+				}
+				sb.append(':').append(canon.values[i]);
+			}
+			if (i + 1 == count || !AsciiString.contentEqualsIgnoreCase(canon.names[i], canon.names[i + 1])) {
+				sb.append('\n');
+			}
+		}
+		canon.clear(count);
+
+		appendCanonResource(request.uri(), host, sb, canon);
+	}
+
+	/**
+	 * PRIVATE METHOD: Appends the CanonicalizedResource of the given URI, taking the bucket from the
+	 * given host or, if there is none, from the authority of an absolute URI.
+	 *
+	 * @param uri - The request URI as {@link String}
+	 * @param host - The Host header or null as {@link CharSequence}
+	 * @param sb - The builder to append to as {@link StringBuilder}
+	 * @param canon - The calling thread's sort area as {@link Canon}
+	 */
+	private void appendCanonResource(String uri, CharSequence host, StringBuilder sb, Canon canon) {
+		int pathStart = 0;
+		final int scheme = uri.indexOf("://");
+		if (scheme > 0 && uri.charAt(0) != '/') { // Absolute form, as sent to a proxy...
+			final int authorityEnd = indexOf(uri, '/', scheme + 3, uri.length());
+			if (host == null) host = uri.subSequence(scheme + 3, authorityEnd);
+			pathStart = authorityEnd;
+		}
+		int queryStart = uri.indexOf('?', pathStart);
+		if (queryStart < 0) queryStart = uri.length();
+
+		/* Bucket */
+		if (host != null) {
+			int hostEnd = host.length();
+			for (int i = 0; i < host.length(); i++) {
+				if (host.charAt(i) == ':') {
+					hostEnd = i;
+					break;
+				}
+			}
+			final int endpointLength = this.endpoint.length();
+			if (hostEnd > 0 && host.charAt(0) != '[' && !(hostEnd == endpointLength && AsciiString.regionMatches(host, true, 0, this.endpoint, 0, endpointLength))) {
+				int bucketEnd = hostEnd;
+				if (hostEnd > endpointLength + 1 && host.charAt(hostEnd - endpointLength - 1) == '.'
+						&& AsciiString.regionMatches(host, true, hostEnd - endpointLength, this.endpoint, 0, endpointLength)) {
+					bucketEnd = hostEnd - endpointLength - 1;
+				}
+				sb.append('/').append(host, 0, bucketEnd);
+			}
+		}
+
+		/* Path */
+		if (pathStart == queryStart) {
+			sb.append('/');
+		} else {
+			sb.append(uri, pathStart, queryStart);
+		}
+
+		/* Sub-resources, sorted by name */
+		int count = 0;
+		for (int start = queryStart + 1; start < uri.length(); ) {
+			final int end = indexOf(uri, '&', start, uri.length());
+			final int nameEnd = indexOf(uri, '=', start, end);
+			if (nameEnd > start && (nameEnd == end || AWSRequest.VALUED_SUB_RESOURCES.contains(uri.substring(start, nameEnd)))) {
+				count = canon.insertParam(uri, start, nameEnd, end, count);
+			}
+			start = end + 1;
+		}
+		final int[] params = canon.params;
+		for (int i = 0; i < count; i++) {
+			final int start = params[3 * i], nameEnd = params[3 * i + 1], end = params[3 * i + 2];
+			sb.append(i == 0 ? '?' : '&').append(uri, start, nameEnd);
+			if (nameEnd < end) {
+				sb.append('=');
+				if (indexOf(uri, '%', nameEnd, end) < end || indexOf(uri, '+', nameEnd, end) < end) {
+					sb.append(QueryStringDecoder.decodeComponent(uri.substring(nameEnd + 1, end)));
+				} else {
+					sb.append(uri, nameEnd + 1, end);
+				}
+			}
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Finds the given char between the given positions.
+	 *
+	 * @param s - The string to search as {@link String}
+	 * @param c - The char as char
+	 * @param from - The first position to look at as int
+	 * @param to - The position to stop at as int
+	 * @return Returns the position of the char, or to if it was not found
+	 */
+	private static int indexOf(String s, char c, int from, int to) {
+		final int i = s.indexOf(c, from);
+
+		return i < 0 || i > to ? to : i;
+	}
+
+	/**
+	 * This class holds the per-thread sort areas of the x-amz- headers and the sub-resources,
+	 * which only ever grow.
+	 */
+	private static final class Canon {
+		CharSequence[] names = new CharSequence[16];
+		CharSequence[] values = new CharSequence[16];
+		int[] params = new int[3 * 8];
+
+		/**
+		 * This method inserts a header into the sorted headers, after any of the same name.
+		 *
+		 * @param name - The header name as {@link CharSequence}
+		 * @param value - The header value as {@link CharSequence}
+		 * @param count - The number of headers so far as int
+		 * @return Returns the new number of headers as int
+		 */
+		int insert(CharSequence name, CharSequence value, int count) {
+			if (this.names.length == count) {
+				this.names = Arrays.copyOf(this.names, count * 2);
+				this.values = Arrays.copyOf(this.values, count * 2);
+			}
+			int i = count;
+			for (; i > 0 && compareNames(this.names[i - 1], name) > 0; i--) {
+				this.names[i] = this.names[i - 1];
+				this.values[i] = this.values[i - 1];
+			}
+			this.names[i] = name;
+			this.values[i] = value;
+
+			return count + 1;
+		}
+
+		/**
+		 * This method inserts a query parameter, given by its positions in the URI, into the sorted
+		 * sub-resources.
+		 *
+		 * @param uri - The request URI as {@link String}
+		 * @param start - The start of the name as int
+		 * @param nameEnd - The end of the name as int
+		 * @param end - The end of the parameter as int
+		 * @param count - The number of sub-resources so far as int
+		 * @return Returns the new number of sub-resources as int
+		 */
+		int insertParam(String uri, int start, int nameEnd, int end, int count) {
+			if (this.params.length == 3 * count) {
+				this.params = Arrays.copyOf(this.params, 6 * count);
+			}
+			final int[] p = this.params;
+			int i = count;
+			for (; i > 0; i--) {
+				final int s = p[3 * (i - 1)], e = p[3 * (i - 1) + 1];
+				int cmp = 0;
+				for (int k = 0; cmp == 0 && k < Math.min(e - s, nameEnd - start); k++) {
+					cmp = uri.charAt(s + k) - uri.charAt(start + k);
+				}
+				if ((cmp == 0 ? (e - s) - (nameEnd - start) : cmp) <= 0) break;
+				System.arraycopy(p, 3 * (i - 1), p, 3 * i, 3);
+			}
+			p[3 * i] = start;
+			p[3 * i + 1] = nameEnd;
+			p[3 * i + 2] = end;
+
+			return count + 1;
+		}
+
+		/**
+		 * This method drops the references to the headers of the last request.
+		 *
+		 * @param count - The number of headers as int
+		 */
+		void clear(int count) {
+			Arrays.fill(this.names, 0, count, null);
+			Arrays.fill(this.values, 0, count, null);
+		}
+
+		/**
+		 * PRIVATE METHOD: Compares two header names the same way their lowercase "name:" forms
+		 * would compare, as {@link AWSRequest} sorts them.
+		 *
+		 * @param a - The first name as {@link CharSequence}
+		 * @param b - The second name as {@link CharSequence}
+		 * @return Returns a negative, zero or positive int as with {@link String#compareTo(String)}
+		 */
+		private static int compareNames(CharSequence a, CharSequence b) {
+			final int aLen = a.length(), bLen = b.length();
+			final int len = Math.min(aLen, bLen);
+			for (int i = 0; i < len; i++) {
+				char ac = Character.toLowerCase(a.charAt(i)), bc = Character.toLowerCase(b.charAt(i));
+				if (ac != bc) {
+
+					return ac - bc;
+				}
+			}
+			if (aLen != bLen) { // The shorter name is followed by the ':' separator...
+
+				return aLen < bLen ? ':' - Character.toLowerCase(b.charAt(len)) : Character.toLowerCase(a.charAt(len)) - ':';
+			}
+
+			return 0;
+		}
+	}
+}
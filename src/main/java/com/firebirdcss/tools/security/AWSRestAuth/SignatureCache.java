@@ -0,0 +1,268 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a bounded cache of signatures, for workloads that keep signing the exact same
+ * StringToSign, such as presigned URLs of hot objects with a shared Expires time, or retries
+ * of a request with the same Date. It is used through the overloads of
+ * {@link AwsAuthV2Util#genAuthHeader(AWSRequest, Signer, SignatureCache)} and
+ * {@link AwsAuthV2Util#genPresignedUrl(AWSRequest, Signer, long, SignatureCache)}, or through
+ * {@link #sign(Signer, String)}.
+ * <p>
+ * Entries are found by a 64-bit hash of the StringToSign and the {@link Signer} that signed it,
+ * and are only used if both the {@link Signer} and the full StringToSign match, so a hash
+ * collision can never return a wrong signature. The secret key is never part of the key; a
+ * rotated key comes with a new {@link Signer} and so never hits the entries of the old one.
+ * <p>
+ * The cache is a 4-way set associative table without locks. Lookups are plain reads; a slot
+ * is replaced with the CLOCK policy within its set, so recently used entries are kept over
+ * ones that were not used since the last sweep. Entries expire after the TTL.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class SignatureCache {
+	public static final int DEFAULT_MAX_ENTRIES = 4096;
+	public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+	private static final int WAYS = 4;
+
+	private final AtomicReferenceArray<Entry> slots;
+	private final int setMask;
+	private final long ttlMillis;
+	private final Clock clock;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * CONSTRUCTOR: Creates a cache with the default size and TTL.
+	 */
+	public SignatureCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, Clock.systemUTC());
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a cache of the given size and TTL.
+	 *
+	 * @param maxEntries - The most signatures to keep, rounded up to a power of two, as int
+	 * @param ttlMillis - How long a signature is kept in milliseconds as long
+	 * @param clock - The clock to expire entries by as {@link Clock}
+	 */
+	public SignatureCache(int maxEntries, long ttlMillis, Clock clock) {
+		if (clock == null) throw new NullPointerException();
+		if (maxEntries < 1) throw new IllegalArgumentException("The cache must hold at least one entry!");
+		if (ttlMillis <= 0) throw new IllegalArgumentException("The TTL must be positive!");
+		int sets = 1;
+		while (sets * WAYS < maxEntries) sets <<= 1;
+		this.slots = new AtomicReferenceArray<>(sets * WAYS);
+		this.setMask = sets - 1;
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+	}
+
+	/**
+	 * This method signs the given StringToSign with the given {@link Signer}, returning the
+	 * cached signature if it was signed before.
+	 *
+	 * @param signer - The signer as {@link Signer}
+	 * @param stringToSign - The StringToSign as {@link String}
+	 * @return Returns the Base64 signature as {@link String}
+	 */
+	public String sign(Signer signer, String stringToSign) {
+		final long hash = hash(signer, stringToSign);
+		final Entry entry = find(signer, stringToSign, hash);
+		if (entry != null) {
+
+			return new String(entry.signature, 0, entry.signature.length, StandardCharsets.US_ASCII);
+		}
+		final String signature = signer.sign(stringToSign);
+		store(signer, stringToSign, hash, signature.getBytes(StandardCharsets.US_ASCII), signature.length());
+
+		return signature;
+	}
+
+	/**
+	 * This method returns how often a signature was found in the cache.
+	 *
+	 * @return Returns the number of hits as long
+	 */
+	public long getHitCount() {
+
+		return this.hits.sum();
+	}
+
+	/**
+	 * This method returns how often a signature had to be computed.
+	 *
+	 * @return Returns the number of misses as long
+	 */
+	public long getMissCount() {
+
+		return this.misses.sum();
+	}
+
+	/**
+	 * This method returns the number of signatures in the cache that have not expired.
+	 *
+	 * @return Returns the number of entries as int
+	 */
+	public int size() {
+		final long now = this.clock.millis();
+		int size = 0;
+		for (int i = 0; i < this.slots.length(); i++) {
+			Entry entry = this.slots.get(i);
+			if (entry != null && entry.expiresAt > now) size++;
+		}
+
+		return size;
+	}
+
+	/**
+	 * This method drops every signature, such as after keys were revoked.
+	 */
+	public void clear() {
+		for (int i = 0; i < this.slots.length(); i++) {
+			this.slots.set(i, null);
+		}
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Signs the StringToSign in {@link SigningScratch#canon}, taking the
+	 * signature from the cache when it can, and leaves it in {@link SigningScratch#signature}.
+	 *
+	 * @param signer - The signer as {@link Signer}
+	 * @param scratch - The calling thread's scratch area as {@link SigningScratch}
+	 * @return Returns the length of the signature as int
+	 */
+	int signCanon(Signer signer, SigningScratch scratch) {
+		final StringBuilder canon = scratch.canon;
+		final long hash = hash(signer, canon);
+		final Entry entry = find(signer, canon, hash);
+		if (entry != null) {
+			System.arraycopy(entry.signature, 0, scratch.signature, 0, entry.signature.length);
+
+			return entry.signature.length;
+		}
+		final int length = AwsAuthV2Util.signCanon(signer, scratch);
+		store(signer, canon, hash, scratch.signature, length);
+
+		return length;
+	}
+
+	/**
+	 * PRIVATE METHOD: Looks up the live entry of the given signer and StringToSign, marking it
+	 * as recently used, and counts the hit or miss.
+	 *
+	 * @param signer - The signer as {@link Signer}
+	 * @param stringToSign - The StringToSign as {@link CharSequence}
+	 * @param hash - The hash of both as long
+	 * @return Returns the entry as {@link Entry} or null if there is none
+	 */
+	private Entry find(Signer signer, CharSequence stringToSign, long hash) {
+		final int base = setOf(hash);
+		final long now = this.clock.millis();
+		for (int i = 0; i < WAYS; i++) {
+			final Entry entry = this.slots.get(base + i);
+			if (entry != null && entry.hash == hash && entry.signer == signer && entry.expiresAt > now
+					&& entry.stringToSign.contentEquals(stringToSign)) {
+				if (!entry.referenced) entry.referenced = true;
+				this.hits.increment();
+				SigningMetrics.getListener().onCacheLookup(true);
+
+				return entry;
+			}
+		}
+		this.misses.increment();
+		SigningMetrics.getListener().onCacheLookup(false);
+
+		return null;
+	}
+
+	/**
+	 * PRIVATE METHOD: Stores a new signature in its set, taking an empty or expired slot if
+	 * there is one and otherwise the first slot the CLOCK hand finds unused since its last
+	 * sweep. A racing store may win the slot instead, which only costs a later miss.
+	 *
+	 * @param signer - The signer as {@link Signer}
+	 * @param stringToSign - The StringToSign as {@link CharSequence}
+	 * @param hash - The hash of both as long
+	 * @param signature - The Base64 signature as byte[]
+	 * @param length - The length of the signature as int
+	 */
+	private void store(Signer signer, CharSequence stringToSign, long hash, byte[] signature, int length) {
+		final int base = setOf(hash);
+		final long now = this.clock.millis();
+		final Entry fresh = new Entry(signer, hash, stringToSign.toString(), Arrays.copyOf(signature, length), now + this.ttlMillis);
+
+		int victim = -1;
+		for (int i = 0; i < WAYS && victim < 0; i++) {
+			final Entry entry = this.slots.get(base + i);
+			if (entry == null || entry.expiresAt <= now) victim = i;
+		}
+		for (int sweep = 0; victim < 0 && sweep < 2 * WAYS; sweep++) { // Second pass finds a cleared bit...
+			final Entry entry = this.slots.get(base + (sweep % WAYS));
+			if (entry == null || !entry.referenced) {
+				victim = sweep % WAYS;
+			} else {
+				entry.referenced = false;
+			}
+		}
+		this.slots.lazySet(base + victim, fresh);
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the index of the first slot of the set of the given hash.
+	 *
+	 * @param hash - The hash as long
+	 * @return Returns the slot index as int
+	 */
+	private int setOf(long hash) {
+
+		return ((int) (hash ^ (hash >>> 32)) & this.setMask) * WAYS;
+	}
+
+	/**
+	 * PRIVATE METHOD: Hashes the given StringToSign together with the identity of its signer,
+	 * using 64-bit FNV-1a with a final avalanche.
+	 *
+	 * @param signer - The signer as {@link Signer}
+	 * @param stringToSign - The StringToSign as {@link CharSequence}
+	 * @return Returns the hash as long
+	 */
+	private static long hash(Signer signer, CharSequence stringToSign) {
+		long h = 0xcbf29ce484222325L ^ System.identityHashCode(signer);
+		for (int i = 0, n = stringToSign.length(); i < n; i++) {
+			h = (h ^ stringToSign.charAt(i)) * 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * This class is a cached signature.
+	 */
+	private static final class Entry {
+		final Signer signer;
+		final long hash;
+		final String stringToSign;
+		final byte[] signature;
+		final long expiresAt;
+		volatile boolean referenced;
+
+		Entry(Signer signer, long hash, String stringToSign, byte[] signature, long expiresAt) {
+			this.signer = signer;
+			this.hash = hash;
+			this.stringToSign = stringToSign;
+			this.signature = signature;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,364 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class authenticates incoming AWS Version 2 signed requests, either by their
+ * "Authorization: AWS AccessKey:Signature" header or by query string authentication
+ * (the AWSAccessKeyId, Expires and Signature parameters of a presigned URL).
+ * <p>
+ * Secret keys are resolved through a {@link CredentialLookup}, and the resulting
+ * {@link Signer}s are kept in a bounded cache. Once an entry is older than half the cache TTL
+ * it is refreshed in the background while the old entry keeps being used, so hot keys rarely
+ * wait on the lookup; once it is older than the TTL it is no longer used at all, so a revoked
+ * key stops being accepted within the TTL. Unknown access keys are remembered for a few
+ * seconds in a bounded cache of their own, so a flood of requests with a bogus key does not
+ * reach the lookup with every request, nor push known keys out of the cache. The expected
+ * signature is recomputed with the signer's per-thread HMAC and compared in constant time.
+ *
+ * @see https://docs.aws.amazon.com/AmazonS3/latest/dev/RESTAuthentication.html
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class SignatureVerifier {
+	public static final long DEFAULT_MAX_CLOCK_SKEW_MILLIS = TimeUnit.MINUTES.toMillis(15);
+	public static final int DEFAULT_MAX_CACHED_KEYS = 10_000;
+	public static final long DEFAULT_CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+	/** The longest an unknown access key is remembered, or the cache TTL if it is shorter. */
+	public static final long UNKNOWN_KEY_TTL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+	private static final String AUTH_PREFIX = "AWS ";
+
+	/**
+	 * The possible outcomes of verifying a request.
+	 */
+	public enum Result {
+		/** The signature is valid. */
+		VALID,
+		/** The request carries neither an Authorization header nor query string authentication. */
+		MISSING_AUTHENTICATION,
+		/** The authentication information or the request date could not be parsed. */
+		MALFORMED_AUTHENTICATION,
+		/** The request date is further away from now than the allowed clock skew. */
+		REQUEST_TIME_SKEWED,
+		/** The Expires time of a presigned URL has passed. */
+		EXPIRED,
+		/** The access key is not known to the {@link CredentialLookup}. */
+		UNKNOWN_ACCESS_KEY,
+		/** The signature does not match the request. */
+		SIGNATURE_MISMATCH,
+		/** The signature is valid, but the same request was already accepted before. */
+		REPLAYED
+	}
+
+	private final CredentialLookup lookup;
+	private final long maxClockSkewMillis;
+	private final int maxCachedKeys;
+	private final long cacheTtlMillis;
+	private final Executor refreshExecutor;
+	private final Clock clock;
+	private final ReplayGuard replayGuard;
+	private final long unknownKeyTtlMillis;
+	private final ConcurrentHashMap<String, CachedCredential> cache = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, CachedCredential> unknown = new ConcurrentHashMap<>(); // Entries without a signer...
+
+	/**
+	 * CONSTRUCTOR: Creates a {@link SignatureVerifier} with the default clock skew and cache settings,
+	 * refreshing cache entries on the common {@link ForkJoinPool}.
+	 *
+	 * @param lookup - The source of secret keys as {@link CredentialLookup}
+	 */
+	public SignatureVerifier(CredentialLookup lookup) {
+		this(lookup, DEFAULT_MAX_CLOCK_SKEW_MILLIS, DEFAULT_MAX_CACHED_KEYS, DEFAULT_CACHE_TTL_MILLIS, ForkJoinPool.commonPool(), Clock.systemUTC(), null);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a fully configured {@link SignatureVerifier}.
+	 *
+	 * @param lookup - The source of secret keys as {@link CredentialLookup}
+	 * @param maxClockSkewMillis - The largest allowed difference between the request date and now as long
+	 * @param maxCachedKeys - The most access keys to keep cached as int
+	 * @param cacheTtlMillis - The age after which a cached secret is no longer used as long
+	 * @param refreshExecutor - The executor to refresh cached secrets on as {@link Executor}
+	 * @param clock - The clock to check request dates against as {@link Clock}
+	 */
+	public SignatureVerifier(CredentialLookup lookup, long maxClockSkewMillis, int maxCachedKeys, long cacheTtlMillis, Executor refreshExecutor, Clock clock) {
+		this(lookup, maxClockSkewMillis, maxCachedKeys, cacheTtlMillis, refreshExecutor, clock, null);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a fully configured {@link SignatureVerifier} that also rejects replays of
+	 * requests authenticated by their Authorization header. Presigned URLs are meant to be used
+	 * repeatedly until they expire, so they are not checked for replays.
+	 *
+	 * @param lookup - The source of secret keys as {@link CredentialLookup}
+	 * @param maxClockSkewMillis - The largest allowed difference between the request date and now as long
+	 * @param maxCachedKeys - The most access keys to keep cached as int
+	 * @param cacheTtlMillis - The age after which a cached secret is no longer used as long
+	 * @param refreshExecutor - The executor to refresh cached secrets on as {@link Executor}
+	 * @param clock - The clock to check request dates against as {@link Clock}
+	 * @param replayGuard - The record of accepted requests as {@link ReplayGuard}, or null for none
+	 */
+	public SignatureVerifier(CredentialLookup lookup, long maxClockSkewMillis, int maxCachedKeys, long cacheTtlMillis, Executor refreshExecutor, Clock clock, ReplayGuard replayGuard) {
+		if (lookup == null || refreshExecutor == null || clock == null) throw new NullPointerException();
+		if (maxClockSkewMillis < 0 || maxCachedKeys < 1 || cacheTtlMillis < 0) throw new IllegalArgumentException("Invalid verifier settings!");
+		this.lookup = lookup;
+		this.maxClockSkewMillis = maxClockSkewMillis;
+		this.maxCachedKeys = maxCachedKeys;
+		this.cacheTtlMillis = cacheTtlMillis;
+		this.unknownKeyTtlMillis = Math.min(cacheTtlMillis, UNKNOWN_KEY_TTL_MILLIS);
+		this.refreshExecutor = refreshExecutor;
+		this.clock = clock;
+		this.replayGuard = replayGuard;
+	}
+
+	/**
+	 * This method verifies the signature of the given incoming request. The request is expected to
+	 * hold the headers and (decoded) parameters as they were received, its keys are not used.
+	 *
+	 * @param request - The incoming request as {@link AWSRequest}
+	 * @return Returns the outcome of the verification as {@link Result}
+	 */
+	public Result verify(AWSRequest request) {
+		final String accessKey;
+		final String signature;
+		final long expires;
+		long dateMillis = 0;
+
+		final String authorization = request.getNormalizedHeaderValue("authorization");
+		if (!authorization.isEmpty()) {
+			int colon = authorization.lastIndexOf(':');
+			if (!authorization.startsWith(AUTH_PREFIX) || colon <= AUTH_PREFIX.length()) {
+
+				return Result.MALFORMED_AUTHENTICATION;
+			}
+			accessKey = authorization.substring(AUTH_PREFIX.length(), colon).trim();
+			signature = authorization.substring(colon + 1).trim();
+			expires = AwsAuthV2Util.NO_EXPIRES;
+
+			String date = request.getNormalizedHeaderValue("x-amz-date"); // This one is priority...
+			if (date.isEmpty()) date = request.getNormalizedHeaderValue("date");
+			try {
+				dateMillis = ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+			} catch (DateTimeParseException e) {
+
+				return Result.MALFORMED_AUTHENTICATION;
+			}
+			if (Math.abs(this.clock.millis() - dateMillis) > this.maxClockSkewMillis) {
+
+				return Result.REQUEST_TIME_SKEWED;
+			}
+		} else {
+			accessKey = request.getParameterValue("AWSAccessKeyId");
+			signature = request.getParameterValue("Signature");
+			final String expiresValue = request.getParameterValue("Expires");
+			if (accessKey == null || signature == null || expiresValue == null) {
+
+				return Result.MISSING_AUTHENTICATION;
+			}
+			try {
+				expires = Long.parseLong(expiresValue);
+			} catch (NumberFormatException e) {
+
+				return Result.MALFORMED_AUTHENTICATION;
+			}
+			if (expires < 0) {
+
+				return Result.MALFORMED_AUTHENTICATION;
+			}
+			if (TimeUnit.MILLISECONDS.toSeconds(this.clock.millis()) > expires) {
+
+				return Result.EXPIRED;
+			}
+		}
+
+		final Signer signer = signerFor(accessKey);
+		if (signer == null) {
+
+			return Result.UNKNOWN_ACCESS_KEY;
+		}
+
+		final SigningScratch scratch = SigningScratch.get();
+		final int sigLength = AwsAuthV2Util.signInto(request, signer, scratch, expires);
+
+		if (!constantTimeEquals(scratch.signature, sigLength, signature)) {
+
+			return Result.SIGNATURE_MISMATCH;
+		}
+		if (this.replayGuard != null && expires == AwsAuthV2Util.NO_EXPIRES && !this.replayGuard.checkAndRecord(accessKey, signature, dateMillis)) {
+
+			return Result.REPLAYED;
+		}
+
+		return Result.VALID;
+	}
+
+	/**
+	 * This method drops the cached secret of the given access key, for instance after it was revoked,
+	 * and forgets that it was unknown, for instance after it was created.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 */
+	public void invalidate(String accessKey) {
+		this.cache.remove(accessKey);
+		this.unknown.remove(accessKey);
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the {@link Signer} of the given access key. Cached entries are
+	 * returned right away and refreshed in the background once stale, only keys that are not
+	 * cached, or whose entry has expired, wait for the {@link CredentialLookup}.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @return Returns the signer as {@link Signer} or null if the access key is unknown
+	 */
+	private Signer signerFor(String accessKey) {
+		final long now = this.clock.millis();
+		final CachedCredential current = this.cache.get(accessKey);
+		if (current != null) {
+			final long age = now - current.loadedAt;
+			if (age <= this.cacheTtlMillis) {
+				if (age > this.cacheTtlMillis / 2 && current.refreshing.compareAndSet(false, true)) {
+					this.refreshExecutor.execute(() -> refresh(accessKey, current));
+				}
+
+				return current.signer;
+			}
+			this.cache.remove(accessKey, current); // Expired, the key may have been revoked...
+		}
+		final CachedCredential miss = this.unknown.get(accessKey);
+		if (miss != null) {
+			if (now - miss.loadedAt <= this.unknownKeyTtlMillis) {
+
+				return null;
+			}
+			this.unknown.remove(accessKey, miss);
+		}
+
+		final CachedCredential cached = load(accessKey, now);
+		if (cached.signer == null) {
+			makeRoom(this.unknown);
+			this.unknown.put(accessKey, cached);
+
+			return null;
+		}
+		makeRoom(this.cache);
+		this.cache.put(accessKey, cached);
+
+		return cached.signer;
+	}
+
+	/**
+	 * PRIVATE METHOD: Looks up the given access key again to replace a stale cache entry. If the
+	 * key is no longer known it is dropped from the cache; if the lookup fails the stale entry is
+	 * kept until it expires and will be refreshed again on a later request.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param stale - The entry being refreshed as {@link CachedCredential}
+	 */
+	private void refresh(String accessKey, CachedCredential stale) {
+		try {
+			CachedCredential fresh = load(accessKey, this.clock.millis());
+			if (fresh.signer == null) {
+				this.cache.remove(accessKey, stale);
+			} else {
+				this.cache.replace(accessKey, stale, fresh);
+			}
+		} catch (RuntimeException e) {
+			stale.refreshing.set(false);
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Looks up the secret of the given access key and prepares its {@link Signer}.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param now - The current time in milliseconds as long
+	 * @return Returns the new cache entry as {@link CachedCredential}, without a signer if the key is unknown
+	 */
+	private CachedCredential load(String accessKey, long now) {
+		final String secret = this.lookup.lookupSecret(accessKey);
+		if (secret == null || secret.isEmpty()) {
+
+			return new CachedCredential(null, now);
+		}
+		try {
+
+			return new CachedCredential(new Signer(accessKey, secret), now);
+		} catch (NoSuchAlgorithmException | InvalidKeyException e) {
+			throw new IllegalStateException("Unable to create a signer for access key '" + accessKey + "'!", e);
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Keeps the given cache below its size limit, dropping the oldest of a small
+	 * sample of entries when it is full.
+	 *
+	 * @param cache - The cache as {@link ConcurrentHashMap}
+	 */
+	private void makeRoom(ConcurrentHashMap<String, CachedCredential> cache) {
+		while (cache.size() >= this.maxCachedKeys) {
+			Entry<String, CachedCredential> oldest = null;
+			Iterator<Entry<String, CachedCredential>> it = cache.entrySet().iterator();
+			for (int i = 0; i < 8 && it.hasNext(); i++) {
+				Entry<String, CachedCredential> entry = it.next();
+				if (oldest == null || entry.getValue().loadedAt < oldest.getValue().loadedAt) {
+					oldest = entry;
+				}
+			}
+			if (oldest == null) {
+
+				return;
+			}
+			cache.remove(oldest.getKey(), oldest.getValue());
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Compares the expected Base64 signature with the given one in time that only
+	 * depends on the length of the expected signature, so the comparison leaks nothing about how
+	 * much of a forged signature was correct.
+	 *
+	 * @param expected - The expected signature as ASCII byte[]
+	 * @param length - The length of the expected signature as int
+	 * @param actual - The signature received as {@link String}
+	 * @return Returns true if they are equal, otherwise false
+	 */
+	private static boolean constantTimeEquals(byte[] expected, int length, String actual) {
+		int diff = length ^ actual.length();
+		for (int i = 0; i < length; i++) {
+			char c = i < actual.length() ? actual.charAt(i) : 0;
+			diff |= expected[i] ^ c;
+		}
+
+		return diff == 0;
+	}
+
+	/**
+	 * This class holds a cached {@link Signer}, or null for an unknown key, and when its secret
+	 * was looked up.
+	 */
+	private static final class CachedCredential {
+		final Signer signer;
+		final long loadedAt;
+		final AtomicBoolean refreshing = new AtomicBoolean();
+
+		CachedCredential(Signer signer, long loadedAt) {
+			this.signer = signer;
+			this.loadedAt = loadedAt;
+		}
+	}
+}
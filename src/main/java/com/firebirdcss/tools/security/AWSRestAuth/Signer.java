@@ -0,0 +1,162 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class holds the ready-to-use HMAC state for a single access/secret key pair
+ * so that signing a request does not have to look up the JCE provider, encode the
+ * secret and initialize a new HMAC every time.
+ * <p>
+ * A single {@link SigningEngine.Hmac} is initialized up front with the {@link SigningEngine}
+ * installed at the time, which computes the inner and outer pad state for the secret once.
+ * Each thread that signs with this {@link Signer} is then handed its own copy of that
+ * initialized HMAC, so instances of this class are safe to share between threads.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class Signer {
+	private final String accessKey;
+	private final String secret;
+	private final SigningEngine engine;
+	private final SigningEngine.Hmac prototype;
+	private final ThreadLocal<SigningEngine.Hmac> threadHmac = ThreadLocal.withInitial(this::newHmac);
+
+	/**
+	 * CONSTRUCTOR: Creates a {@link Signer} bound to the access/secret key pair of the
+	 * given request.
+	 *
+	 * @param request - The request whose keys to use as {@link AWSRequest}
+	 *
+	 * @throws NoSuchAlgorithmException
+	 * @throws InvalidKeyException
+	 */
+	public Signer(AWSRequest request) throws NoSuchAlgorithmException, InvalidKeyException {
+		this(request.getAccessKey(), request.getSecretKey());
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a {@link Signer} bound to the given access/secret key pair.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secretKey - The AWS secret key as {@link String}
+	 *
+	 * @throws NoSuchAlgorithmException
+	 * @throws InvalidKeyException
+	 */
+	public Signer(String accessKey, String secretKey) throws NoSuchAlgorithmException, InvalidKeyException {
+		this(accessKey, secretKey, secretKey == null ? null : secretKey.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a {@link Signer} bound to the given access key and the UTF-8 bytes
+	 * of its secret key, which are not kept as a {@link String}. Such a {@link Signer} is
+	 * never {@link #isFor(String, String)} any keys.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secretKey - The UTF-8 bytes of the AWS secret key as byte[]
+	 *
+	 * @throws NoSuchAlgorithmException
+	 * @throws InvalidKeyException
+	 */
+	Signer(String accessKey, byte[] secretKey) throws NoSuchAlgorithmException, InvalidKeyException {
+		this(accessKey, null, secretKey);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a {@link Signer} bound to the given keys.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secret - The AWS secret key or null to not keep it as {@link String}
+	 * @param secretBytes - The UTF-8 bytes of the AWS secret key as byte[]
+	 *
+	 * @throws NoSuchAlgorithmException
+	 * @throws InvalidKeyException
+	 */
+	private Signer(String accessKey, String secret, byte[] secretBytes) throws NoSuchAlgorithmException, InvalidKeyException {
+		if (accessKey == null || secretBytes == null) throw new NullPointerException();
+		this.accessKey = accessKey;
+		this.secret = secret;
+		this.engine = SigningEngines.get();
+		this.prototype = this.engine.newHmac(secretBytes);
+	}
+
+	/**
+	 * This method returns the access key this {@link Signer} is bound to.
+	 *
+	 * @return Returns the access key as {@link String}
+	 */
+	public String getAccessKey() {
+
+		return this.accessKey;
+	}
+
+	/**
+	 * This method signs the given data with the secret key this {@link Signer} is bound to.
+	 * The result is identical to that of {@link AwsAuthV2Util#signString(String, String)}.
+	 *
+	 * @param data - The data to sign as {@link String}
+	 * @return Returns the generated signature as {@link String}
+	 */
+	public String sign(final String data) {
+		if (data == null) throw new NullPointerException();
+
+		final SigningEngine.Hmac hmac = getHmac();
+		final byte[] input = data.getBytes(StandardCharsets.UTF_8);
+		hmac.update(input, 0, input.length);
+		final byte[] digest = new byte[hmac.getLength()];
+		hmac.doFinal(digest, 0);
+
+		return this.engine.encodeBase64(digest);
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method checks whether this {@link Signer} is bound to the
+	 * given access/secret key pair.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secretKey - The AWS secret key as {@link String}
+	 * @return Returns true if the keys match, otherwise false
+	 */
+	boolean isFor(String accessKey, String secretKey) {
+
+		return this.secret != null && this.accessKey.equals(accessKey) && this.secret.equals(secretKey);
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method returns the {@link SigningEngine} this {@link Signer}
+	 * was created with, which also Base64 encodes its signatures.
+	 *
+	 * @return Returns the engine as {@link SigningEngine}
+	 */
+	SigningEngine getEngine() {
+
+		return this.engine;
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method returns the calling thread's HMAC, which is already
+	 * initialized with this {@link Signer}'s secret key and is in its reset state.
+	 *
+	 * @return Returns the thread's HMAC as {@link SigningEngine.Hmac}
+	 */
+	SigningEngine.Hmac getHmac() {
+
+		return this.threadHmac.get();
+	}
+
+	/**
+	 * PRIVATE METHOD: Creates the HMAC of a thread by copying the already initialized prototype,
+	 * so the pad state does not need to be computed again.
+	 *
+	 * @return Returns the new HMAC as {@link SigningEngine.Hmac}
+	 */
+	private SigningEngine.Hmac newHmac() {
+		synchronized (this.prototype) {
+
+			return this.prototype.copy();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This interface is the service provider interface of the primitives the Version 2 signing
+ * pipeline is built on: the HMAC-SHA1 of the StringToSign and the Base64 encoding of the result.
+ * Implementations are discovered through {@link java.util.ServiceLoader} and the one in use is
+ * held by {@link SigningEngines}, which can also pick the fastest correct one on the current machine.
+ * <p>
+ * Implementations must be safe to share between threads; the {@link Hmac}s they create are not,
+ * and are handed to one thread at a time.
+ *
+ * @author Scott Griffis
+ *
+ */
+public interface SigningEngine {
+
+	/**
+	 * This method returns the name the engine is selected by.
+	 *
+	 * @return Returns the name as {@link String}
+	 */
+	String getName();
+
+	/**
+	 * This method creates a new HMAC-SHA1 initialized with the given key and in its reset state.
+	 *
+	 * @param key - The key as byte[]
+	 * @return Returns the HMAC as {@link Hmac}
+	 *
+	 * @throws NoSuchAlgorithmException
+	 * @throws InvalidKeyException
+	 * @throws IllegalArgumentException if the key is empty
+	 */
+	Hmac newHmac(byte[] key) throws NoSuchAlgorithmException, InvalidKeyException;
+
+	/**
+	 * This method Base64 encodes (RFC 4648, padded) the given range of bytes into the given destination.
+	 *
+	 * @param src - The bytes to encode as byte[]
+	 * @param srcOff - The offset of the first byte to encode as int
+	 * @param length - The number of bytes to encode as int
+	 * @param dst - The destination as byte[]
+	 * @param dstOff - The offset to start writing at as int
+	 * @return Returns the number of characters written as int
+	 */
+	int encodeBase64(byte[] src, int srcOff, int length, byte[] dst, int dstOff);
+
+	/**
+	 * This method Base64 encodes the given bytes into a {@link String}.
+	 *
+	 * @param src - The bytes to encode as byte[]
+	 * @return Returns the encoded bytes as {@link String}
+	 */
+	default String encodeBase64(byte[] src) {
+		final byte[] dst = new byte[((src.length + 2) / 3) * 4];
+		final int length = encodeBase64(src, 0, src.length, dst, 0);
+
+		return new String(dst, 0, length, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * This interface is an HMAC-SHA1 bound to a key, which is reset once it is finished.
+	 */
+	interface Hmac {
+
+		/**
+		 * This method adds the given range of bytes to the message.
+		 *
+		 * @param input - The bytes as byte[]
+		 * @param offset - The offset of the first byte as int
+		 * @param length - The number of bytes as int
+		 */
+		void update(byte[] input, int offset, int length);
+
+		/**
+		 * This method finishes the message, writes its HMAC into the given array and resets the state.
+		 *
+		 * @param output - The destination as byte[]
+		 * @param offset - The offset to start writing at as int
+		 * @return Returns the length of the HMAC as int
+		 */
+		int doFinal(byte[] output, int offset);
+
+		/**
+		 * This method drops the message added so far.
+		 */
+		void reset();
+
+		/**
+		 * This method returns the length of the HMAC.
+		 *
+		 * @return Returns the length in bytes as int
+		 */
+		int getLength();
+
+		/**
+		 * This method creates an independent copy of this HMAC, which keeps the already computed
+		 * state of the key so it does not need to be initialized again.
+		 *
+		 * @return Returns the copy as {@link Hmac}
+		 */
+		Hmac copy();
+	}
+}
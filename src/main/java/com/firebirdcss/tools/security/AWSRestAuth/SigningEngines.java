@@ -0,0 +1,227 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * This class holds the {@link SigningEngine} new {@link Signer}s and {@link AwsAuthV2Util#signString(String, String)}
+ * use. Until another one is installed it is the {@link JceSigningEngine}, unless the system property
+ * {@value #ENGINE_PROPERTY} names another engine, or is {@value #CALIBRATE} to have {@link #calibrate()}
+ * pick the fastest one when this class is first used.
+ * <p>
+ * {@link Signer}s keep the engine they were created with, so installing an engine only affects
+ * the {@link Signer}s created after it.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class SigningEngines {
+	/** The system property naming the engine to start with, or {@value #CALIBRATE}. */
+	public static final String ENGINE_PROPERTY = "com.firebirdcss.tools.security.AWSRestAuth.signingEngine";
+	/** The value of {@value #ENGINE_PROPERTY} that picks the fastest engine. */
+	public static final String CALIBRATE = "calibrate";
+
+	private static final int CALIBRATION_ROUNDS = 5;
+	private static final int CALIBRATION_ITERATIONS = 2_000;
+
+	/** The key, message and Base64 HMAC-SHA1 every engine must reproduce. */
+	private static final String[][] VECTORS = {
+		{ "wJalrXUtnFEMI/K7MDENG/bPxRfiCYEXAMPLEKEY", "GET\n\n\nTue, 27 Mar 2007 19:36:42 +0000\n/johnsmith/photos/puppy.jpg", "bWq2s1WEIj+Ydj0vQ697zp+IXMU=" },
+		{ "wJalrXUtnFEMI/K7MDENG/bPxRfiCYEXAMPLEKEY", "PUT\n\nimage/jpeg\nTue, 27 Mar 2007 21:15:45 +0000\n/johnsmith/photos/puppy.jpg", "MyyxeRY7whkBe+bq8fHCL/2kKUg=" },
+		{ "wJalrXUtnFEMI/K7MDENG/bPxRfiCYEXAMPLEKEY", "GET\n\n\nTue, 27 Mar 2007 19:42:41 +0000\n/johnsmith/", "htDYFYduRNen8P9ZfE/s9SuKy0U=" },
+		{ null, "Test Using Larger Than Block-Size Key - Hash Key First", "qkrl4VJy0A6VcFY3zoo7Ve1AIRI=" }, // RFC 2202, with 80 bytes of 0xAA as key...
+		{ null, "Test Using Larger Than Block-Size Key and Larger Than One Block-Size Data", "6OmdD0UjfXhta7qnllx4CLv/GpE=" }
+	};
+
+	private static volatile SigningEngine engine = initialEngine();
+	private static volatile int sink; // Keeps the calibration from being optimized away...
+
+	private SigningEngines() {}
+
+	/**
+	 * This method installs the given engine in place of the current one, once it has checked
+	 * that the engine reproduces known signatures.
+	 *
+	 * @param newEngine - The engine, or null for the {@link JceSigningEngine}, as {@link SigningEngine}
+	 *
+	 * @throws IllegalArgumentException if the engine does not sign correctly
+	 */
+	public static void install(SigningEngine newEngine) {
+		final SigningEngine checked = newEngine == null ? new JceSigningEngine() : newEngine;
+		if (!verify(checked)) throw new IllegalArgumentException("The signing engine '" + checked.getName() + "' does not sign correctly!");
+		engine = checked;
+	}
+
+	/**
+	 * This method returns the installed engine.
+	 *
+	 * @return Returns the engine as {@link SigningEngine}
+	 */
+	public static SigningEngine get() {
+
+		return engine;
+	}
+
+	/**
+	 * This method returns every engine found by the {@link ServiceLoader}, in the order found.
+	 *
+	 * @return Returns the engines as {@link List} of {@link SigningEngine}
+	 */
+	public static List<SigningEngine> available() {
+		final List<SigningEngine> engines = new ArrayList<>();
+		for (SigningEngine found : ServiceLoader.load(SigningEngine.class, SigningEngine.class.getClassLoader())) {
+			engines.add(found);
+		}
+
+		return Collections.unmodifiableList(engines);
+	}
+
+	/**
+	 * This method returns the available engine of the given name.
+	 *
+	 * @param name - The name of the engine as {@link String}
+	 * @return Returns the engine as {@link SigningEngine} or null if none has the name
+	 */
+	public static SigningEngine find(String name) {
+		for (SigningEngine candidate : available()) {
+			if (candidate.getName().equals(name)) {
+
+				return candidate;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * This method checks that the given engine reproduces the signatures of the AWS documentation
+	 * and of RFC 2202, both when the message is added at once and in pieces, and with reused and
+	 * copied HMACs.
+	 *
+	 * @param candidate - The engine to check as {@link SigningEngine}
+	 * @return Returns true if every signature matches, otherwise false
+	 */
+	public static boolean verify(SigningEngine candidate) {
+		try {
+			final byte[] digest = new byte[64];
+			final byte[] encoded = new byte[88];
+			for (String[] vector : VECTORS) {
+				final byte[] key = vector[0] == null ? longKey() : vector[0].getBytes(StandardCharsets.UTF_8);
+				final byte[] data = vector[1].getBytes(StandardCharsets.UTF_8);
+				final byte[] expected = vector[2].getBytes(StandardCharsets.US_ASCII);
+				final SigningEngine.Hmac hmac = candidate.newHmac(key);
+				for (int split = 0; split <= data.length; split += 7) { // Reuses the HMAC after each doFinal...
+					final SigningEngine.Hmac target = split % 2 == 0 ? hmac : hmac.copy();
+					target.update(data, 0, split);
+					target.update(data, split, data.length - split);
+					final int length = candidate.encodeBase64(digest, 0, target.doFinal(digest, 0), encoded, 0);
+					if (!Arrays.equals(expected, Arrays.copyOf(encoded, length))) {
+
+						return false;
+					}
+				}
+			}
+
+			return true;
+		} catch (Exception e) { // Not usable on this machine...
+
+			return false;
+		}
+	}
+
+	/**
+	 * This method picks the fastest of the available engines that {@link #verify(SigningEngine)}
+	 * on this machine, by briefly timing each signing a typical StringToSign, and installs it.
+	 *
+	 * @return Returns the installed engine as {@link SigningEngine}
+	 */
+	public static SigningEngine calibrate() {
+		final List<SigningEngine> candidates = new ArrayList<>();
+		for (SigningEngine candidate : available()) {
+			if (verify(candidate)) {
+				candidates.add(candidate);
+			}
+		}
+		if (candidates.isEmpty()) {
+			install(null);
+
+			return engine;
+		}
+		final long[] best = new long[candidates.size()];
+		Arrays.fill(best, Long.MAX_VALUE);
+		for (int round = 0; round < CALIBRATION_ROUNDS; round++) { // Interleaved, so JIT and noise hit all alike...
+			for (int i = 0; i < best.length; i++) {
+				best[i] = Math.min(best[i], time(candidates.get(i)));
+			}
+		}
+		int fastest = 0;
+		for (int i = 1; i < best.length; i++) {
+			if (best[i] < best[fastest]) fastest = i;
+		}
+		engine = candidates.get(fastest);
+
+		return engine;
+	}
+
+	/**
+	 * PRIVATE METHOD: Times how long the given engine takes to sign and encode a typical
+	 * StringToSign {@link #CALIBRATION_ITERATIONS} times.
+	 *
+	 * @param candidate - The engine as {@link SigningEngine}
+	 * @return Returns the time taken in nanoseconds as long
+	 */
+	private static long time(SigningEngine candidate) {
+		try {
+			final SigningEngine.Hmac hmac = candidate.newHmac(VECTORS[1][0].getBytes(StandardCharsets.UTF_8));
+			final byte[] data = VECTORS[1][1].getBytes(StandardCharsets.UTF_8);
+			final byte[] digest = new byte[64];
+			final byte[] encoded = new byte[88];
+			int result = 0;
+			final long start = System.nanoTime();
+			for (int i = 0; i < CALIBRATION_ITERATIONS; i++) {
+				hmac.update(data, 0, data.length);
+				result += candidate.encodeBase64(digest, 0, hmac.doFinal(digest, 0), encoded, 0) + encoded[i % 28];
+			}
+			final long elapsed = System.nanoTime() - start;
+			sink = result;
+
+			return elapsed;
+		} catch (Exception e) { // Already verified...
+
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the key of the RFC 2202 vectors, which is longer than a block.
+	 *
+	 * @return Returns the key as byte[]
+	 */
+	private static byte[] longKey() {
+		final byte[] key = new byte[80];
+		Arrays.fill(key, (byte) 0xAA);
+
+		return key;
+	}
+
+	/**
+	 * PRIVATE METHOD: Returns the engine to start with, as named by {@link #ENGINE_PROPERTY}. An
+	 * unknown or incorrect engine falls back to the {@link JceSigningEngine}.
+	 *
+	 * @return Returns the engine as {@link SigningEngine}
+	 */
+	private static SigningEngine initialEngine() {
+		final String name = System.getProperty(ENGINE_PROPERTY);
+		if (CALIBRATE.equals(name)) {
+
+			return calibrate();
+		}
+		final SigningEngine named = name == null || JceSigningEngine.NAME.equals(name) ? null : find(name);
+
+		return named != null && verify(named) ? named : new JceSigningEngine();
+	}
+}
@@ -0,0 +1,195 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * This class caches the Signature Version 4 signing keys derived for a (secret, date, region,
+ * service), so the four chained HMAC-SHA256 calls of the derivation are only made once a day.
+ * <p>
+ * Whenever a newer date is seen, the keys of every date before the previous day are evicted;
+ * the previous day is kept for requests signed around midnight with a slightly slow clock.
+ *
+ * @author Scott Griffis
+ *
+ */
+final class SigningKeyCache {
+	static final String HASH_TYPE = "HmacSHA256";
+	static final SigningKeyCache SHARED = new SigningKeyCache();
+
+	private static final int MAX_ENTRIES = 4096;
+
+	private final ConcurrentHashMap<Key, DerivedKey> keys = new ConcurrentHashMap<>();
+	private volatile String newestDate = "";
+
+	/**
+	 * This method returns the derived key of the given scope, deriving it on first use.
+	 *
+	 * @param secretKey - The AWS secret key as {@link String}
+	 * @param date - The scope date as yyyyMMdd as {@link String}
+	 * @param region - The region as {@link String}
+	 * @param service - The service as {@link String}
+	 * @return Returns the derived key as {@link DerivedKey}
+	 */
+	DerivedKey get(String secretKey, String date, String region, String service) {
+		final Key key = new Key(secretKey, date, region, service);
+		DerivedKey derived = this.keys.get(key);
+		if (derived == null) {
+			if (date.compareTo(this.newestDate) > 0) {
+				rollOver(date);
+			}
+			if (this.keys.size() >= MAX_ENTRIES) { // Only reachable with an unusual number of scopes...
+				this.keys.clear();
+			}
+			derived = this.keys.computeIfAbsent(key, k -> new DerivedKey(date, AwsAuthV4Util.deriveSigningKey(secretKey, date, region, service)));
+		}
+
+		return derived;
+	}
+
+	/**
+	 * This method drops every key derived from the given secret, such as after it was rotated.
+	 *
+	 * @param secretKey - The AWS secret key as {@link String}
+	 */
+	void invalidate(String secretKey) {
+		this.keys.keySet().removeIf(key -> key.secretKey.equals(secretKey));
+	}
+
+	/**
+	 * This method returns how many derived keys are cached.
+	 *
+	 * @return Returns the number of keys as int
+	 */
+	int size() {
+
+		return this.keys.size();
+	}
+
+	/**
+	 * PRIVATE METHOD: Records the given date as the newest and evicts the keys of every date before
+	 * the day preceding it.
+	 *
+	 * @param date - The new date as yyyyMMdd as {@link String}
+	 */
+	private synchronized void rollOver(String date) {
+		if (date.compareTo(this.newestDate) <= 0) {
+
+			return;
+		}
+		this.newestDate = date;
+		final String oldest;
+		try {
+			oldest = LocalDate.parse(date, DateTimeFormatter.BASIC_ISO_DATE).minusDays(1).format(DateTimeFormatter.BASIC_ISO_DATE);
+		} catch (RuntimeException e) { // Not a date, nothing sensible to evict by...
+
+			return;
+		}
+		this.keys.keySet().removeIf(key -> key.date.compareTo(oldest) < 0);
+	}
+
+	/**
+	 * This class is the lookup key of a derived key.
+	 */
+	private static final class Key {
+		final String secretKey;
+		final String date;
+		final String region;
+		final String service;
+		final int hash;
+
+		Key(String secretKey, String date, String region, String service) {
+			this.secretKey = secretKey;
+			this.date = date;
+			this.region = region;
+			this.service = service;
+			this.hash = Objects.hash(secretKey, date, region, service);
+		}
+
+		@Override
+		public int hashCode() {
+
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+
+				return false;
+			}
+			Key other = (Key) obj;
+
+			return this.hash == other.hash && this.date.equals(other.date) && this.region.equals(other.region)
+				&& this.service.equals(other.service) && this.secretKey.equals(other.secretKey);
+		}
+	}
+
+	/**
+	 * This class holds a derived signing key with one initialized {@link Mac} per thread, handed
+	 * out the same way {@link Signer} does for Signature Version 2.
+	 */
+	static final class DerivedKey {
+		final String date;
+		private final SecretKeySpec keySpec;
+		private final Mac prototype;
+		private final ThreadLocal<Mac> threadMac = ThreadLocal.withInitial(this::newMac);
+
+		DerivedKey(String date, byte[] key) {
+			this.date = date;
+			this.keySpec = new SecretKeySpec(key, HASH_TYPE);
+			this.prototype = newInitializedMac(this.keySpec);
+		}
+
+		/**
+		 * This method returns the calling thread's {@link Mac}, initialized with the derived key.
+		 *
+		 * @return Returns the thread's {@link Mac}
+		 */
+		Mac getMac() {
+
+			return this.threadMac.get();
+		}
+
+		/**
+		 * PRIVATE METHOD: Creates the {@link Mac} of a thread by cloning the initialized prototype.
+		 *
+		 * @return Returns the new {@link Mac}
+		 */
+		private Mac newMac() {
+			try {
+				synchronized (this.prototype) {
+
+					return (Mac) this.prototype.clone();
+				}
+			} catch (CloneNotSupportedException e) {
+
+				return newInitializedMac(this.keySpec);
+			}
+		}
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Creates an HmacSHA256 {@link Mac} initialized with the given key.
+	 *
+	 * @param key - The key as {@link SecretKeySpec}
+	 * @return Returns the {@link Mac}
+	 */
+	static Mac newInitializedMac(SecretKeySpec key) {
+		try {
+			Mac mac = Mac.getInstance(HASH_TYPE);
+			mac.init(key);
+
+			return mac;
+		} catch (NoSuchAlgorithmException | InvalidKeyException e) { // Every JRE is required to support it...
+			throw new IllegalStateException("Unable to create an " + HASH_TYPE + " Mac!", e);
+		}
+	}
+}
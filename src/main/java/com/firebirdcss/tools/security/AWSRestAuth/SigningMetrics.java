@@ -0,0 +1,57 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+/**
+ * This class holds the {@link SigningMetricsListener} the signing pipeline reports to. Until a
+ * listener is installed it is {@link SigningMetricsListener#NOOP}, in which case the pipeline
+ * does not even read the clock; all that is left is one load and one comparison per stage.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class SigningMetrics {
+	private static volatile SigningMetricsListener listener = SigningMetricsListener.NOOP;
+
+	private SigningMetrics() {}
+
+	/**
+	 * This method installs the given listener in place of the current one.
+	 *
+	 * @param newListener - The listener, or null to record nothing, as {@link SigningMetricsListener}
+	 */
+	public static void install(SigningMetricsListener newListener) {
+		listener = newListener == null ? SigningMetricsListener.NOOP : newListener;
+	}
+
+	/**
+	 * This method returns the installed listener.
+	 *
+	 * @return Returns the listener as {@link SigningMetricsListener}
+	 */
+	public static SigningMetricsListener getListener() {
+
+		return listener;
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Returns the start time of a stage, only reading the clock if the
+	 * given listener wants the stage timed.
+	 *
+	 * @param metrics - The listener as {@link SigningMetricsListener}
+	 * @return Returns the start time in nanoseconds, or {@link SigningMetricsListener#NOT_TIMED}, as long
+	 */
+	static long start(SigningMetricsListener metrics) {
+
+		return metrics.shouldTime() ? System.nanoTime() : SigningMetricsListener.NOT_TIMED;
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Returns the time since the given start of a stage.
+	 *
+	 * @param start - The start from {@link #start(SigningMetricsListener)} as long
+	 * @return Returns the elapsed nanoseconds, or {@link SigningMetricsListener#NOT_TIMED}, as long
+	 */
+	static long elapsed(long start) {
+
+		return start == SigningMetricsListener.NOT_TIMED ? SigningMetricsListener.NOT_TIMED : System.nanoTime() - start;
+	}
+}
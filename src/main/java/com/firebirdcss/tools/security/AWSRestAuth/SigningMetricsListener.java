@@ -0,0 +1,61 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+/**
+ * This interface is implemented by whatever collects the metrics of the signing pipeline, and
+ * is installed through {@link SigningMetrics#install(SigningMetricsListener)}.
+ * {@link SigningMetricsRecorder} is the built-in implementation.
+ * <p>
+ * The methods are called on the signing path, from any thread, so implementations must be
+ * thread-safe and must return quickly without blocking. Every method does nothing by default.
+ *
+ * @author Scott Griffis
+ *
+ */
+public interface SigningMetricsListener {
+	/** The listener that is installed by default, which records nothing. */
+	SigningMetricsListener NOOP = new SigningMetricsListener() {};
+	/** The time reported for a stage that was not timed. */
+	long NOT_TIMED = -1L;
+
+	/**
+	 * This method is called before each stage, to ask whether it should be timed. Reading the
+	 * clock costs about as much as a small part of the stage itself, so listeners that want
+	 * latencies usually only time a sample of the stages.
+	 *
+	 * @return Returns true to time the stage, otherwise false
+	 */
+	default boolean shouldTime() {
+
+		return false;
+	}
+
+	/**
+	 * This method is called after a StringToSign was built.
+	 *
+	 * @param nanos - How long canonicalizing took in nanoseconds, or {@link #NOT_TIMED}, as long
+	 * @param length - The length of the StringToSign in UTF-8 bytes as int
+	 */
+	default void onCanonicalized(long nanos, int length) {}
+
+	/**
+	 * This method is called after a StringToSign was signed with an HMAC.
+	 *
+	 * @param nanos - How long the HMAC took in nanoseconds, or {@link #NOT_TIMED}, as long
+	 */
+	default void onSigned(long nanos) {}
+
+	/**
+	 * This method is called after a {@link SignatureCache} was looked up.
+	 *
+	 * @param hit - Whether the signature was found as boolean
+	 */
+	default void onCacheLookup(boolean hit) {}
+
+	/**
+	 * This method is called when signing failed, such as with an {@link java.security.InvalidKeyException}
+	 * or a {@link java.security.NoSuchAlgorithmException}, just before it is thrown to the caller.
+	 *
+	 * @param error - The error as {@link Exception}
+	 */
+	default void onError(Exception error) {}
+}
@@ -0,0 +1,221 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class is the built-in {@link SigningMetricsListener}. It keeps a {@link LatencyHistogram}
+ * per stage of the pipeline and counters of the requests canonicalized, the signatures computed,
+ * the bytes canonicalized, the errors and the {@link SignatureCache} hits and misses, all
+ * without locks. It can be published to JMX through {@link #registerMBean()}.
+ * <p>
+ * The counters are exact, while the latencies are only taken of a random sample of the stages,
+ * since reading the clock twice would otherwise cost more than the rest of the recording. Even
+ * so the recorder is not free: the counters and the sampling add some tens of nanoseconds to
+ * every request, a few percent of signing a small one, which the MetricsOverheadBenchmark of
+ * the JMH suite measures against no listener at all.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class SigningMetricsRecorder implements SigningMetricsListener, SigningMetricsRecorderMBean {
+	/** The JMX name the recorder is registered under by {@link #registerMBean()}. */
+	public static final String OBJECT_NAME = "com.firebirdcss.tools.security.AWSRestAuth:type=SigningMetrics";
+	/** One in how many stages is timed by default. */
+	public static final int DEFAULT_TIMING_INTERVAL = 64;
+
+	private final int timingMask;
+	private final LatencyHistogram canonicalize = new LatencyHistogram();
+	private final LatencyHistogram hmac = new LatencyHistogram();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder signed = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+
+	/**
+	 * CONSTRUCTOR: Creates a recorder that times one in {@link #DEFAULT_TIMING_INTERVAL} stages.
+	 */
+	public SigningMetricsRecorder() {
+		this(DEFAULT_TIMING_INTERVAL);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a recorder that times one in the given number of stages, at random.
+	 *
+	 * @param timingInterval - The power of two of stages per timed one, 1 to time all, as int
+	 */
+	public SigningMetricsRecorder(int timingInterval) {
+		if (timingInterval < 1 || Integer.bitCount(timingInterval) != 1) throw new IllegalArgumentException("The timing interval must be a power of two!");
+		this.timingMask = timingInterval - 1;
+	}
+
+	@Override
+	public boolean shouldTime() {
+
+		return (ThreadLocalRandom.current().nextInt() & this.timingMask) == 0;
+	}
+
+	@Override
+	public void onCanonicalized(long nanos, int length) {
+		this.requests.increment();
+		this.bytes.add(length);
+		if (nanos != NOT_TIMED) this.canonicalize.record(nanos);
+	}
+
+	@Override
+	public void onSigned(long nanos) {
+		this.signed.increment();
+		if (nanos != NOT_TIMED) this.hmac.record(nanos);
+	}
+
+	@Override
+	public void onCacheLookup(boolean hit) {
+		(hit ? this.cacheHits : this.cacheMisses).increment();
+	}
+
+	@Override
+	public void onError(Exception error) {
+		this.errors.increment();
+	}
+
+	/**
+	 * This method registers this recorder with the platform MBean server under {@link #OBJECT_NAME},
+	 * replacing any recorder registered before.
+	 *
+	 * @return Returns the name it was registered under as {@link ObjectName}
+	 * @throws JMException - When the registration fails
+	 */
+	public ObjectName registerMBean() throws JMException {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName name = new ObjectName(OBJECT_NAME);
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+		server.registerMBean(this, name);
+
+		return name;
+	}
+
+	/**
+	 * This method returns the histogram of the canonicalization stage.
+	 *
+	 * @return Returns the histogram as {@link LatencyHistogram}
+	 */
+	public LatencyHistogram getCanonicalizeHistogram() {
+
+		return this.canonicalize;
+	}
+
+	/**
+	 * This method returns the histogram of the HMAC stage.
+	 *
+	 * @return Returns the histogram as {@link LatencyHistogram}
+	 */
+	public LatencyHistogram getHmacHistogram() {
+
+		return this.hmac;
+	}
+
+	@Override
+	public long getRequestCount() {
+
+		return this.requests.sum();
+	}
+
+	@Override
+	public long getSignedCount() {
+
+		return this.signed.sum();
+	}
+
+	@Override
+	public long getBytesCanonicalized() {
+
+		return this.bytes.sum();
+	}
+
+	@Override
+	public long getErrorCount() {
+
+		return this.errors.sum();
+	}
+
+	@Override
+	public long getCacheHitCount() {
+
+		return this.cacheHits.sum();
+	}
+
+	@Override
+	public long getCacheMissCount() {
+
+		return this.cacheMisses.sum();
+	}
+
+	@Override
+	public double getCanonicalizeMeanNanos() {
+
+		return this.canonicalize.getMean();
+	}
+
+	@Override
+	public long getCanonicalizeP50Nanos() {
+
+		return this.canonicalize.getValueAtPercentile(50.0);
+	}
+
+	@Override
+	public long getCanonicalizeP99Nanos() {
+
+		return this.canonicalize.getValueAtPercentile(99.0);
+	}
+
+	@Override
+	public long getCanonicalizeMaxNanos() {
+
+		return this.canonicalize.getMax();
+	}
+
+	@Override
+	public double getHmacMeanNanos() {
+
+		return this.hmac.getMean();
+	}
+
+	@Override
+	public long getHmacP50Nanos() {
+
+		return this.hmac.getValueAtPercentile(50.0);
+	}
+
+	@Override
+	public long getHmacP99Nanos() {
+
+		return this.hmac.getValueAtPercentile(99.0);
+	}
+
+	@Override
+	public long getHmacMaxNanos() {
+
+		return this.hmac.getMax();
+	}
+
+	@Override
+	public void reset() {
+		this.canonicalize.reset();
+		this.hmac.reset();
+		this.requests.reset();
+		this.signed.reset();
+		this.bytes.reset();
+		this.errors.reset();
+		this.cacheHits.reset();
+		this.cacheMisses.reset();
+	}
+}
@@ -0,0 +1,44 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+/**
+ * This interface is the JMX view of a {@link SigningMetricsRecorder}. Latencies are in
+ * nanoseconds.
+ *
+ * @author Scott Griffis
+ *
+ */
+public interface SigningMetricsRecorderMBean {
+
+	long getRequestCount();
+
+	long getSignedCount();
+
+	long getBytesCanonicalized();
+
+	long getErrorCount();
+
+	long getCacheHitCount();
+
+	long getCacheMissCount();
+
+	double getCanonicalizeMeanNanos();
+
+	long getCanonicalizeP50Nanos();
+
+	long getCanonicalizeP99Nanos();
+
+	long getCanonicalizeMaxNanos();
+
+	double getHmacMeanNanos();
+
+	long getHmacP50Nanos();
+
+	long getHmacP99Nanos();
+
+	long getHmacMaxNanos();
+
+	/**
+	 * This method sets every metric back to zero.
+	 */
+	void reset();
+}
@@ -0,0 +1,202 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map.Entry;
+
+/**
+ * This class holds the reusable per-thread working storage of the signing path, so that
+ * canonicalizing and signing a request does not need to allocate any intermediate
+ * builders, lists, strings or arrays once a thread has warmed up.
+ * <p>
+ * Each area only ever grows, and is only used for the duration of a single call on the
+ * owning thread.
+ *
+ * @author Scott Griffis
+ *
+ */
+final class SigningScratch {
+	private static final ThreadLocal<SigningScratch> SCRATCH = ThreadLocal.withInitial(SigningScratch::new);
+
+	final StringBuilder canon = new StringBuilder(512);
+	final CanonWriter writer = new CanonWriter();
+	final byte[] digest = new byte[64];
+	final byte[] signature = new byte[88];
+
+	byte[] utf8 = new byte[1024];
+
+	Entry<String, String>[] headers = newEntries(16);
+	String[] subResources = new String[8];
+
+	private MessageDigest sha256;
+
+	private SigningScratch() {}
+
+	/**
+	 * This method returns the calling thread's {@link SigningScratch}.
+	 *
+	 * @return Returns the thread's scratch area as {@link SigningScratch}
+	 */
+	static SigningScratch get() {
+
+		return SCRATCH.get();
+	}
+
+	/**
+	 * This method sorts the given range of the given array in place. Unlike
+	 * {@link Arrays#sort(Object[], int, int, Comparator)}, whose merge sort allocates a temporary
+	 * array once there are more than 32 elements, it never allocates. It is a heap sort, so it is
+	 * not stable, which does not matter for the names and headers it sorts.
+	 *
+	 * @param a - The array as T[]
+	 * @param from - The index of the first element to sort as int
+	 * @param to - The index after the last element to sort as int
+	 * @param order - The order to sort in as {@link Comparator}
+	 */
+	static <T> void sort(T[] a, int from, int to, Comparator<? super T> order) {
+		final int n = to - from;
+		for (int i = n / 2 - 1; i >= 0; i--) {
+			siftDown(a, from, i, n, order);
+		}
+		for (int end = n - 1; end > 0; end--) {
+			final T largest = a[from];
+			a[from] = a[from + end];
+			a[from + end] = largest;
+			siftDown(a, from, 0, end, order);
+		}
+	}
+
+	/**
+	 * This method makes sure the header sort area can hold at least the given number of entries.
+	 *
+	 * @param size - The needed size as int
+	 * @return Returns the header sort area
+	 */
+	Entry<String, String>[] headers(int size) {
+		if (this.headers.length < size) {
+			this.headers = Arrays.copyOf(this.headers, Math.max(size, this.headers.length * 2));
+		}
+
+		return this.headers;
+	}
+
+	/**
+	 * This method makes sure the sub-resource sort area can hold at least the given number of entries.
+	 *
+	 * @param size - The needed size as int
+	 * @return Returns the sub-resource sort area
+	 */
+	String[] subResources(int size) {
+		if (this.subResources.length < size) {
+			this.subResources = Arrays.copyOf(this.subResources, Math.max(size, this.subResources.length * 2));
+		}
+
+		return this.subResources;
+	}
+
+	/**
+	 * PRIVATE METHOD: Moves the element at the given index of a heap down until it is no smaller
+	 * than its children.
+	 *
+	 * @param a - The array holding the heap as T[]
+	 * @param base - The index of the root of the heap in the array as int
+	 * @param i - The index of the element within the heap as int
+	 * @param n - The size of the heap as int
+	 * @param order - The order of the heap as {@link Comparator}
+	 */
+	private static <T> void siftDown(T[] a, int base, int i, int n, Comparator<? super T> order) {
+		final T element = a[base + i];
+		int child;
+		while ((child = 2 * i + 1) < n) {
+			if (child + 1 < n && order.compare(a[base + child + 1], a[base + child]) > 0) child++;
+			if (order.compare(a[base + child], element) <= 0) break;
+			a[base + i] = a[base + child];
+			i = child;
+		}
+		a[base + i] = element;
+	}
+
+	/**
+	 * PRIVATE METHOD: Creates a header sort area of the given size.
+	 *
+	 * @param size - The size as int
+	 * @return Returns the empty sort area
+	 */
+	@SuppressWarnings("unchecked")
+	private static Entry<String, String>[] newEntries(int size) {
+
+		return (Entry<String, String>[]) new Entry<?, ?>[size];
+	}
+
+	/**
+	 * This method returns the thread's SHA-256 {@link MessageDigest}, creating it on first use.
+	 *
+	 * @return Returns the digest in its reset state as {@link MessageDigest}
+	 */
+	MessageDigest sha256() {
+		if (this.sha256 == null) {
+			try {
+				this.sha256 = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) { // Every JRE is required to support it...
+				throw new IllegalStateException("SHA-256 is not available!", e);
+			}
+		}
+
+		return this.sha256;
+	}
+
+	/**
+	 * This method encodes the contents of {@link #canon} as UTF-8 into {@link #utf8}, exactly as
+	 * {@link String#getBytes(java.nio.charset.Charset)} would, growing it if needed.
+	 *
+	 * @return Returns the number of bytes written as int
+	 */
+	int encodeCanon() {
+		final StringBuilder sb = this.canon;
+		final int length = sb.length();
+		if (this.utf8.length < length * 3) {
+			this.utf8 = new byte[Math.max(length * 3, this.utf8.length * 2)];
+		}
+		final byte[] out = this.utf8;
+
+		int pos = 0;
+		for (int i = 0; i < length; i++) {
+			char c = sb.charAt(i);
+			if (c < 0x80) {
+				out[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				out[pos++] = (byte) (0xC0 | (c >> 6));
+				out[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(sb.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, sb.charAt(++i));
+				out[pos++] = (byte) (0xF0 | (cp >> 18));
+				out[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				out[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				out[pos++] = (byte) (0x80 | (cp & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				out[pos++] = '?'; // Malformed, same replacement the String encoder uses...
+			} else {
+				out[pos++] = (byte) (0xE0 | (c >> 12));
+				out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				out[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+
+		return pos;
+	}
+
+	/**
+	 * This method Base64 encodes the given bytes into {@link #signature} with the given engine.
+	 *
+	 * @param engine - The engine to encode with as {@link SigningEngine}
+	 * @param src - The bytes to encode as byte[]
+	 * @param length - The number of bytes to encode as int
+	 * @return Returns the number of Base64 characters written as int
+	 */
+	int encodeSignature(SigningEngine engine, byte[] src, int length) {
+
+		return engine.encodeBase64(src, 0, length, this.signature, 0);
+	}
+}
@@ -0,0 +1,380 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class records the shape of signed requests, meaning their method, endpoint, bucket, path,
+ * parameters and headers, to a compact binary trace file, so the real traffic of an application
+ * can be replayed offline by {@link SigningTraceReplay} to compare versions of this library.
+ * <p>
+ * Recording is opt-in: nothing is recorded until a recorder is {@link #install(SigningTraceRecorder)
+ * installed}, after which every Signature Version 2 request signed, or a sample of one in every
+ * so many of them, is recorded. Until then all that is left in the signing pipeline is one load
+ * and one comparison.
+ * <p>
+ * No secret ever reaches the file. The keys of a request are not recorded at all, and the values
+ * of the headers and parameters that carry a token, credential or signature are replaced by as
+ * many 'x' characters, so the StringToSign of a replayed request has the same size as the real one.
+ * <p>
+ * The file is an append-only log, written through a {@link FileChannel} in large blocks. It starts
+ * with a 4 byte magic number, followed by one record per request: its length as a varint, then its
+ * strings, each a varint of its UTF-8 length plus one (zero for null) and its bytes, in the order
+ * method, endpoint, bucket, path, the number of parameters and their names and values, then the
+ * number of headers and their names and values. Appending to an existing trace first drops a record
+ * cut short at its end by a crash, and a trace still being written is read up to its last whole record.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class SigningTraceRecorder implements AutoCloseable {
+	static final int MAGIC = 0x41575354; // "AWST"...
+	static final char REDACTED = 'x';
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final Set<String> SECRET_NAMES = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+	static {
+		SECRET_NAMES.addAll(Arrays.asList(
+			"Authorization", "x-amz-security-token", "AWSAccessKeyId", "Signature",
+			"X-Amz-Credential", "X-Amz-Signature"
+		));
+	}
+
+	private static volatile SigningTraceRecorder installed;
+
+	private final FileChannel channel;
+	private final int sampleOneIn;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE); // Guarded by this...
+	private long recorded; // Guarded by this...
+	private boolean closed; // Guarded by this...
+
+	/**
+	 * CONSTRUCTOR: Creates a recorder of every request, appending to the given file.
+	 *
+	 * @param file - The trace file, created if it does not exist, as {@link Path}
+	 * @throws IOException
+	 */
+	public SigningTraceRecorder(Path file) throws IOException {
+		this(file, 1);
+	}
+
+	/**
+	 * CONSTRUCTOR: Creates a recorder of a random sample of the requests, appending to the given file.
+	 *
+	 * @param file - The trace file, created if it does not exist, as {@link Path}
+	 * @param sampleOneIn - On average one in how many requests is recorded as int
+	 * @throws IOException
+	 */
+	public SigningTraceRecorder(Path file, int sampleOneIn) throws IOException {
+		if (sampleOneIn < 1) throw new IllegalArgumentException("The sample must be one in at least one request!");
+		this.sampleOneIn = sampleOneIn;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (this.channel.size() == 0) {
+				this.buffer.putInt(MAGIC);
+			} else {
+				final ByteBuffer magic = ByteBuffer.allocate(4);
+				while (magic.hasRemaining() && this.channel.read(magic, magic.position()) >= 0) {
+					// Reads until the magic number is in...
+				}
+				if (magic.hasRemaining() || magic.getInt(0) != MAGIC) throw new IOException("The file " + file + " is not a signing trace!");
+				dropCutShortRecord();
+				this.channel.position(this.channel.size()); // Only ever appends from here on...
+			}
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * This method installs the given recorder, so the requests signed from now on are recorded by it.
+	 *
+	 * @param recorder - The recorder, or null to record nothing, as {@link SigningTraceRecorder}
+	 */
+	public static void install(SigningTraceRecorder recorder) {
+		installed = recorder;
+	}
+
+	/**
+	 * This method returns the installed recorder.
+	 *
+	 * @return Returns the recorder, or null if none is installed, as {@link SigningTraceRecorder}
+	 */
+	public static SigningTraceRecorder getInstalled() {
+
+		return installed;
+	}
+
+	/**
+	 * This method records the shape of the given request, if it is sampled. It never throws; a
+	 * failure to write the trace is reported to the installed {@link SigningMetricsListener} and
+	 * ends the recording.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 */
+	public void record(AWSRequest request) {
+		if (this.sampleOneIn > 1 && ThreadLocalRandom.current().nextInt(this.sampleOneIn) != 0) {
+
+			return;
+		}
+		final byte[] record = encode(request); // Done before taking the lock, so threads only queue up to copy...
+		synchronized (this) {
+			if (this.closed) {
+
+				return;
+			}
+			try {
+				if (this.buffer.remaining() < 5 + record.length) {
+					flush();
+				}
+				putVarint(this.buffer, record.length);
+				if (record.length <= this.buffer.remaining()) {
+					this.buffer.put(record);
+				} else { // Larger than the whole buffer...
+					flush();
+					write(ByteBuffer.wrap(record));
+				}
+				this.recorded++;
+			} catch (IOException e) {
+				SigningMetrics.getListener().onError(e);
+				closeQuietly();
+			}
+		}
+	}
+
+	/**
+	 * This method returns how many requests were recorded so far.
+	 *
+	 * @return Returns the number of requests as long
+	 */
+	public synchronized long getRecorded() {
+
+		return this.recorded;
+	}
+
+	/**
+	 * This method writes the requests recorded so far to the file.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void sync() throws IOException {
+		if (!this.closed) flush();
+	}
+
+	/**
+	 * This method writes what is left to the file and closes it, uninstalling this recorder if it
+	 * is the installed one.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		if (installed == this) installed = null;
+		synchronized (this) {
+			if (this.closed) {
+
+				return;
+			}
+			this.closed = true;
+			try {
+				flush();
+			} finally {
+				this.channel.close();
+			}
+		}
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Returns whether the value of the header or parameter of the given name
+	 * is a secret, and is therefore redacted in the trace.
+	 *
+	 * @param name - The name of the header or parameter as {@link String}
+	 * @return Returns true if it is a secret, otherwise false
+	 */
+	static boolean isSecret(String name) {
+
+		return SECRET_NAMES.contains(name);
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Writes the given value as an unsigned varint, seven bits at a time.
+	 *
+	 * @param out - The buffer to write to as {@link ByteBuffer}
+	 * @param value - The non-negative value as int
+	 */
+	static void putVarint(ByteBuffer out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: Reads an unsigned varint written by {@link #putVarint(ByteBuffer, int)}.
+	 *
+	 * @param in - The buffer to read from as {@link ByteBuffer}
+	 * @return Returns the value as int
+	 * @throws BufferUnderflowException when the buffer ends within the varint
+	 */
+	static int getVarint(ByteBuffer in) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			final byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+
+				return value;
+			}
+		}
+		throw new IllegalStateException("The trace holds a malformed length!");
+	}
+
+	/**
+	 * PRIVATE METHOD: Walks the records of the existing trace by their lengths, and cuts off a
+	 * record at its end that was not written whole, so new records are not appended behind it.
+	 *
+	 * @throws IOException
+	 */
+	private void dropCutShortRecord() throws IOException {
+		final long size = this.channel.size();
+		final ByteBuffer length = ByteBuffer.allocate(5);
+		long position = 4;
+		while (position < size) {
+			length.clear();
+			this.channel.read(length, position);
+			length.flip();
+			try {
+				final int recordLength = getVarint(length);
+				if (position + length.position() + recordLength > size) break;
+				position += length.position() + recordLength;
+			} catch (BufferUnderflowException | IllegalStateException e) {
+				break;
+			}
+		}
+		if (position < size) this.channel.truncate(position);
+	}
+
+	/**
+	 * PRIVATE METHOD: Encodes the shape of the given request as one record, without its length.
+	 *
+	 * @param request - The request as {@link AWSRequest}
+	 * @return Returns the record as byte[]
+	 */
+	private static byte[] encode(AWSRequest request) {
+		final Map<String, String> params = request.getParameters();
+		final Map<String, String> headers = request.getHeaders();
+		final Encoder out = new Encoder();
+		out.putString(request.getRequestMethod());
+		out.putString(request.getBaseUrl());
+		out.putString(request.getBucket());
+		out.putString(request.getPath());
+		out.putEntries(params);
+		out.putEntries(headers);
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * PRIVATE METHOD: Writes the buffered records to the file and empties the buffer.
+	 *
+	 * @throws IOException
+	 */
+	private void flush() throws IOException {
+		this.buffer.flip();
+		try {
+			write(this.buffer);
+		} finally {
+			this.buffer.clear();
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Writes all that is left in the given buffer to the end of the file.
+	 *
+	 * @param src - The bytes to write as {@link ByteBuffer}
+	 * @throws IOException
+	 */
+	private void write(ByteBuffer src) throws IOException {
+		while (src.hasRemaining()) {
+			this.channel.write(src);
+		}
+	}
+
+	/**
+	 * PRIVATE METHOD: Ends the recording after a failure, dropping what was not written yet.
+	 */
+	private void closeQuietly() {
+		this.closed = true;
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			// Already failing, the first error was reported...
+		}
+	}
+
+	/**
+	 * This class encodes one record into a growing array.
+	 */
+	private static final class Encoder {
+		private ByteBuffer out = ByteBuffer.allocate(256);
+
+		void putEntries(Map<String, String> entries) {
+			putVarint(entries.size());
+			for (Map.Entry<String, String> entry : entries.entrySet()) {
+				final String value = entry.getValue();
+				putString(entry.getKey());
+				putString(value != null && isSecret(entry.getKey()) ? redact(value) : value);
+			}
+		}
+
+		void putString(String value) {
+			if (value == null) {
+				putVarint(0);
+
+				return;
+			}
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			putVarint(bytes.length + 1);
+			ensure(bytes.length);
+			this.out.put(bytes);
+		}
+
+		void putVarint(int value) {
+			ensure(5);
+			SigningTraceRecorder.putVarint(this.out, value);
+		}
+
+		byte[] toByteArray() {
+
+			return Arrays.copyOf(this.out.array(), this.out.position());
+		}
+
+		private void ensure(int length) {
+			if (this.out.remaining() < length) {
+				final ByteBuffer bigger = ByteBuffer.allocate(Math.max(this.out.capacity() * 2, this.out.position() + length));
+				this.out.flip();
+				bigger.put(this.out);
+				this.out = bigger;
+			}
+		}
+
+		private static String redact(String value) {
+			final char[] chars = new char[value.length()];
+			Arrays.fill(chars, REDACTED);
+
+			return new String(chars);
+		}
+	}
+}
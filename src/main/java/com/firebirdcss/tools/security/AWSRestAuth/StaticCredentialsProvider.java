@@ -0,0 +1,27 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+/**
+ * This class is a {@link CredentialsProvider} of a fixed access/secret key pair.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class StaticCredentialsProvider implements CredentialsProvider {
+	private final Credentials credentials;
+
+	/**
+	 * CONSTRUCTOR: Creates a provider of the given keys.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secretKey - The AWS secret key as {@link String}
+	 */
+	public StaticCredentialsProvider(String accessKey, String secretKey) {
+		this.credentials = new Credentials(accessKey, secretKey);
+	}
+
+	@Override
+	public Credentials getCredentials() {
+
+		return this.credentials;
+	}
+}
@@ -0,0 +1,83 @@
+package com.firebirdcss.tools.security.AWSRestAuth;
+
+import javax.crypto.Mac;
+
+/**
+ * This class holds the keys and scope of Signature Version 4 signing: the access/secret key
+ * pair, the region and the service. The key derived from them for each date comes from a
+ * shared cache, and the one in use is remembered, so signing a request normally takes a
+ * single HMAC-SHA256 over the string to sign instead of five.
+ * <p>
+ * Instances of this class are safe to share between threads.
+ *
+ * @author Scott Griffis
+ *
+ */
+public final class V4Signer {
+	private final String accessKey;
+	private final String secretKey;
+	private final String region;
+	private final String service;
+	private final SigningKeyCache cache;
+
+	private volatile SigningKeyCache.DerivedKey current;
+
+	/**
+	 * CONSTRUCTOR: Creates a {@link V4Signer} bound to the given keys and scope.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secretKey - The AWS secret key as {@link String}
+	 * @param region - The region, such as us-east-1, as {@link String}
+	 * @param service - The service, such as s3, as {@link String}
+	 */
+	public V4Signer(String accessKey, String secretKey, String region, String service) {
+		this(accessKey, secretKey, region, service, SigningKeyCache.SHARED);
+	}
+
+	/**
+	 * PACKAGE-PRIVATE CONSTRUCTOR: Creates a {@link V4Signer} that uses the given key cache.
+	 *
+	 * @param accessKey - The AWS access key as {@link String}
+	 * @param secretKey - The AWS secret key as {@link String}
+	 * @param region - The region as {@link String}
+	 * @param service - The service as {@link String}
+	 * @param cache - The derived key cache as {@link SigningKeyCache}
+	 */
+	V4Signer(String accessKey, String secretKey, String region, String service, SigningKeyCache cache) {
+		if (accessKey == null || secretKey == null || region == null || service == null) throw new NullPointerException();
+		this.accessKey = accessKey;
+		this.secretKey = secretKey;
+		this.region = region;
+		this.service = service;
+		this.cache = cache;
+	}
+
+	public String getAccessKey() {
+		return this.accessKey;
+	}
+
+	public String getRegion() {
+		return this.region;
+	}
+
+	public String getService() {
+		return this.service;
+	}
+
+	/**
+	 * PACKAGE-PRIVATE METHOD: This method returns the calling thread's {@link Mac}, initialized
+	 * with the signing key derived for the given date and in its reset state.
+	 *
+	 * @param date - The scope date as yyyyMMdd as {@link String}
+	 * @return Returns the thread's {@link Mac}
+	 */
+	Mac getMac(String date) {
+		SigningKeyCache.DerivedKey key = this.current;
+		if (key == null || !key.date.equals(date)) {
+			key = this.cache.get(this.secretKey, date, this.region, this.service);
+			this.current = key;
+		}
+
+		return key.getMac();
+	}
+}
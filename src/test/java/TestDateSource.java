@@ -0,0 +1,88 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+import com.firebirdcss.tools.security.AWSRestAuth.DateSource;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * JUNIT TESTS: This class makes up the JUNIT Tests for the {@link DateSource} class.
+ *
+ * @author Scott Griffis
+ *
+ */
+public class TestDateSource {
+
+	/**
+	 * UNIT TEST: This test makes sure both header formats are right and that a value is only
+	 * formatted once per second.
+	 */
+	@Test
+	public void testFormatsOncePerSecond() {
+		SettableClock clock = new SettableClock(Instant.parse("2007-03-27T19:36:42.100Z"));
+		DateSource dates = new DateSource(clock);
+
+		String first = dates.getHttpDate();
+		assertEquals("Tue, 27 Mar 2007 19:36:42 GMT", first);
+		assertEquals("20070327T193642Z", dates.getAmzDate());
+		assertEquals(1175024202L, dates.getEpochSecond());
+
+		clock.instant = Instant.parse("2007-03-27T19:36:42.999Z");
+		assertSame(first, dates.getHttpDate());
+
+		clock.instant = Instant.parse("2007-03-27T19:36:43.000Z");
+		assertEquals("Tue, 27 Mar 2007 19:36:43 GMT", dates.getHttpDate());
+	}
+
+	/**
+	 * UNIT TEST: This test makes sure a skew moves every value, including across the date line,
+	 * and that single digit days are padded.
+	 */
+	@Test
+	public void testSkew() {
+		DateSource dates = new DateSource(Clock.fixed(Instant.parse("2007-03-01T23:59:30Z"), ZoneOffset.UTC));
+		assertEquals("Thu, 01 Mar 2007 23:59:30 GMT", dates.getHttpDate());
+
+		dates.setSkewMillis(45_000L);
+		assertEquals(45_000L, dates.getSkewMillis());
+		assertEquals("Fri, 02 Mar 2007 00:00:15 GMT", dates.getHttpDate());
+		assertEquals("20070302T000015Z", dates.getAmzDate());
+
+		dates.setSkewMillis(-30_500L);
+		assertEquals("Thu, 01 Mar 2007 23:58:59 GMT", dates.getHttpDate());
+	}
+
+	/**
+	 * This class is a clock that is moved by hand.
+	 */
+	private static final class SettableClock extends Clock {
+		volatile Instant instant;
+
+		SettableClock(Instant instant) {
+			this.instant = instant;
+		}
+
+		@Override
+		public ZoneId getZone() {
+
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+
+			return this.instant;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.firebirdcss.tools.security.AWSRestAuth.AWSRequest;
+import com.firebirdcss.tools.security.AWSRestAuth.AwsAuthV2Util;
+import com.firebirdcss.tools.security.AWSRestAuth.SigningTraceRecorder;
+import com.firebirdcss.tools.security.AWSRestAuth.SigningTraceReplay;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * JUNIT TESTS: This class makes up the JUNIT Tests for the {@link SigningTraceRecorder} and
+ * {@link SigningTraceReplay} classes.
+ *
+ * @author Scott Griffis
+ *
+ */
+public class TestSigningTrace {
+	private static final String ACCESS_KEY = "AKIDTENANTSECRETKEY1";
+	private static final String SECRET_KEY = "tenantSecretThatMustNeverBeWrittenToDisk";
+	private static final String TOKEN = "FQoGZXIvYXdzTokenThatMustNeverBeWritten";
+
+	/**
+	 * UNIT TEST: This test records requests as they are signed, appending to an existing trace with
+	 * a record cut short at its end, and makes sure the trace holds no secret and reads back as the
+	 * same requests, signed with the replay keys.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRecordsShapesWithoutSecrets() throws Exception {
+		Path file = Files.createTempFile("signing", ".trace");
+		try {
+			Files.delete(file);
+			try (SigningTraceRecorder recorder = new SigningTraceRecorder(file)) {
+				SigningTraceRecorder.install(recorder);
+				AwsAuthV2Util.genAuthHeader(request("photos/puppy.jpg", null));
+			}
+			assertNull(SigningTraceRecorder.getInstalled());
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				channel.write(ByteBuffer.wrap(new byte[] {(byte) 0x90})); // A length cut short by a crash...
+			}
+			try (SigningTraceRecorder recorder = new SigningTraceRecorder(file)) {
+				SigningTraceRecorder.install(recorder);
+				AwsAuthV2Util.genAuthHeader(request("fotos/\u00fcber m\u00e4use.jpg", TOKEN));
+				assertEquals(1, recorder.getRecorded());
+			}
+
+			String raw = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+			assertFalse(raw.contains(ACCESS_KEY));
+			assertFalse(raw.contains(SECRET_KEY));
+			assertFalse(raw.contains(TOKEN));
+
+			List<AWSRequest> replayed = SigningTraceReplay.load(file);
+			assertEquals(2, replayed.size()); // The cut short record was dropped before appending...
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+		file = Files.createTempFile("signing", ".trace");
+		try {
+			Files.delete(file);
+			try (SigningTraceRecorder recorder = new SigningTraceRecorder(file)) {
+				recorder.record(request("photos/puppy.jpg", null));
+				recorder.record(request("fotos/\u00fcber m\u00e4use.jpg", TOKEN));
+			}
+			List<AWSRequest> replayed = SigningTraceReplay.load(file);
+			assertEquals(2, replayed.size());
+			assertEquals(
+				AwsAuthV2Util.genAuthHeader(withReplayKeys("photos/puppy.jpg", null)),
+				AwsAuthV2Util.genAuthHeader(replayed.get(0))
+			);
+			AWSRequest unicode = replayed.get(1);
+			assertEquals("fotos/\u00fcber m\u00e4use.jpg", unicode.getPath());
+			assertEquals(TOKEN.replaceAll(".", "x"), unicode.getSpecificHeaderValue("x-amz-security-token"));
+			assertEquals(
+				AwsAuthV2Util.genAuthHeader(withReplayKeys("fotos/\u00fcber m\u00e4use.jpg", TOKEN.replaceAll(".", "x"))),
+				AwsAuthV2Util.genAuthHeader(unicode)
+			);
+			assertEquals(SigningTraceReplay.ACCESS_KEY, unicode.getAccessKey());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * UNIT TEST: This test replays requests on several threads, as fast as possible and at a target
+	 * rate, and makes sure every request is measured and the rate is kept to.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testReplayMeasuresEveryRequest() throws Exception {
+		List<AWSRequest> requests = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			requests.add(withReplayKeys("photos/" + i + ".jpg", i % 2 == 0 ? null : TOKEN));
+		}
+
+		SigningTraceReplay.Result fast = SigningTraceReplay.replay(requests, 2, 0.0, 3, null);
+		assertEquals(300, fast.getRequests());
+		assertEquals(0, fast.getErrors());
+		assertEquals(300, fast.getLatency().getCount());
+		assertTrue(fast.getRequestsPerSecond() > 0);
+
+		SigningTraceReplay.Result paced = SigningTraceReplay.replay(requests, 2, 10_000.0, 1, null);
+		assertEquals(100, paced.getLatency().getCount());
+		assertTrue(paced.getNanos() >= 99 * 100_000L); // The last request is due 99 intervals in...
+	}
+
+	/**
+	 * PRIVATE METHOD: Creates a request of the tenant with a sub-resource and an Amazon header.
+	 *
+	 * @param path - The path as {@link String}
+	 * @param token - The session token header or null as {@link String}
+	 * @return Returns the request as {@link AWSRequest}
+	 */
+	private static AWSRequest request(String path, String token) {
+
+		return request(path, token, ACCESS_KEY, SECRET_KEY);
+	}
+
+	/**
+	 * PRIVATE METHOD: Creates the same request as {@link #request(String, String)} with the replay keys.
+	 *
+	 * @param path - The path as {@link String}
+	 * @param token - The session token header or null as {@link String}
+	 * @return Returns the request as {@link AWSRequest}
+	 */
+	private static AWSRequest withReplayKeys(String path, String token) {
+
+		return request(path, token, SigningTraceReplay.ACCESS_KEY, SigningTraceReplay.SECRET_KEY);
+	}
+
+	private static AWSRequest request(String path, String token, String accessKey, String secretKey) {
+		HashMap<String, String> params = new HashMap<>();
+		params.put("acl", null);
+		HashMap<String, String> heads = new HashMap<>();
+		heads.put("Date", "Tue, 27 Mar 2007 19:36:42 +0000");
+		heads.put("x-amz-meta-reviewedby", "joe@johnsmith.net");
+		if (token != null) heads.put("x-amz-security-token", token);
+
+		return new AWSRequest("johnsmith.s3.amazonaws.com", path, "johnsmith", accessKey, secretKey, "PUT", params, heads);
+	}
+}